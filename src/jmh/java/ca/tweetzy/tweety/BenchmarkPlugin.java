@@ -0,0 +1,110 @@
+package ca.tweetzy.tweety;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A stand-in plugin so Tweety can run without a server
+ */
+public final class BenchmarkPlugin {
+
+	private BenchmarkPlugin() {
+	}
+
+	/**
+	 * Create a plugin whose data folder is a new temporary directory
+	 *
+	 * @param name the plugin name, also used for the SQLite file name and table prefix
+	 * @return the plugin
+	 * @throws IOException if the temporary directory could not be created
+	 */
+	public static Plugin create(String name) throws IOException {
+		File dataFolder = Files.createTempDirectory("tweety-jmh").toFile();
+		PluginDescriptionFile description = new PluginDescriptionFile(name, "1.0", BenchmarkPlugin.class.getName());
+		Logger logger = Logger.getLogger(name);
+
+		// Keep migration and pool logging out of the benchmark output
+		logger.setLevel(Level.WARNING);
+
+		return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[]{Plugin.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getName":
+					return name;
+				case "getDescription":
+					return description;
+				case "getDataFolder":
+					return dataFolder;
+				case "getLogger":
+					return logger;
+				case "isEnabled":
+					return true;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				case "toString":
+					return name;
+				default:
+					throw new UnsupportedOperationException(method.getName() + " is not available outside of a server");
+			}
+		});
+	}
+
+	/**
+	 * Register a stand-in server for code that asks Bukkit for the server version, does nothing if a server is set
+	 *
+	 * @param minecraftVersion the Minecraft version the server reports, such as 1.18.2
+	 */
+	public static synchronized void setUpServer(String minecraftVersion) {
+		if (Bukkit.getServer() != null) {
+			return;
+		}
+
+		String version = "git-Benchmark (MC: " + minecraftVersion + ")";
+		Logger logger = Logger.getLogger("Server");
+
+		logger.setLevel(Level.WARNING);
+
+		Bukkit.setServer((Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getName":
+					return "Benchmark";
+				case "getVersion":
+					return version;
+				case "getBukkitVersion":
+					return minecraftVersion + "-R0.1-SNAPSHOT";
+				case "getLogger":
+					return logger;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				case "toString":
+					return version;
+				default:
+					throw new UnsupportedOperationException(method.getName() + " is not available outside of a server");
+			}
+		}));
+	}
+
+	/**
+	 * Delete the data folder of a plugin created by {@link #create(String)}
+	 */
+	public static void delete(Plugin plugin) throws IOException {
+		try (Stream<Path> files = Files.walk(plugin.getDataFolder().toPath())) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
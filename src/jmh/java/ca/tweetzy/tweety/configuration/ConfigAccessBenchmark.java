@@ -0,0 +1,92 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading, listing and replacing values of a large {@link Config}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigAccessBenchmark {
+
+	/**
+	 * How many sections the config has, each with four values
+	 */
+	@Param({"100", "2000"})
+	public int sections;
+
+	private Plugin plugin;
+	private Config config;
+	private ConfigSection section;
+	private String path;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.plugin = BenchmarkPlugin.create("ConfigAccessBenchmark");
+		this.config = new Config(this.plugin);
+
+		for (int i = 0; i < this.sections; i++) {
+			String path = "section-" + i + ".";
+
+			this.config.set(path + "name", "Section " + i);
+			this.config.set(path + "amount", i);
+			this.config.set(path + "nested.enabled", true);
+			this.config.set(path + "nested.price", i * 10D);
+		}
+
+		this.section = this.config.getConfigurationSection("section-" + (this.sections / 2));
+		this.path = "section-" + (this.sections / 2) + ".nested.price";
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkPlugin.delete(this.plugin);
+	}
+
+	/**
+	 * Read a nested value from the root and from its section, the way plugins read constant paths
+	 */
+	@Benchmark
+	public double get() {
+		return this.config.getDouble(this.path) + this.section.getDouble("nested.price");
+	}
+
+	/**
+	 * List the keys of one section
+	 */
+	@Benchmark
+	public Set<String> keys() {
+		return this.section.getKeys(true);
+	}
+
+	/**
+	 * Replace a section, dropping the values below it
+	 */
+	@Benchmark
+	public void replaceSection() {
+		this.config.set("replaced.nested.value", 1);
+		this.config.set("replaced", null);
+	}
+}
@@ -0,0 +1,90 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an unchanged config file by parsing the YAML compared to reading its {@link ConfigSnapshot}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigLoadBenchmark {
+
+	/**
+	 * How many sections the generated file has, each with a comment and six values
+	 */
+	@Param({"100", "2000"})
+	public int sections;
+
+	private Plugin plugin;
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.plugin = BenchmarkPlugin.create("ConfigLoadBenchmark");
+		this.file = new File(this.plugin.getDataFolder(), "config.yml");
+
+		Config config = new Config(this.plugin);
+		config.setHeader("Generated for the load benchmark");
+
+		for (int i = 0; i < this.sections; i++) {
+			String path = "section-" + i + ".";
+
+			config.set(path + "name", "&aSection &f" + i);
+			config.set(path + "enabled", i % 2 == 0);
+			config.set(path + "amount", i);
+			config.set(path + "chance", i / 100D);
+			config.set(path + "lore", Arrays.asList("&7First line", "&7Second line of " + i));
+			config.set(path + "nested.price", i * 1000L);
+			config.setComment("section-" + i, null, "Settings of section " + i);
+		}
+
+		config.save(this.file);
+
+		// create the snapshot once, the loads below all hit it
+		new Config(this.plugin).setUseSnapshot(true).load(this.file);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkPlugin.delete(this.plugin);
+	}
+
+	@Benchmark
+	public Config parse() {
+		Config config = new Config(this.plugin);
+		config.load(this.file);
+
+		return config;
+	}
+
+	@Benchmark
+	public Config snapshot() {
+		Config config = new Config(this.plugin).setUseSnapshot(true);
+		config.load(this.file);
+
+		return config;
+	}
+}
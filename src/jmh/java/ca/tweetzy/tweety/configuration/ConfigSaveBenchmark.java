@@ -0,0 +1,86 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving a commented config by building the file as a string first compared to streaming it to the file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigSaveBenchmark {
+
+	/**
+	 * How many sections the config has, each with a comment and six values
+	 */
+	@Param({"100", "2000"})
+	public int sections;
+
+	private Plugin plugin;
+	private File file;
+	private Config config;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.plugin = BenchmarkPlugin.create("ConfigSaveBenchmark");
+		this.file = new File(this.plugin.getDataFolder(), "config.yml");
+		this.config = new Config(this.plugin);
+		this.config.setHeader("Generated for the save benchmark");
+
+		for (int i = 0; i < this.sections; i++) {
+			String path = "section-" + i + ".";
+
+			this.config.set(path + "name", "&aSection &f" + i);
+			this.config.set(path + "enabled", i % 2 == 0);
+			this.config.set(path + "amount", i);
+			this.config.set(path + "chance", i / 100D);
+			this.config.set(path + "lore", Arrays.asList("&7First line", "&7Second line of " + i));
+			this.config.set(path + "nested.price", i * 1000L);
+			this.config.setComment("section-" + i, null, "Settings of section " + i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkPlugin.delete(this.plugin);
+	}
+
+	/**
+	 * Serialize the whole file to a string, then write it
+	 */
+	@Benchmark
+	public void string() throws IOException {
+		SaveScheduler.write(this.file, this.config.saveToString(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write the file while it is serialized, see {@link Config#saveTo(java.io.Writer)}
+	 */
+	@Benchmark
+	public boolean stream() {
+		return this.config.save(this.file);
+	}
+}
@@ -0,0 +1,139 @@
+package ca.tweetzy.tweety.database;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running {@link DataManagerAbstract#runAsync(Object, Runnable)} tasks on a single worker,
+ * which is how the task queue used to work, compared to a pool of workers sharing the
+ * concurrent SQLite connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+	private static final int PLAYERS = 1000;
+
+	/**
+	 * How many tasks each benchmark call queues
+	 */
+	private static final int TASKS = 1000;
+
+	@Param({"1", "4"})
+	public int workers;
+
+	private Plugin plugin;
+	private SQLiteConnector connector;
+	private DataManagerAbstract dataManager;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.plugin = BenchmarkPlugin.create("ExecutorBenchmark");
+		this.connector = new SQLiteConnector(this.plugin, 3);
+		this.dataManager = new DataManagerAbstract(this.connector, this.plugin, new DatabaseExecutor(this.plugin.getName(), this.workers,
+				DataManagerAbstract.DEFAULT_QUEUE_CAPACITY, DatabaseExecutor.BackPressurePolicy.CALLER_RUNS));
+
+		this.connector.connect(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE players (id INTEGER PRIMARY KEY, balance DOUBLE NOT NULL)");
+			}
+
+			connection.setAutoCommit(false);
+
+			try (PreparedStatement statement = connection.prepareStatement("INSERT INTO players (id, balance) VALUES (?, ?)")) {
+				for (int i = 0; i < PLAYERS; i++) {
+					statement.setInt(1, i);
+					statement.setDouble(2, i);
+					statement.addBatch();
+				}
+
+				statement.executeBatch();
+				connection.commit();
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, InterruptedException {
+		this.dataManager.shutdownTaskQueue();
+		this.dataManager.waitForShutdown(10, TimeUnit.SECONDS);
+		this.connector.closeConnection();
+		BenchmarkPlugin.delete(this.plugin);
+	}
+
+	/**
+	 * Every task reads one player
+	 */
+	@Benchmark
+	public void reads(Blackhole blackhole) throws InterruptedException {
+		this.run(blackhole, 0);
+	}
+
+	/**
+	 * Every tenth task updates a player, the others read one
+	 */
+	@Benchmark
+	public void mixed(Blackhole blackhole) throws InterruptedException {
+		this.run(blackhole, 10);
+	}
+
+	private void run(Blackhole blackhole, int writeEvery) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(TASKS);
+
+		for (int i = 0; i < TASKS; i++) {
+			int player = (i * 31) % PLAYERS;
+			boolean write = writeEvery > 0 && i % writeEvery == 0;
+
+			this.dataManager.runAsync(player, () -> {
+				if (write) {
+					this.connector.connect(connection -> {
+						try (PreparedStatement statement = connection.prepareStatement("UPDATE players SET balance = balance + 1 WHERE id = ?")) {
+							statement.setInt(1, player);
+							statement.executeUpdate();
+						}
+					});
+				} else {
+					this.connector.connectReadOnly(connection -> {
+						try (PreparedStatement statement = connection.prepareStatement("SELECT balance FROM players WHERE id = ?")) {
+							statement.setInt(1, player);
+
+							try (ResultSet result = statement.executeQuery()) {
+								blackhole.consume(result.next() ? result.getDouble(1) : 0);
+							}
+						}
+					});
+				}
+
+				done.countDown();
+			});
+		}
+
+		done.await();
+	}
+}
@@ -0,0 +1,98 @@
+package ca.tweetzy.tweety.database;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing rows one statement at a time compared to one batched transaction,
+ * on a single shared connection and in concurrent (WAL) mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+	private static final String INSERT = "INSERT INTO players (name, balance) VALUES (?, ?)";
+
+	@Param({"legacy", "concurrent"})
+	public String mode;
+
+	@Param({"100"})
+	public int rows;
+
+	private Plugin plugin;
+	private SQLiteConnector connector;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.plugin = BenchmarkPlugin.create("InsertBenchmark");
+		this.connector = this.mode.equals("concurrent") ? new SQLiteConnector(this.plugin, 2) : new SQLiteConnector(this.plugin);
+
+		this.connector.connect(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE players (id INTEGER PRIMARY KEY, name VARCHAR(16) NOT NULL, balance DOUBLE NOT NULL)");
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.connector.closeConnection();
+		BenchmarkPlugin.delete(this.plugin);
+	}
+
+	@Benchmark
+	public void singleInserts() {
+		for (int i = 0; i < this.rows; i++) {
+			int row = i;
+
+			this.connector.connect(connection -> {
+				try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+					statement.setString(1, "player" + row);
+					statement.setDouble(2, row);
+					statement.executeUpdate();
+				}
+			});
+		}
+	}
+
+	@Benchmark
+	public void batchedInsert() {
+		this.connector.connect(connection -> {
+			connection.setAutoCommit(false);
+
+			try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+				for (int i = 0; i < this.rows; i++) {
+					statement.setString(1, "player" + i);
+					statement.setDouble(2, i);
+					statement.addBatch();
+				}
+
+				statement.executeBatch();
+				connection.commit();
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		});
+	}
+}
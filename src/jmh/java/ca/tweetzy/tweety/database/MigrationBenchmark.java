@@ -0,0 +1,137 @@
+package ca.tweetzy.tweety.database;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding a derived column to a large table, filled either by the migration itself
+ * in one transaction or by a {@link DataBackfill} in chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MigrationBenchmark {
+	private static final int CHUNK_SIZE = 5000;
+
+	@Param({"10000", "100000"})
+	public int rows;
+
+	private Plugin plugin;
+	private SQLiteConnector connector;
+	private DataManagerAbstract dataManager;
+
+	@Setup(Level.Invocation)
+	public void setup() throws IOException {
+		this.plugin = BenchmarkPlugin.create("MigrationBenchmark");
+		this.connector = new SQLiteConnector(this.plugin);
+		this.dataManager = new DataManagerAbstract(this.connector, this.plugin);
+
+		String table = this.dataManager.getTablePrefix() + "players";
+
+		this.connector.connect(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE " + table + " (id INTEGER PRIMARY KEY, balance DOUBLE NOT NULL)");
+			}
+
+			connection.setAutoCommit(false);
+
+			try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table + " (id, balance) VALUES (?, ?)")) {
+				for (int i = 1; i <= this.rows; i++) {
+					statement.setInt(1, i);
+					statement.setDouble(2, i);
+					statement.addBatch();
+				}
+
+				statement.executeBatch();
+				connection.commit();
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		});
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws IOException, InterruptedException {
+		this.dataManager.shutdownTaskQueue();
+		this.dataManager.waitForShutdown(10, TimeUnit.SECONDS);
+		this.connector.closeConnection();
+		BenchmarkPlugin.delete(this.plugin);
+	}
+
+	@Benchmark
+	public void singleTransaction() {
+		new DataMigrationManager(this.connector, this.dataManager, new AddColumnMigration(false)).runMigrationsAsync().join();
+	}
+
+	@Benchmark
+	public void chunkedBackfill() {
+		new DataMigrationManager(this.connector, this.dataManager, new AddColumnMigration(true)).runMigrationsAsync().join();
+	}
+
+	private static class AddColumnMigration extends DataMigration {
+		private final boolean backfill;
+
+		AddColumnMigration(boolean backfill) {
+			super(1);
+			this.backfill = backfill;
+		}
+
+		@Override
+		public void migrate(Connection connection, String tablePrefix) throws SQLException {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("ALTER TABLE " + tablePrefix + "players ADD COLUMN balance_cents BIGINT");
+
+				if (!this.backfill) {
+					statement.execute("UPDATE " + tablePrefix + "players SET balance_cents = CAST(balance * 100 AS INTEGER)");
+				}
+			}
+		}
+
+		@Override
+		public List<DataBackfill> getBackfills() {
+			return this.backfill ? Collections.singletonList(new BalanceCentsBackfill()) : Collections.emptyList();
+		}
+	}
+
+	private static class BalanceCentsBackfill extends DataBackfill {
+
+		BalanceCentsBackfill() {
+			super("balance_cents");
+		}
+
+		@Override
+		public long migrateChunk(Connection connection, String tablePrefix, long checkpoint) throws SQLException {
+			try (PreparedStatement statement = connection.prepareStatement("UPDATE " + tablePrefix + "players SET balance_cents = CAST(balance * 100 AS INTEGER) WHERE id > ? AND id <= ?")) {
+				statement.setLong(1, checkpoint);
+				statement.setLong(2, checkpoint + CHUNK_SIZE);
+
+				return statement.executeUpdate() == 0 ? FINISHED : checkpoint + CHUNK_SIZE;
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package ca.tweetzy.tweety.model.chat;
+
+import ca.tweetzy.tweety.BenchmarkPlugin;
+import ca.tweetzy.tweety.model.chat.patterns.GradientPattern;
+import ca.tweetzy.tweety.model.chat.patterns.Pattern;
+import ca.tweetzy.tweety.model.chat.patterns.RainbowPattern;
+import ca.tweetzy.tweety.model.chat.patterns.SolidPattern;
+import net.md_5.bungee.api.ChatColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coloring a message by running each pattern in turn compared to the single pass and its cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorBenchmark {
+
+	/**
+	 * What the message holds besides text
+	 */
+	@Param({"plain", "codes", "hex", "gradient", "mixed"})
+	public String message;
+
+	private final List<Pattern> patterns = Arrays.asList(new SolidPattern(), new GradientPattern(), new RainbowPattern());
+
+	private String text;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkPlugin.setUpServer("1.18.2");
+
+		switch (this.message) {
+			case "plain":
+				this.text = "Welcome to the server, enjoy your stay and have fun";
+				break;
+			case "codes":
+				this.text = "&8[&6Shop&8] &7You bought &f16x Diamond &7for &a$1,200";
+				break;
+			case "hex":
+				this.text = "#FFAA00[Shop] #AAAAAAYou bought #FFFFFF16x Diamond #AAAAAAfor #55FF55$1,200";
+				break;
+			case "gradient":
+				this.text = "<GRADIENT:FF0000>Welcome to the server</GRADIENT:0000FF> &7enjoy your stay";
+				break;
+			case "mixed":
+				this.text = "&8[<GRADIENT:FFAA00>Shop</GRADIENT:FF5500>&8] #AAAAAAYou bought &l<RAINBOW1>16x Diamond</RAINBOW> &7for &a$1,200";
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown message " + this.message);
+		}
+	}
+
+	/**
+	 * Translate the & codes, run the solid, gradient and rainbow patterns, then translate again
+	 */
+	@Benchmark
+	public String patterns() {
+		String string = ChatColor.translateAlternateColorCodes('&', this.text);
+
+		for (Pattern pattern : this.patterns) {
+			string = pattern.process(string);
+		}
+
+		return ChatColor.translateAlternateColorCodes('&', string);
+	}
+
+	/**
+	 * Color the message in one pass, see {@link ColorFormatter#compile(String, boolean)}
+	 */
+	@Benchmark
+	public String compiled() {
+		return ColorFormatter.compile(this.text, true);
+	}
+
+	/**
+	 * Color the message through the cache of recent results, see {@link ColorFormatter#colorize(String)}
+	 */
+	@Benchmark
+	public String cached() {
+		return ColorFormatter.colorize(this.text);
+	}
+}
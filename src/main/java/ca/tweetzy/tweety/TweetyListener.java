@@ -1,10 +1,13 @@
 package ca.tweetzy.tweety;
 
 import ca.tweetzy.tweety.model.HookManager;
+import ca.tweetzy.tweety.model.PlayerSnapshot;
 import ca.tweetzy.tweety.model.TweetyScoreboard;
+import ca.tweetzy.tweety.model.Variables;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.ServiceRegisterEvent;
 
@@ -13,9 +16,16 @@ import org.bukkit.event.server.ServiceRegisterEvent;
  */
 public final class TweetyListener implements Listener {
 
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onJoin(PlayerJoinEvent event) {
+		PlayerSnapshot.capture(event.getPlayer());
+	}
+
 	@EventHandler(priority = EventPriority.HIGHEST)
 	public void onQuit(PlayerQuitEvent event) {
 		TweetyScoreboard.clearBoardsFor(event.getPlayer());
+		Variables.getRenderCache().invalidate(event.getPlayer().getName());
+		PlayerSnapshot.remove(event.getPlayer());
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
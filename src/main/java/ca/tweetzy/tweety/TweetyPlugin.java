@@ -1,11 +1,15 @@
 package ca.tweetzy.tweety;
 
 import ca.tweetzy.tweety.annotation.AutoRegister;
+import ca.tweetzy.tweety.configuration.ConfigWatcher;
+import ca.tweetzy.tweety.configuration.SaveScheduler;
 import ca.tweetzy.tweety.debug.Debugger;
 import ca.tweetzy.tweety.exception.TweetyException;
 import ca.tweetzy.tweety.model.Common;
 import ca.tweetzy.tweety.model.HookManager;
+import ca.tweetzy.tweety.model.PlayerSnapshot;
 import ca.tweetzy.tweety.model.TweetyScoreboard;
+import ca.tweetzy.tweety.model.Variables;
 import ca.tweetzy.tweety.model.discord.DiscordListener;
 import ca.tweetzy.tweety.model.hologram.TweetyHologram;
 import ca.tweetzy.tweety.model.region.BlockVisualizer;
@@ -236,6 +240,9 @@ public abstract class TweetyPlugin extends JavaPlugin implements Listener {
 			// Register our listeners
 			registerEvents(new TweetyListener());
 
+			// Capture players every tick so variables can be replaced off the main thread
+			PlayerSnapshot.start();
+
 
 			// Register DiscordSRV listener
 			if (HookManager.isDiscordSRVLoaded()) {
@@ -439,6 +446,11 @@ public abstract class TweetyPlugin extends JavaPlugin implements Listener {
 			Common.log("&cPlugin might not shut down property. Got " + t.getClass().getSimpleName() + ": " + t.getMessage());
 		}
 
+		ConfigWatcher.stop();
+
+		if (!SaveScheduler.flushAll())
+			Common.log("&cSome configuration files could not be saved in time and may have lost changes.");
+
 		unregisterReloadables();
 
 		try {
@@ -542,6 +554,10 @@ public abstract class TweetyPlugin extends JavaPlugin implements Listener {
 
 			startingReloadables = false;
 
+			// Renders kept from before the reload may hold old prefixes or values
+			Variables.getRenderCache().clear();
+			PlayerSnapshot.start();
+
 			if (HookManager.isDiscordSRVLoaded()) {
 				DiscordListener.DiscordListenerImpl.getInstance().resubscribe();
 
@@ -571,6 +587,9 @@ public abstract class TweetyPlugin extends JavaPlugin implements Listener {
 		} catch (final NoClassDefFoundError ex) {
 		}
 
+		PlayerSnapshot.stop();
+		Variables.getRenderCache().clear();
+
 		getServer().getMessenger().unregisterIncomingPluginChannel(this);
 		getServer().getMessenger().unregisterOutgoingPluginChannel(this);
 
@@ -0,0 +1,355 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.util.FileUtil;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the entries of a {@link SimpleDataStore} in one binary file that saves only append to. <br>
+ * Every save appends a record for each changed or removed entry, and the file is rewritten with
+ * only the latest record of each entry once most of it is outdated. Records carry a checksum,
+ * so a save cut off by a crash only loses that save.
+ * <p>
+ * Entries are written in the same binary form as {@link ConfigSnapshot}, entries holding values
+ * that form does not support, such as items, are written as YAML instead.
+ * <p>
+ * Where the latest record of each entry starts is kept in memory, so single entries can be read
+ * without reading the file.
+ */
+public class BinaryLogDataStoreBackend implements DataStoreBackend {
+	private static final int MAGIC = 0x54445301;
+
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	private static final byte BINARY = 0;
+	private static final byte YAML = 1;
+
+	/**
+	 * how many outdated records are allowed before the file is rewritten, on top of one per entry
+	 */
+	private static final int MIN_OUTDATED_RECORDS = 1024;
+
+	private final File file;
+
+	/**
+	 * records in the file, and entries they add up to
+	 */
+	private int records = -1, entries;
+
+	/**
+	 * where the latest record of each entry starts in the file
+	 */
+	private final Map<String, Long> index = new HashMap<>();
+
+	public BinaryLogDataStoreBackend(@NotNull File file) {
+		this.file = file;
+	}
+
+	@NotNull
+	public File getFile() {
+		return file;
+	}
+
+	@NotNull
+	@Override
+	public synchronized Collection<ConfigurationSection> load() throws IOException {
+		Map<String, byte[]> latest = replay(true);
+		List<ConfigurationSection> sections = new ArrayList<>(latest.size());
+
+		for (Map.Entry<String, byte[]> entry : latest.entrySet()) {
+			sections.add(decode(entry.getKey(), entry.getValue()));
+		}
+
+		if (needsCompaction()) {
+			compact(latest);
+		}
+
+		return sections;
+	}
+
+	@NotNull
+	@Override
+	public synchronized Collection<String> loadKeys() throws IOException {
+		replay(false);
+
+		if (needsCompaction()) {
+			compact(replay(true));
+		}
+
+		return new ArrayList<>(index.keySet());
+	}
+
+	@Nullable
+	@Override
+	public synchronized ConfigurationSection load(@NotNull String configKey) throws IOException {
+		if (records < 0) {
+			replay(false);
+		}
+
+		Long offset = index.get(configKey);
+
+		if (offset == null) {
+			return null;
+		}
+
+		try (RandomAccessFile access = new RandomAccessFile(file, "r")) {
+			access.seek(offset);
+
+			// the record was checked when the file was replayed
+			byte[] record = new byte[access.readInt()];
+			access.readFully(record);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+			in.readByte();
+			ConfigSnapshot.readString(in);
+
+			return decode(configKey, ConfigSnapshot.readBytes(in));
+		}
+	}
+
+	@Override
+	public synchronized void store(@NotNull Collection<ConfigurationSection> changed, @NotNull Collection<String> removed) throws IOException {
+		if (records < 0) {
+			replay(false);
+		}
+
+		boolean created = !file.exists() || file.length() == 0;
+
+		if (created && file.getAbsoluteFile().getParentFile() != null) {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		}
+
+		long offset = created ? 4 : file.length();
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+			if (created) {
+				out.writeInt(MAGIC);
+			}
+
+			for (ConfigurationSection section : changed) {
+				index.put(section.getName(), offset);
+				offset += writeRecord(out, PUT, section.getName(), encode(section));
+			}
+
+			for (String key : removed) {
+				index.remove(key);
+				offset += writeRecord(out, REMOVE, key, null);
+			}
+		} catch (IOException ex) {
+			// the index may point at records that were not written
+			records = -1;
+			throw ex;
+		}
+
+		records += changed.size() + removed.size();
+		entries = index.size();
+
+		if (needsCompaction()) {
+			compact(replay(true));
+		}
+	}
+
+	private boolean needsCompaction() {
+		return records - entries > Math.max(entries, MIN_OUTDATED_RECORDS);
+	}
+
+	/**
+	 * Read every record of the file to rebuild the index, dropping a broken record at the end and anything after it
+	 *
+	 * @param payloads whether to keep the payloads of the entries
+	 * @return the payload of the latest record of each entry, empty if payloads are not kept
+	 */
+	@NotNull
+	private Map<String, byte[]> replay(boolean payloads) throws IOException {
+		Map<String, byte[]> latest = new LinkedHashMap<>();
+		records = entries = 0;
+		index.clear();
+
+		long fileLength = file.length();
+		long valid = 4;
+
+		if (fileLength == 0) {
+			return latest;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file.getName() + " is not a data log");
+			}
+
+			while (true) {
+				byte[] record;
+
+				try {
+					int length = in.readInt();
+
+					// a length cut off or overwritten, there is no complete record after it
+					if (length <= 0 || length > fileLength - valid - 8) {
+						break;
+					}
+
+					record = new byte[length];
+					in.readFully(record);
+
+					CRC32 crc = new CRC32();
+					crc.update(record);
+
+					if (in.readInt() != (int) crc.getValue()) {
+						break;
+					}
+				} catch (EOFException ex) {
+					break;
+				}
+
+				DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+				byte type = recordIn.readByte();
+				String key = ConfigSnapshot.readString(recordIn);
+
+				if (type == PUT) {
+					index.put(key, valid);
+
+					if (payloads) {
+						latest.put(key, ConfigSnapshot.readBytes(recordIn));
+					}
+				} else {
+					index.remove(key);
+					latest.remove(key);
+				}
+
+				records++;
+				valid += 8 + record.length;
+			}
+		} catch (EOFException ex) {
+			throw new IOException(file.getName() + " is not a data log", ex);
+		}
+
+		// the last save was cut off, drop what it left so new records follow the last complete one
+		if (valid < fileLength) {
+			try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+				access.setLength(valid);
+			}
+		}
+
+		entries = index.size();
+
+		return latest;
+	}
+
+	/**
+	 * Rewrite the file with one record per entry
+	 */
+	private void compact(@NotNull Map<String, byte[]> latest) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		Map<String, Long> offsets = new HashMap<>();
+		long offset = 4;
+
+		out.writeInt(MAGIC);
+
+		for (Map.Entry<String, byte[]> entry : latest.entrySet()) {
+			offsets.put(entry.getKey(), offset);
+			offset += writeRecord(out, PUT, entry.getKey(), entry.getValue());
+		}
+
+		FileUtil.writeAtomically(file, bytes.toByteArray());
+
+		index.clear();
+		index.putAll(offsets);
+		records = entries = latest.size();
+	}
+
+	/**
+	 * @return how many bytes the record takes in the file
+	 */
+	private static int writeRecord(@NotNull DataOutputStream out, byte type, @NotNull String key, @Nullable byte[] payload) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+
+		record.writeByte(type);
+		ConfigSnapshot.writeString(record, key);
+
+		if (payload != null) {
+			ConfigSnapshot.writeBytes(record, payload);
+		}
+
+		byte[] content = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		ConfigSnapshot.writeBytes(out, content);
+		out.writeInt((int) crc.getValue());
+
+		return 8 + content.length;
+	}
+
+	@NotNull
+	private static byte[] encode(@NotNull ConfigurationSection section) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeByte(BINARY);
+			ConfigSnapshot.writeValue(out, toMap(section));
+		} catch (IOException ex) {
+			// a value the binary form does not support
+			bytes.reset();
+			out.writeByte(YAML);
+			ConfigSnapshot.writeString(out, SimpleDataStore.toYaml(section));
+		}
+
+		return bytes.toByteArray();
+	}
+
+	@NotNull
+	private static ConfigurationSection decode(@NotNull String key, @NotNull byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+		if (in.readByte() == YAML) {
+			return SimpleDataStore.fromYaml(key, ConfigSnapshot.readString(in));
+		}
+
+		ConfigurationSection section = SimpleDataStore.createEntrySection(key);
+
+		for (Map.Entry<?, ?> entry : ((Map<?, ?>) ConfigSnapshot.readValue(in)).entrySet()) {
+			if (entry.getValue() instanceof Map) {
+				section.createSection(entry.getKey().toString(), (Map<?, ?>) entry.getValue());
+			} else {
+				section.set(entry.getKey().toString(), entry.getValue());
+			}
+		}
+
+		return section;
+	}
+
+	@NotNull
+	private static Map<String, Object> toMap(@NotNull ConfigurationSection section) {
+		Map<String, Object> values = new LinkedHashMap<>();
+
+		section.getValues(false).forEach((key, value) -> values.put(key, value instanceof ConfigurationSection ? toMap((ConfigurationSection) value) : value));
+
+		return values;
+	}
+}
@@ -0,0 +1,293 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+/**
+ * Takes the YAML dump of a {@link Config} as it is written and passes it on line by line,
+ * adding the comments and the spacing between nodes on the way. <br>
+ * At most two lines are held back, so the dump never has to be kept in memory as a whole,
+ * and the line buffers are reused so most lines are passed on without being copied.
+ */
+final class CommentingWriter extends Writer {
+	private final Config config;
+
+	/**
+	 * the version of the config being written, so every comment comes from the same one
+	 */
+	private final ConfigTree tree;
+	private final Writer out;
+
+	/**
+	 * drop the dump if it is only the empty map
+	 */
+	private final boolean skipBlank;
+
+	/**
+	 * the line being received
+	 */
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * the first line, held back until it is clear that the dump is not blank
+	 */
+	private String firstLine;
+	private boolean receivedLine = false;
+
+	/**
+	 * a node line waiting for the next line, which decides the style of its comment
+	 */
+	private String pendingLine;
+	private Comment pendingComment;
+	private int pendingOffset;
+
+	/**
+	 * the path of the current node, and where each of its parts starts
+	 */
+	private final StringBuilder currentPath = new StringBuilder();
+	private int[] pathParts = new int[8];
+	private int depth = 0;
+
+	private final Matcher matcher;
+	private char[] chars = new char[128];
+	private boolean insideScalar = false;
+	private boolean firstNode = true;
+	private int index = 0;
+
+	CommentingWriter(@NotNull Config config, @NotNull Writer out, boolean skipBlank) {
+		this.config = config;
+		this.tree = config.read();
+		this.out = out;
+		this.skipBlank = skipBlank;
+		this.matcher = config.yamlNode.matcher("");
+	}
+
+	@Override
+	public void write(@NotNull char[] buffer, int offset, int length) throws IOException {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			char c = buffer[i];
+
+			if (c == '\n') {
+				receive();
+			} else {
+				line.append(c);
+			}
+		}
+	}
+
+	@Override
+	public void write(@NotNull String str, int offset, int length) throws IOException {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			char c = str.charAt(i);
+
+			if (c == '\n') {
+				receive();
+			} else {
+				line.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Write out what is still held back. Does not close the underlying writer.
+	 */
+	void finish() throws IOException {
+		if (line.length() > 0) {
+			receive();
+		}
+
+		if (firstLine != null) {
+			if (!skipBlank || !(firstLine + "\n").equals(Config.BLANK_CONFIG)) {
+				process(new StringBuilder(firstLine));
+			}
+
+			firstLine = null;
+		}
+
+		if (pendingLine != null) {
+			// nothing follows, so it cannot be a list
+			writePending(config.defaultSectionCommentFormat);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		finish();
+		out.flush();
+	}
+
+	private void receive() throws IOException {
+		if (!receivedLine) {
+			receivedLine = true;
+			firstLine = line.toString();
+		} else {
+			if (firstLine != null) {
+				StringBuilder first = new StringBuilder(firstLine);
+
+				firstLine = null;
+				process(first);
+			}
+
+			process(line);
+		}
+
+		line.setLength(0);
+	}
+
+	private void process(@NotNull StringBuilder line) throws IOException {
+		int firstChar = firstNonBlank(line, 0, line.length());
+
+		if (pendingLine != null) {
+			// this is the line after a node without value: a list item, or the first node of a section
+			writePending(firstChar != -1 && line.charAt(firstChar) == '-' ? config.defaultNodeCommentFormat : config.defaultSectionCommentFormat);
+		}
+
+		// ignore comments and empty lines (there shouldn't be any, but just in case)
+		if (line.length() == 0 || (firstChar != -1 && line.charAt(firstChar) == '#')) {
+			return;
+		}
+
+		// check to see if this is a line that we can process
+		int lineOffset = getOffset(line);
+		insideScalar &= lineOffset <= index;
+
+		if (!insideScalar && matcher.reset(line).find()) {
+			// check to see what the full path is
+			int nodeDepth = (matcher.end(1) - matcher.start(1)) / config.indentation;
+			while (nodeDepth < depth) {
+				currentPath.setLength(pathParts[--depth]);
+			}
+
+			if (depth == pathParts.length) {
+				pathParts = Arrays.copyOf(pathParts, depth * 2);
+			}
+
+			pathParts[depth] = currentPath.length();
+
+			if (depth++ > 0) {
+				currentPath.append(config.pathChar);
+			}
+
+			currentPath.append(line, matcher.start(2), matcher.end(2));
+
+			// if this is a root-level node, apply extra spacing if we aren't the first node
+			if (!firstNode && nodeDepth == 0 && config.rootNodeSpacing > 0) {
+				writeLineBreaks(config.rootNodeSpacing);
+			}
+			firstNode = false;
+
+			// the value after the colon, trimmed
+			int valueStart = firstNonBlank(line, matcher.start(3), matcher.end(3));
+			int valueLength = valueStart == -1 ? 0 : lastNonBlank(line, matcher.start(3), matcher.end(3)) - valueStart + 1;
+
+			// insert the relevant comment
+			Comment comment = tree.getComment(currentPath.toString());
+			boolean waitForNextLine = false;
+
+			if (comment != null) {
+				// add spacing between previous nodes and comments
+				if (nodeDepth != 0) {
+					writeLineBreaks(config.commentSpacing);
+				}
+
+				// formatting style for this node
+				ConfigFormattingRules.CommentStyle style = comment.getCommentStyle();
+				if (style == null) {
+					if (valueLength != 0) {
+						// setting node
+						style = config.defaultNodeCommentFormat;
+					} else {
+						// probably a section, but it may be a list: the next line tells
+						waitForNextLine = true;
+					}
+				}
+
+				if (waitForNextLine) {
+					pendingLine = line.toString();
+					pendingComment = comment;
+					pendingOffset = lineOffset;
+				} else {
+					comment.writeComment(out, lineOffset, style);
+				}
+			}
+
+			// ignore scalars
+			index = lineOffset;
+			if (valueLength == 1 && (line.charAt(valueStart) == '|' || line.charAt(valueStart) == '>')) {
+				insideScalar = true;
+			}
+
+			if (waitForNextLine) {
+				return;
+			}
+		}
+
+		if (chars.length < line.length()) {
+			chars = new char[Math.max(line.length(), chars.length * 2)];
+		}
+
+		line.getChars(0, line.length(), chars, 0);
+		out.write(chars, 0, line.length());
+		out.write('\n');
+	}
+
+	private void writePending(@NotNull ConfigFormattingRules.CommentStyle style) throws IOException {
+		pendingComment.writeComment(out, pendingOffset, style);
+		out.write(pendingLine);
+		out.write('\n');
+
+		pendingLine = null;
+		pendingComment = null;
+	}
+
+	private void writeLineBreaks(int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * @return how many spaces the line starts with, or -1 if it is only spaces, see {@link Config#getOffset(String)}
+	 */
+	private static int getOffset(@NotNull CharSequence line) {
+		for (int i = 0; i < line.length(); ++i) {
+			if (line.charAt(i) != ' ') {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the first character in the range that {@link String#trim()} would keep, or -1 if there is none
+	 */
+	private static int firstNonBlank(@NotNull CharSequence line, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (line.charAt(i) > ' ') {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int lastNonBlank(@NotNull CharSequence line, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			if (line.charAt(i) > ' ') {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
@@ -18,7 +18,9 @@ import org.yaml.snakeyaml.representer.Representer;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -42,8 +44,6 @@ public class Config extends ConfigSection {
 	final Representer yamlRepresenter = new YamlRepresenter();
 	Yaml yaml;
 	Charset defaultCharset = StandardCharsets.UTF_8;
-	SaveTask saveTask;
-	Timer autosaveTimer;
 
 	////////////// Config settings ////////////////
 	/**
@@ -66,6 +66,23 @@ public class Config extends ConfigSection {
 	 */
 	boolean loadComments = true;
 
+	/**
+	 * keep a binary copy of the parsed file next to it, used to skip parsing while the file is unchanged
+	 */
+	boolean useSnapshot = false;
+
+	/**
+	 * reload the file when it is edited on disk
+	 */
+	boolean watchFile = false;
+
+	/**
+	 * modification time and size of the file after it was last saved, so the watcher can tell our own saves apart
+	 */
+	volatile long savedModified = -1, savedLength = -1;
+
+	final List<PathListener> changeListeners = new CopyOnWriteArrayList<>();
+
 	/**
 	 * Default comment applied to config nodes
 	 */
@@ -182,6 +199,76 @@ public class Config extends ConfigSection {
 		this.loadComments = loadComments;
 	}
 
+	public boolean getUseSnapshot() {
+		return useSnapshot;
+	}
+
+	/**
+	 * Should a binary snapshot of the parsed file be kept next to it? <br>
+	 * While the file is unchanged, loading reads the snapshot instead of parsing the YAML and comments again.
+	 * The snapshot is only used when its size, modification time and content hash match the file.
+	 *
+	 * @param useSnapshot set to true to keep a snapshot
+	 * @return this class
+	 */
+	@NotNull
+	public Config setUseSnapshot(boolean useSnapshot) {
+		this.useSnapshot = useSnapshot;
+		return this;
+	}
+
+	public boolean getWatchFile() {
+		return watchFile;
+	}
+
+	/**
+	 * Should the file be reloaded when it is edited on disk? <br>
+	 * Edits are picked up by one shared watcher thread and reloaded once the file stops changing,
+	 * see {@link ConfigWatcher}. Each changed value is passed to the listeners added with
+	 * {@link #addChangeListener(String, ConfigChangeListener)}.
+	 *
+	 * @param watchFile set to true to reload the file when it changes
+	 * @return this class
+	 */
+	@NotNull
+	public Config setWatchFile(boolean watchFile) {
+		if (watchFile == this.watchFile) {
+			return this;
+		}
+
+		this.watchFile = watchFile;
+
+		if (watchFile) {
+			try {
+				ConfigWatcher.watch(this);
+			} catch (IOException ex) {
+				this.watchFile = false;
+				(plugin != null ? plugin.getLogger() : Bukkit.getLogger()).log(Level.SEVERE, "Failed to watch config file: " + getFile().getName(), ex);
+			}
+		} else {
+			ConfigWatcher.unwatch(this);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Get notified about the values that change when the file is reloaded
+	 *
+	 * @param path     only values at or below this path are passed, or an empty string for every value
+	 * @param listener called once for each changed value
+	 * @return this class
+	 */
+	@NotNull
+	public Config addChangeListener(@NotNull String path, @NotNull ConfigChangeListener listener) {
+		changeListeners.add(new PathListener(path, listener));
+		return this;
+	}
+
+	public void removeChangeListener(@NotNull ConfigChangeListener listener) {
+		changeListeners.removeIf(entry -> entry.listener == listener);
+	}
+
 	public boolean getAutosave() {
 		return autosave;
 	}
@@ -365,20 +452,24 @@ public class Config extends ConfigSection {
 	}
 
 	public Config clearConfig(boolean clearDefaults) {
-		root.values.clear();
-		root.configComments.clear();
+		write(() -> {
+			draftValues = ConfigNode.EMPTY;
+			clearComments(false);
 
-		if (clearDefaults) {
-			root.defaultComments.clear();
-			root.defaults.clear();
-		}
+			if (clearDefaults) {
+				clearComments(true);
+				draftDefaults = ConfigNode.EMPTY;
+			}
+		});
 
 		return this;
 	}
 
 	public Config clearDefaults() {
-		root.defaultComments.clear();
-		root.defaults.clear();
+		write(() -> {
+			clearComments(true);
+			draftDefaults = ConfigNode.EMPTY;
+		});
 
 		return this;
 	}
@@ -387,19 +478,150 @@ public class Config extends ConfigSection {
 		return load(getFile());
 	}
 
+	/**
+	 * Load the file again, replacing every value that was loaded or set before. <br>
+	 * Other threads see either the old or the new values, never a mix of both,
+	 * and the old values are kept if the file could not be loaded.
+	 *
+	 * @return true if the file was loaded
+	 */
+	public boolean reload() {
+		ConfigTree before, after;
+
+		synchronized (lock) {
+			before = tree;
+
+			Comment lastHeader = headerComment, lastFooter = footerComment;
+
+			boolean loaded = tryWrite(() -> {
+				draftValues = ConfigNode.EMPTY;
+				clearComments(false);
+
+				return load();
+			});
+
+			// the values and comments were thrown away with the failed write
+			if (!loaded) {
+				headerComment = lastHeader;
+				footerComment = lastFooter;
+
+				return false;
+			}
+
+			after = tree;
+		}
+
+		if (!changeListeners.isEmpty() && before != after) {
+			fireChanges(before, after);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reload the file after the watcher saw it change, unless the change was our own save
+	 */
+	void reloadChangedFile() {
+		File file = getFile();
+
+		if (!file.exists() || (file.lastModified() == savedModified && file.length() == savedLength)) {
+			return;
+		}
+
+		reload();
+	}
+
+	private void fireChanges(@NotNull ConfigTree before, @NotNull ConfigTree after) {
+		Map<String, Object> oldValues = new HashMap<>(), oldDefaults = new HashMap<>();
+		Map<String, Object> newValues = new LinkedHashMap<>(), newDefaults = new HashMap<>();
+
+		collectLeaves(before.values, "", oldValues);
+		collectLeaves(after.values, "", newValues);
+
+		// defaults usually stay the same across a reload
+		boolean sameDefaults = before.defaults == after.defaults;
+
+		if (!sameDefaults) {
+			collectLeaves(before.defaults, "", oldDefaults);
+			collectLeaves(after.defaults, "", newDefaults);
+		}
+
+		Set<String> paths = new LinkedHashSet<>(newValues.keySet());
+		paths.addAll(oldValues.keySet());
+		paths.addAll(newDefaults.keySet());
+		paths.addAll(oldDefaults.keySet());
+
+		List<ConfigChange> changes = new ArrayList<>();
+
+		for (String path : paths) {
+			Object oldValue = oldValues.containsKey(path) ? oldValues.get(path) : sameDefaults ? get(after.defaults, path) : oldDefaults.get(path);
+			Object newValue = newValues.containsKey(path) ? newValues.get(path) : sameDefaults ? get(after.defaults, path) : newDefaults.get(path);
+
+			if (!Objects.equals(oldValue, newValue)) {
+				changes.add(new ConfigChange(this, path, oldValue, newValue));
+			}
+		}
+
+		if (changes.isEmpty()) {
+			return;
+		}
+
+		Runnable fire = () -> {
+			for (ConfigChange change : changes) {
+				for (PathListener entry : changeListeners) {
+					if (entry.matches(change.getPath(), pathChar)) {
+						try {
+							entry.listener.onChange(change);
+						} catch (Throwable t) {
+							(plugin != null ? plugin.getLogger() : Bukkit.getLogger()).log(Level.SEVERE, "Error handling change of config value " + change.getPath(), t);
+						}
+					}
+				}
+			}
+		};
+
+		// listeners usually touch the game, so hand them over to the main thread
+		if (plugin != null && plugin.isEnabled() && !Bukkit.isPrimaryThread()) {
+			Bukkit.getScheduler().runTask(plugin, fire);
+		} else {
+			fire.run();
+		}
+	}
+
+	/**
+	 * Put every value below the node that is not a section into the map, by its full path
+	 */
+	private void collectLeaves(@NotNull ConfigNode node, @NotNull String prefix, @NotNull Map<String, Object> leaves) {
+		for (ConfigNode child : node.getChildren()) {
+			String path = prefix + child.key;
+
+			if (child.isSet() && !(child.getValue() instanceof ConfigSection)) {
+				leaves.put(path, child.getValue());
+			}
+
+			collectLeaves(child, path + pathChar, leaves);
+		}
+	}
+
+	@Nullable
+	private Object get(@NotNull ConfigNode defaults, @NotNull String path) {
+		ConfigNode node = defaults.find(new String[0], path.split(Pattern.quote(String.valueOf(pathChar)), -1));
+
+		return node != null && node.isSet() && !(node.getValue() instanceof ConfigSection) ? node.getValue() : null;
+	}
+
 	public boolean load(@NotNull File file) {
 		Validate.notNull(file, "File cannot be null");
 		if (file.exists()) {
-			try (BufferedInputStream stream = new BufferedInputStream(new FileInputStream(file))) {
-				Charset charset = StandardCharsets.UTF_8;
-
-				// upgrade charset if file was saved in a more complex format
-				if (charset == StandardCharsets.UTF_16BE || charset == StandardCharsets.UTF_16LE) {
-					defaultCharset = StandardCharsets.UTF_16;
+			try {
+				if (useSnapshot) {
+					this.loadWithSnapshot(file);
+				} else {
+					try (BufferedInputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+						this.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+					}
 				}
 
-				this.load(new InputStreamReader(stream, charset));
-
 				return true;
 			} catch (IOException | InvalidConfigurationException ex) {
 				(plugin != null ? plugin.getLogger() : Bukkit.getLogger()).log(Level.SEVERE, "Failed to load config file: " + file.getName(), ex);
@@ -412,6 +634,54 @@ public class Config extends ConfigSection {
 	}
 
 	public void load(@NotNull Reader reader) throws IOException, InvalidConfigurationException {
+		this.loadFromString(readContents(reader));
+	}
+
+	private void loadWithSnapshot(@NotNull File file) throws IOException, InvalidConfigurationException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		ConfigSnapshot snapshot = ConfigSnapshot.read(file, bytes, this);
+
+		if (snapshot != null) {
+			write(() -> snapshot.apply(this));
+			return;
+		}
+
+		String contents = readContents(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+		Map<?, ?> input = this.parseYaml(contents);
+
+		if (input == null) {
+			return;
+		}
+
+		// remember what parsing the comments changes, so the snapshot can restore it
+		Comment oldHeader = headerComment, oldFooter = footerComment;
+		Map<String, Comment> oldComments = new HashMap<>(read().comments);
+		Map<String, Comment> comments = new LinkedHashMap<>();
+
+		write(() -> {
+			if (loadComments) {
+				this.parseComments(contents, input);
+			}
+
+			read().comments.forEach((path, comment) -> {
+				if (oldComments.get(path) != comment) {
+					comments.put(path, comment);
+				}
+			});
+
+			this.convertMapsToSections(input, this);
+		});
+
+		try {
+			new ConfigSnapshot(input, headerComment != oldHeader ? headerComment : null, footerComment != oldFooter ? footerComment : null, comments)
+					.write(file, bytes, this);
+		} catch (IOException ignored) {
+			// the file will be parsed again next time
+		}
+	}
+
+	@NotNull
+	private static String readContents(@NotNull Reader reader) throws IOException {
 		StringBuilder builder = new StringBuilder();
 
 		try (BufferedReader input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader)) {
@@ -426,27 +696,32 @@ public class Config extends ConfigSection {
 			}
 		}
 
-		this.loadFromString(builder.toString());
+		return builder.toString();
 	}
 
 	public void loadFromString(@NotNull String contents) throws InvalidConfigurationException {
-		Map<?, ?> input;
+		Map<?, ?> input = this.parseYaml(contents);
+
+		if (input != null) {
+			write(() -> {
+				if (loadComments) {
+					this.parseComments(contents, input);
+				}
+
+				this.convertMapsToSections(input, this);
+			});
+		}
+	}
 
+	@Nullable
+	private Map<?, ?> parseYaml(@NotNull String contents) throws InvalidConfigurationException {
 		try {
-			input = this.yaml.load(contents);
+			return this.yaml.load(contents);
 		} catch (YAMLException e2) {
 			throw new InvalidConfigurationException(e2);
 		} catch (ClassCastException e3) {
 			throw new InvalidConfigurationException("Top level is not a Map.");
 		}
-
-		if (input != null) {
-			if (loadComments) {
-				this.parseComments(contents, input);
-			}
-
-			this.convertMapsToSections(input, this);
-		}
 	}
 
 	protected void convertMapsToSections(@NotNull Map<?, ?> input, @NotNull ConfigSection section) {
@@ -534,14 +809,14 @@ public class Config extends ConfigSection {
 	}
 
 	public void deleteNonDefaultSettings() {
-		// Delete old config values (thread-safe)
-		List<String> defaultKeys = Arrays.asList(defaults.keySet().toArray(new String[0]));
+		// Delete old config values
+		write(() -> {
+			ConfigTree tree = read();
 
-		for (String key : values.keySet().toArray(new String[0])) {
-			if (!defaultKeys.contains(key)) {
-				values.remove(key);
+			if (tree.values.hasMissingIn(tree.defaults)) {
+				edit(false, null).retain(draftOwner, tree.defaults);
 			}
-		}
+		});
 	}
 
 	@Override
@@ -553,9 +828,8 @@ public class Config extends ConfigSection {
 
 	public void delaySave() {
 		// save async even if no plugin or if plugin disabled
-		if (saveTask == null && (changed || hasNewDefaults())) {
-			autosaveTimer = new Timer((plugin != null ? plugin.getName() + "-ConfigSave-" : "ConfigSave-") + getFile().getName());
-			autosaveTimer.schedule(saveTask = new SaveTask(), autosaveInterval * 1000L);
+		if (changed || hasNewDefaults()) {
+			SaveScheduler.schedule(getFile(), autosaveInterval * 1000L, this::saveChanges);
 		}
 	}
 
@@ -566,13 +840,7 @@ public class Config extends ConfigSection {
 			saved = save();
 		}
 
-		if (saveTask != null) {
-			//Close Threads
-			saveTask.cancel();
-			autosaveTimer.cancel();
-			saveTask = null;
-			autosaveTimer = null;
-		}
+		SaveScheduler.cancel(getFile());
 
 		return saved;
 	}
@@ -580,23 +848,13 @@ public class Config extends ConfigSection {
 	boolean hasNewDefaults() {
 		if (file != null && !file.exists()) return true;
 
-		for (String def : defaults.keySet()) {
-			if (!values.containsKey(def)) {
-				return true;
-			}
-		}
+		ConfigTree tree = read();
 
-		return false;
+		return tree.defaults.hasMissingIn(tree.values);
 	}
 
 	public boolean save() {
-		if (saveTask != null) {
-			//Close Threads
-			saveTask.cancel();
-			autosaveTimer.cancel();
-			saveTask = null;
-			autosaveTimer = null;
-		}
+		SaveScheduler.cancel(getFile());
 
 		return save(getFile());
 	}
@@ -613,44 +871,30 @@ public class Config extends ConfigSection {
 			file.getParentFile().mkdirs();
 		}
 
-		String data = this.saveToString();
-		try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(file), defaultCharset)) {
-			writer.write(data);
+		try {
+			SaveScheduler.write(file, defaultCharset, this::saveTo);
 		} catch (IOException ex) {
+			return false;
+		} catch (Throwable ex) {
+			Logger.getLogger(Config.class.getName()).log(Level.SEVERE, "Error saving config", ex);
+			delaySave();
+
 			return false;
 		}
 
+		if (file.equals(this.file)) {
+			savedModified = file.lastModified();
+			savedLength = file.length();
+		}
+
 		return true;
 	}
 
 	@NotNull
 	public String saveToString() {
 		try {
-			if (autoremove) {
-				deleteNonDefaultSettings();
-			}
-
-			yamlOptions.setIndent(indentation);
-			yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-			yamlOptions.setSplitLines(false);
-			yamlRepresenter.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-
 			StringWriter str = new StringWriter();
-
-			if (headerComment != null) {
-				headerComment.writeComment(str, 0, ConfigFormattingRules.CommentStyle.BLOCKED);
-				str.write("\n"); // add one space after the header
-			}
-
-			String dump = yaml.dump(this.getValues(false));
-			if (!dump.equals(BLANK_CONFIG)) {
-				writeComments(dump, str);
-			}
-
-			if (footerComment != null) {
-				str.write("\n");
-				footerComment.writeComment(str, 0, ConfigFormattingRules.CommentStyle.BLOCKED);
-			}
+			this.saveTo(str);
 
 			return str.toString();
 		} catch (Throwable ex) {
@@ -661,90 +905,47 @@ public class Config extends ConfigSection {
 		return "";
 	}
 
-	protected final Pattern yamlNode = Pattern.compile("^( *)([^:{}\\[\\],&*#?|\\-<>=!%@`]+):(.*)$");
-
-	protected void writeComments(String data, Writer out) throws IOException {
-		// line-by-line apply line spacing formatting and comments per-node
-		BufferedReader in = new BufferedReader(new StringReader(data));
-
-		String line;
-		boolean insideScalar = false;
-		boolean firstNode = true;
-		int index = 0;
-
-		LinkedList<String> currentPath = new LinkedList<>();
-		while ((line = in.readLine()) != null) {
-			// ignore comments and empty lines (there shouldn't be any, but just in case)
-			if (line.trim().startsWith("#") || line.isEmpty()) {
-				continue;
-			}
-
-			// check to see if this is a line that we can process
-			int lineOffset = getOffset(line);
-			insideScalar &= lineOffset <= index;
-			Matcher m;
-			if (!insideScalar && (m = yamlNode.matcher(line)).find()) {
-				// we found a config node! ^.^
-				// check to see what the full path is
-				int depth = (m.group(1).length() / indentation);
-				while (depth < currentPath.size()) {
-					currentPath.removeLast();
-				}
-
-				currentPath.add(m.group(2));
-				String path = currentPath.stream().collect(Collectors.joining(String.valueOf(pathChar)));
-
-				// if this is a root-level node, apply extra spacing if we aren't the first node
-				if (!firstNode && depth == 0 && rootNodeSpacing > 0) {
-					out.write((new String(new char[rootNodeSpacing])).replace("\0", "\n")); // yes it's silly, but it works :>
-				}
-				firstNode = false; // we're no longer on the first node
-
-				// insert the relavant comment
-				Comment comment = getComment(path);
-				if (comment != null) {
-					// add spacing between previous nodes and comments
-					if (depth != 0) {
-						out.write((new String(new char[commentSpacing])).replace("\0", "\n"));
-					}
+	/**
+	 * Write the config, comments included, to the writer as it is serialized,
+	 * without building the file in memory first
+	 *
+	 * @param out where to write the file to, it is not closed
+	 * @throws IOException if the writer failed
+	 */
+	public void saveTo(@NotNull Writer out) throws IOException {
+		if (autoremove) {
+			deleteNonDefaultSettings();
+		}
 
-					// formatting style for this node
-					ConfigFormattingRules.CommentStyle style = comment.getCommentStyle();
-					if (style == null) {
-						// check to see what type of node this is
-						if (!m.group(3).trim().isEmpty()) {
-							// setting node
-							style = defaultNodeCommentFormat;
-						} else {
-							// probably a section? (need to peek ahead to check if this is a list)
-							in.mark(1000);
-							String nextLine = in.readLine().trim();
-							in.reset();
-							if (nextLine.startsWith("-")) {
-								// not a section :P
-								style = defaultNodeCommentFormat;
-							} else {
-								style = defaultSectionCommentFormat;
-							}
-						}
-					}
+		yamlOptions.setIndent(indentation);
+		yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+		yamlOptions.setSplitLines(false);
+		yamlRepresenter.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
 
-					// write it down!
-					comment.writeComment(out, lineOffset, style);
-				}
+		if (headerComment != null) {
+			headerComment.writeComment(out, 0, ConfigFormattingRules.CommentStyle.BLOCKED);
+			out.write("\n"); // add one space after the header
+		}
 
-				// ignore scalars
-				index = lineOffset;
-				if (m.group(3).trim().equals("|") || m.group(3).trim().equals(">")) {
-					insideScalar = true;
-				}
-			}
+		CommentingWriter commenting = new CommentingWriter(this, out, true);
+		yaml.dump(this.getValues(false), commenting);
+		commenting.finish();
 
-			out.write(line);
+		if (footerComment != null) {
 			out.write("\n");
+			footerComment.writeComment(out, 0, ConfigFormattingRules.CommentStyle.BLOCKED);
 		}
 	}
 
+	protected final Pattern yamlNode = Pattern.compile("^( *)([^:{}\\[\\],&*#?|\\-<>=!%@`]+):(.*)$");
+
+	protected void writeComments(String data, Writer out) throws IOException {
+		// line-by-line apply line spacing formatting and comments per-node
+		CommentingWriter commenting = new CommentingWriter(this, out, false);
+		commenting.write(data);
+		commenting.finish();
+	}
+
 	protected static int getOffset(String s) {
 		char[] chars = s.toCharArray();
 		for (int i = 0; i < chars.length; ++i) {
@@ -756,10 +957,17 @@ public class Config extends ConfigSection {
 		return -1;
 	}
 
-	class SaveTask extends TimerTask {
-		@Override
-		public void run() {
-			saveChanges();
+	private static final class PathListener {
+		final String path;
+		final ConfigChangeListener listener;
+
+		PathListener(@NotNull String path, @NotNull ConfigChangeListener listener) {
+			this.path = path;
+			this.listener = listener;
+		}
+
+		boolean matches(@NotNull String changed, char pathChar) {
+			return path.isEmpty() || changed.equals(path) || (changed.startsWith(path) && changed.charAt(path.length()) == pathChar);
 		}
 	}
 }
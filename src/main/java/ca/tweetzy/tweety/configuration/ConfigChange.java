@@ -0,0 +1,68 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A value of a {@link Config} that changed when its file was reloaded
+ */
+public final class ConfigChange {
+	private final Config config;
+	private final String path;
+	private final Object oldValue, newValue;
+
+	ConfigChange(@NotNull Config config, @NotNull String path, @Nullable Object oldValue, @Nullable Object newValue) {
+		this.config = config;
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	@NotNull
+	public Config getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return the full path of the value
+	 */
+	@NotNull
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the value before the reload, or its default if it was not set
+	 */
+	@Nullable
+	public Object getOldValue() {
+		return oldValue;
+	}
+
+	/**
+	 * @return the value after the reload, or its default if it is not set anymore
+	 */
+	@Nullable
+	public Object getNewValue() {
+		return newValue;
+	}
+
+	/**
+	 * @return true if the value was not set and had no default before the reload
+	 */
+	public boolean isAdded() {
+		return oldValue == null;
+	}
+
+	/**
+	 * @return true if the value is not set and has no default after the reload
+	 */
+	public boolean isRemoved() {
+		return newValue == null;
+	}
+
+	@Override
+	public String toString() {
+		return "ConfigChange{" + path + ": " + oldValue + " -> " + newValue + "}";
+	}
+}
@@ -0,0 +1,18 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Notified about every value of a {@link Config} that changed when its file was reloaded,
+ * see {@link Config#addChangeListener(String, ConfigChangeListener)}
+ */
+@FunctionalInterface
+public interface ConfigChangeListener {
+
+	/**
+	 * Called once for each changed value, on the main thread while the plugin is enabled
+	 *
+	 * @param change the changed value
+	 */
+	void onChange(@NotNull ConfigChange change);
+}
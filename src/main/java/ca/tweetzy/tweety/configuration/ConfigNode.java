@@ -0,0 +1,249 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+/**
+ * One node of the tree a {@link ConfigSection} keeps its values or defaults in. <br>
+ * Nodes are addressed by their path parts, so lookups walk the path instead of building full path keys,
+ * and removing a node drops everything below it at once. <br>
+ * A node can only be changed by the write that created it. Other writes copy the nodes on the path
+ * they change, so a tree that was published to readers is never changed again.
+ */
+final class ConfigNode {
+
+	/**
+	 * a tree without any nodes
+	 */
+	static final ConfigNode EMPTY = new ConfigNode(null, (String) null);
+
+	final String key;
+
+	/**
+	 * the write that created this node
+	 */
+	private final Object owner;
+	private LinkedHashMap<String, ConfigNode> children;
+
+	/**
+	 * the value, or the {@link ConfigSection} of this node
+	 */
+	private Object value;
+
+	/**
+	 * false if this node only exists to hold the nodes below it
+	 */
+	private boolean isSet;
+
+	private ConfigNode(Object owner, String key) {
+		this.owner = owner;
+		this.key = key;
+	}
+
+	private ConfigNode(Object owner, ConfigNode copy) {
+		this.owner = owner;
+		this.key = copy.key;
+		this.value = copy.value;
+		this.isSet = copy.isSet;
+		this.children = copy.children != null ? new LinkedHashMap<>(copy.children) : null;
+	}
+
+	@Nullable
+	Object getValue() {
+		return value;
+	}
+
+	boolean isSet() {
+		return isSet;
+	}
+
+	@Nullable
+	ConfigNode getChild(@NotNull String key) {
+		return children != null ? children.get(key) : null;
+	}
+
+	@NotNull
+	Collection<ConfigNode> getChildren() {
+		return children != null ? Collections.unmodifiableCollection(children.values()) : Collections.emptyList();
+	}
+
+	boolean isEmpty() {
+		return children == null || children.isEmpty();
+	}
+
+	/**
+	 * Find a node below this one
+	 *
+	 * @param base path parts of the section the path is relative to
+	 * @param path path parts below the section, or null for the section itself
+	 * @return the node, or null if it does not exist
+	 */
+	@Nullable
+	ConfigNode find(@NotNull String[] base, @Nullable String[] path) {
+		ConfigNode node = this;
+
+		for (String part : base) {
+			if ((node = node.getChild(part)) == null) {
+				return null;
+			}
+		}
+
+		if (path != null) {
+			for (String part : path) {
+				if ((node = node.getChild(part)) == null) {
+					return null;
+				}
+			}
+		}
+
+		return node;
+	}
+
+	/**
+	 * @return true if a node below this one is set while the node at the same path below the other node is not
+	 */
+	boolean hasMissingIn(@Nullable ConfigNode other) {
+		for (ConfigNode child : getChildren()) {
+			ConfigNode match = other != null ? other.getChild(child.key) : null;
+
+			if ((child.isSet && (match == null || !match.isSet)) || child.hasMissingIn(match)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	///////////// Writing, only allowed on nodes of the running write /////////////
+
+	/**
+	 * @return this node if it belongs to the write, a copy of it that does otherwise
+	 */
+	@NotNull
+	ConfigNode editable(@NotNull Object owner) {
+		return this.owner == owner ? this : new ConfigNode(owner, this);
+	}
+
+	/**
+	 * Get a child of this node that can be changed by the write, creating it if it does not exist
+	 */
+	@NotNull
+	ConfigNode editChild(@NotNull Object owner, @NotNull String key) {
+		if (children == null) {
+			children = new LinkedHashMap<>();
+		}
+
+		ConfigNode child = children.get(key);
+
+		if (child == null) {
+			children.put(key, child = new ConfigNode(owner, key));
+		} else if (child.owner != owner) {
+			children.put(key, child = new ConfigNode(owner, child));
+		}
+
+		return child;
+	}
+
+	/**
+	 * Find a node below this one that can be changed by the write, creating it and any missing nodes on the way
+	 *
+	 * @param base path parts of the section the path is relative to
+	 * @param path path parts below the section, or null for the section itself
+	 * @return the node
+	 */
+	@NotNull
+	ConfigNode edit(@NotNull Object owner, @NotNull String[] base, @Nullable String[] path) {
+		ConfigNode node = this;
+
+		for (String part : base) {
+			node = node.editChild(owner, part);
+		}
+
+		if (path != null) {
+			for (String part : path) {
+				node = node.editChild(owner, part);
+			}
+		}
+
+		return node;
+	}
+
+	/**
+	 * Remove the node below this one and everything below it, along with parents that were only holding it
+	 *
+	 * @param base path parts of the section the path is relative to
+	 * @param path path parts below the section
+	 */
+	void remove(@NotNull Object owner, @NotNull String[] base, @NotNull String[] path) {
+		if (find(base, path) == null) {
+			return;
+		}
+
+		String[] parts = new String[base.length + path.length];
+		System.arraycopy(base, 0, parts, 0, base.length);
+		System.arraycopy(path, 0, parts, base.length, path.length);
+
+		ConfigNode[] nodes = new ConfigNode[parts.length];
+		nodes[0] = this;
+
+		for (int i = 1; i < parts.length; i++) {
+			nodes[i] = nodes[i - 1].editChild(owner, parts[i - 1]);
+		}
+
+		for (int i = parts.length - 1; i >= 0; i--) {
+			nodes[i].children.remove(parts[i]);
+
+			if (i == 0 || nodes[i].isSet || !nodes[i].isEmpty()) {
+				break;
+			}
+		}
+	}
+
+	void set(@Nullable Object value) {
+		this.value = value;
+		this.isSet = true;
+	}
+
+	void unset() {
+		this.value = null;
+		this.isSet = false;
+	}
+
+	void clearChildren() {
+		children = null;
+	}
+
+	/**
+	 * Remove every node below this one that is not set at the same path below the other node
+	 */
+	void retain(@NotNull Object owner, @NotNull ConfigNode other) {
+		if (children == null) {
+			return;
+		}
+
+		for (ConfigNode child : new ArrayList<>(children.values())) {
+			ConfigNode match = other.getChild(child.key);
+
+			if (match == null) {
+				children.remove(child.key);
+			} else if ((child.isSet && !match.isSet) || child.hasMissingIn(match)) {
+				ConfigNode edited = editChild(owner, child.key);
+
+				if (!match.isSet) {
+					edited.unset();
+				}
+
+				edited.retain(owner, match);
+
+				if (!edited.isSet && edited.isEmpty()) {
+					children.remove(child.key);
+				}
+			}
+		}
+	}
+}
@@ -7,22 +7,44 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Configuration for a specific node
  */
 public class ConfigSection extends MemoryConfiguration {
+	private static final int MAX_SPLIT_PATHS = 4096;
+
 	final String fullPath, nodeKey;
+	/**
+	 * fullPath split into its parts, used to find the node of this section
+	 */
+	final String[] pathParts;
 	final ConfigSection root;
 	final ConfigSection parent;
 	protected int indentation = 2; // between 2 and 9 (inclusive)
 	protected char pathChar = '.';
-	final HashMap<String, Comment> configComments;
-	final HashMap<String, Comment> defaultComments;
-	final LinkedHashMap<String, Object> defaults;
-	final LinkedHashMap<String, Object> values;
+	/**
+	 * Internal root state: the published values, defaults and comments
+	 */
+	volatile ConfigTree tree;
+	/**
+	 * Internal root state: the thread running a write, and the version it is building
+	 */
+	volatile Thread writer;
+	ConfigNode draftValues, draftDefaults;
+	Map<String, Comment> draftComments, draftDefaultComments;
+	Object draftOwner;
+	/**
+	 * Internal root state: the part of the running write that copied each comment map, so it can change it in place
+	 */
+	Object draftCommentsOwner, draftDefaultCommentsOwner;
+	/**
+	 * paths already split into their parts, so reads don't have to split them again
+	 */
+	final Map<String, String[]> splitPaths;
 	/**
 	 * Internal root state: if any configuration value has changed from file state
 	 */
@@ -35,11 +57,10 @@ public class ConfigSection extends MemoryConfiguration {
 		this.parent = null;
 		isDefault = false;
 		nodeKey = fullPath = "";
+		pathParts = new String[0];
 
-		configComments = new HashMap<>();
-		defaultComments = new HashMap<>();
-		defaults = new LinkedHashMap<>();
-		values = new LinkedHashMap<>();
+		tree = ConfigTree.EMPTY;
+		splitPaths = new ConcurrentHashMap<>();
 	}
 
 	ConfigSection(ConfigSection root, ConfigSection parent, String nodeKey, boolean isDefault) {
@@ -47,10 +68,9 @@ public class ConfigSection extends MemoryConfiguration {
 		this.parent = parent;
 		this.nodeKey = nodeKey;
 		this.fullPath = nodeKey != null ? parent.fullPath + nodeKey + root.pathChar : parent.fullPath;
+		this.pathParts = fullPath.isEmpty() ? new String[0] : fullPath.substring(0, fullPath.length() - 1).split(Pattern.quote(String.valueOf(root.pathChar)), -1);
 		this.isDefault = isDefault;
-		configComments = defaultComments = null;
-		defaults = null;
-		values = null;
+		splitPaths = null;
 	}
 
 	public int getIndent() {
@@ -74,11 +94,14 @@ public class ConfigSection extends MemoryConfiguration {
 	 * @param pathChar character to use
 	 */
 	public void setPathSeparator(char pathChar) {
-		if (!root.values.isEmpty() || !root.defaults.isEmpty()) {
+		ConfigTree tree = read();
+
+		if (!tree.values.isEmpty() || !tree.defaults.isEmpty()) {
 			throw new RuntimeException("Path change after config initialization");
 		}
 
 		root.pathChar = pathChar;
+		root.splitPaths.clear();
 	}
 
 	public char getPathSeparator() {
@@ -110,58 +133,58 @@ public class ConfigSection extends MemoryConfiguration {
 		if (path.indexOf(root.pathChar) != -1) {
 			// if any intermediate nodes don't exist, create them
 			String[] pathParts = path.split(Pattern.quote(String.valueOf(root.pathChar)));
-			StringBuilder nodePath = new StringBuilder(fullPath);
-			LinkedHashMap<String, Object> writeTo = useDefault ? root.defaults : root.values;
-			ConfigSection travelNode = this;
 
-			synchronized (root.lock) {
+			write(() -> {
+				ConfigNode node = edit(useDefault, null);
+				ConfigSection travelNode = this;
+
 				for (int i = 0; i < pathParts.length - 1; ++i) {
-					final String node = (i != 0 ? nodePath.append(root.pathChar) : nodePath).append(pathParts[i]).toString();
+					node = node.editChild(root.draftOwner, pathParts[i]);
 
-					if (!(writeTo.get(node) instanceof ConfigSection)) {
-						writeTo.put(node, travelNode = new ConfigSection(root, travelNode, pathParts[i], useDefault));
+					if (!(node.getValue() instanceof ConfigSection)) {
+						node.set(travelNode = new ConfigSection(root, travelNode, pathParts[i], useDefault));
 					} else {
-						travelNode = (ConfigSection) writeTo.get(node);
+						travelNode = (ConfigSection) node.getValue();
 					}
 				}
-			}
+			});
 		}
 	}
 
 	@NotNull
 	public ConfigSection createDefaultSection(@NotNull String path) {
-		createNodePath(path, true);
 		ConfigSection section = new ConfigSection(root, this, path, true);
 
-		synchronized (root.lock) {
-			root.defaults.put(fullPath + path, section);
-		}
+		write(() -> {
+			createNodePath(path, true);
+			edit(true, splitPath(path)).set(section);
+		});
 
 		return section;
 	}
 
 	@NotNull
 	public ConfigSection createDefaultSection(@NotNull String path, String... comment) {
-		createNodePath(path, true);
 		ConfigSection section = new ConfigSection(root, this, path, true);
 
-		synchronized (root.lock) {
-			root.defaults.put(fullPath + path, section);
-			root.defaultComments.put(fullPath + path, new Comment(comment));
-		}
+		write(() -> {
+			createNodePath(path, true);
+			edit(true, splitPath(path)).set(section);
+			editComments(true).put(fullPath + path, new Comment(comment));
+		});
 
 		return section;
 	}
 
 	@NotNull
 	public ConfigSection createDefaultSection(@NotNull String path, ConfigFormattingRules.CommentStyle commentStyle, String... comment) {
-		createNodePath(path, true);
 		ConfigSection section = new ConfigSection(root, this, path, true);
 
-		synchronized (root.lock) {
-			root.defaults.put(fullPath + path, section);
-			root.defaultComments.put(fullPath + path, new Comment(commentStyle, comment));
-		}
+		write(() -> {
+			createNodePath(path, true);
+			edit(true, splitPath(path)).set(section);
+			editComments(true).put(fullPath + path, new Comment(commentStyle, comment));
+		});
 
 		return section;
 	}
@@ -178,13 +201,7 @@ public class ConfigSection extends MemoryConfiguration {
 
 	@NotNull
 	public ConfigSection setComment(@NotNull String path, @Nullable Comment comment) {
-		synchronized (root.lock) {
-			if (isDefault) {
-				root.defaultComments.put(fullPath + path, comment);
-			} else {
-				root.configComments.put(fullPath + path, comment);
-			}
-		}
+		write(() -> editComments(isDefault).put(fullPath + path, comment));
 
 		return this;
 	}
@@ -196,9 +213,7 @@ public class ConfigSection extends MemoryConfiguration {
 
 	@NotNull
 	public ConfigSection setDefaultComment(@NotNull String path, @Nullable List<String> lines) {
-		synchronized (root.lock) {
-			root.defaultComments.put(fullPath + path, new Comment(lines));
-		}
+		write(() -> editComments(true).put(fullPath + path, new Comment(lines)));
 
 		return this;
 	}
@@ -210,51 +225,36 @@ public class ConfigSection extends MemoryConfiguration {
 
 	@NotNull
 	public ConfigSection setDefaultComment(@NotNull String path, ConfigFormattingRules.CommentStyle commentStyle, @Nullable List<String> lines) {
-		synchronized (root.lock) {
-			root.defaultComments.put(fullPath + path, new Comment(commentStyle, lines));
-		}
+		write(() -> editComments(true).put(fullPath + path, new Comment(commentStyle, lines)));
 
 		return this;
 	}
 
 	@NotNull
 	public ConfigSection setDefaultComment(@NotNull String path, @Nullable Comment comment) {
-		synchronized (root.lock) {
-			root.defaultComments.put(fullPath + path, comment);
-		}
+		write(() -> editComments(true).put(fullPath + path, comment));
 
 		return this;
 	}
 
 	@Nullable
 	public Comment getComment(@NotNull String path) {
-		Comment result = root.configComments.get(fullPath + path);
-
-		if (result == null) {
-			result = root.defaultComments.get(fullPath + path);
-		}
-
-		return result;
+		return read().getComment(fullPath + path);
 	}
 
 	@Nullable
 	public String getCommentString(@NotNull String path) {
-		Comment result = root.configComments.get(fullPath + path);
-
-		if (result == null) {
-			result = root.defaultComments.get(fullPath + path);
-		}
+		Comment result = read().getComment(fullPath + path);
 
 		return result != null ? result.toString() : null;
 	}
 
 	@Override
 	public void addDefault(@NotNull String path, @Nullable Object value) {
-		createNodePath(path, true);
-
-		synchronized (root.lock) {
-			root.defaults.put(fullPath + path, value);
-		}
+		write(() -> {
+			createNodePath(path, true);
+			edit(true, splitPath(path)).set(value);
+		});
 	}
 
 	@Override
@@ -265,15 +265,13 @@ public class ConfigSection extends MemoryConfiguration {
 
 	@Override
 	public void setDefaults(Configuration c) {
-		if (fullPath.isEmpty()) {
-			root.defaults.clear();
-		} else {
-			root.defaults.keySet().stream()
-					.filter(k -> k.startsWith(fullPath))
-					.forEach(root.defaults::remove);
-		}
+		write(() -> {
+			if (read().defaults.find(pathParts, null) != null) {
+				edit(true, null).clearChildren();
+			}
 
-		addDefaults(c);
+			addDefaults(c);
+		});
 	}
 
 	@Override
@@ -295,27 +293,10 @@ public class ConfigSection extends MemoryConfiguration {
 	@Override
 	public Set<String> getKeys(boolean deep) {
 		LinkedHashSet<String> result = new LinkedHashSet<>();
-		int pathIndex = fullPath.lastIndexOf(root.pathChar);
-
-		if (deep) {
-			result.addAll(root.defaults.keySet().stream()
-					.filter(k -> k.startsWith(fullPath))
-					.map(k -> !k.endsWith(String.valueOf(root.pathChar)) ? k.substring(pathIndex + 1) : k.substring(pathIndex + 1, k.length() - 1))
-					.collect(Collectors.toCollection(LinkedHashSet::new)));
-			result.addAll(root.values.keySet().stream()
-					.filter(k -> k.startsWith(fullPath))
-					.map(k -> !k.endsWith(String.valueOf(root.pathChar)) ? k.substring(pathIndex + 1) : k.substring(pathIndex + 1, k.length() - 1))
-					.collect(Collectors.toCollection(LinkedHashSet::new)));
-		} else {
-			result.addAll(root.defaults.keySet().stream()
-					.filter(k -> k.startsWith(fullPath) && k.lastIndexOf(root.pathChar) == pathIndex)
-					.map(k -> !k.endsWith(String.valueOf(root.pathChar)) ? k.substring(pathIndex + 1) : k.substring(pathIndex + 1, k.length() - 1))
-					.collect(Collectors.toCollection(LinkedHashSet::new)));
-			result.addAll(root.values.keySet().stream()
-					.filter(k -> k.startsWith(fullPath) && k.lastIndexOf(root.pathChar) == pathIndex)
-					.map(k -> !k.endsWith(String.valueOf(root.pathChar)) ? k.substring(pathIndex + 1) : k.substring(pathIndex + 1, k.length() - 1))
-					.collect(Collectors.toCollection(LinkedHashSet::new)));
-		}
+		ConfigTree tree = read();
+
+		collectKeys(tree.defaults.find(pathParts, null), null, deep, result);
+		collectKeys(tree.values.find(pathParts, null), null, deep, result);
 
 		return result;
 	}
@@ -324,53 +305,50 @@ public class ConfigSection extends MemoryConfiguration {
 	@Override
 	public Map<String, Object> getValues(boolean deep) {
 		LinkedHashMap<String, Object> result = new LinkedHashMap<>();
-		int pathIndex = fullPath.lastIndexOf(root.pathChar);
-
-		if (deep) {
-			result.putAll((Map<String, Object>) root.defaults.entrySet().stream()
-					.filter(k -> k.getKey().startsWith(fullPath))
-					.collect(Collectors.toMap(
-							e -> !e.getKey().endsWith(String.valueOf(root.pathChar)) ? e.getKey().substring(pathIndex + 1) : e.getKey().substring(pathIndex + 1, e.getKey().length() - 1),
-							Map.Entry::getValue,
-							(v1, v2) -> {
-								throw new IllegalStateException();
-							}, // never going to be merging keys
-							LinkedHashMap::new)));
-
-			result.putAll((Map<String, Object>) root.values.entrySet().stream()
-					.filter(k -> k.getKey().startsWith(fullPath))
-					.collect(Collectors.toMap(
-							e -> !e.getKey().endsWith(String.valueOf(root.pathChar)) ? e.getKey().substring(pathIndex + 1) : e.getKey().substring(pathIndex + 1, e.getKey().length() - 1),
-							Map.Entry::getValue,
-							(v1, v2) -> {
-								throw new IllegalStateException();
-							}, // never going to be merging keys
-							LinkedHashMap::new)));
-		} else {
-			result.putAll((Map<String, Object>) root.defaults.entrySet().stream()
-					.filter(k -> k.getKey().startsWith(fullPath) && k.getKey().lastIndexOf(root.pathChar) == pathIndex)
-					.collect(Collectors.toMap(
-							e -> !e.getKey().endsWith(String.valueOf(root.pathChar)) ? e.getKey().substring(pathIndex + 1) : e.getKey().substring(pathIndex + 1, e.getKey().length() - 1),
-							Map.Entry::getValue,
-							(v1, v2) -> {
-								throw new IllegalStateException();
-							}, // never going to be merging keys
-							LinkedHashMap::new)));
-
-			result.putAll((Map<String, Object>) root.values.entrySet().stream()
-					.filter(k -> k.getKey().startsWith(fullPath) && k.getKey().lastIndexOf(root.pathChar) == pathIndex)
-					.collect(Collectors.toMap(
-							e -> !e.getKey().endsWith(String.valueOf(root.pathChar)) ? e.getKey().substring(pathIndex + 1) : e.getKey().substring(pathIndex + 1, e.getKey().length() - 1),
-							Map.Entry::getValue,
-							(v1, v2) -> {
-								throw new IllegalStateException();
-							}, // never going to be merging keys
-							LinkedHashMap::new)));
-		}
+		ConfigTree tree = read();
+
+		collectValues(tree.defaults.find(pathParts, null), null, deep, result);
+		collectValues(tree.values.find(pathParts, null), null, deep, result);
 
 		return result;
 	}
 
+	private void collectKeys(@Nullable ConfigNode node, @Nullable String prefix, boolean deep, @NotNull Set<String> result) {
+		if (node == null) {
+			return;
+		}
+
+		for (ConfigNode child : node.getChildren()) {
+			String key = prefix != null ? prefix + root.pathChar + child.key : child.key;
+
+			if (child.isSet()) {
+				result.add(key);
+			}
+
+			if (deep) {
+				collectKeys(child, key, true, result);
+			}
+		}
+	}
+
+	private void collectValues(@Nullable ConfigNode node, @Nullable String prefix, boolean deep, @NotNull Map<String, Object> result) {
+		if (node == null) {
+			return;
+		}
+
+		for (ConfigNode child : node.getChildren()) {
+			String key = prefix != null ? prefix + root.pathChar + child.key : child.key;
+
+			if (child.isSet()) {
+				result.put(key, child.getValue());
+			}
+
+			if (deep) {
+				collectValues(child, key, true, result);
+			}
+		}
+	}
+
 	@NotNull
 	public List<ConfigSection> getSections(String path) {
 		ConfigSection rootSection = getConfigurationSection(path);
@@ -390,17 +368,199 @@ public class ConfigSection extends MemoryConfiguration {
 
 	@Override
 	public boolean contains(@NotNull String path) {
-		return root.defaults.containsKey(fullPath + path) || root.values.containsKey(fullPath + path);
+		ConfigTree tree = read();
+
+		return isSet(tree.defaults, path) || isSet(tree.values, path);
 	}
 
 	@Override
 	public boolean contains(@NotNull String path, boolean ignoreDefault) {
-		return (!ignoreDefault && root.defaults.containsKey(fullPath + path)) || root.values.containsKey(fullPath + path);
+		ConfigTree tree = read();
+
+		return (!ignoreDefault && isSet(tree.defaults, path)) || isSet(tree.values, path);
 	}
 
 	@Override
 	public boolean isSet(@NotNull String path) {
-		return root.defaults.get(fullPath + path) != null || root.values.get(fullPath + path) != null;
+		ConfigTree tree = read();
+
+		return getValue(tree.defaults, path) != null || getValue(tree.values, path) != null;
+	}
+
+	/**
+	 * @return the values and defaults to read: the ones this thread is writing, or the published ones
+	 */
+	@NotNull
+	ConfigTree read() {
+		return root.writer == Thread.currentThread() ? new ConfigTree(root.draftValues, root.draftDefaults, root.draftComments, root.draftDefaultComments) : root.tree;
+	}
+
+	/**
+	 * Make several changes at once. Other threads keep seeing the config as it was until all changes are done,
+	 * and if the changes throw, none of them are kept. <br>
+	 * Every single change copies the nodes on its path, so changing many values this way is also faster.
+	 *
+	 * @param changes the changes to make
+	 */
+	public void update(@NotNull Runnable changes) {
+		write(changes);
+	}
+
+	/**
+	 * Run changes to the values or defaults as one write. <br>
+	 * Inside a running write the changes simply become part of it.
+	 */
+	void write(@NotNull Runnable changes) {
+		synchronized (root.lock) {
+			if (root.writer == Thread.currentThread()) {
+				changes.run();
+				return;
+			}
+
+			tryWrite(() -> {
+				changes.run();
+				return true;
+			});
+		}
+	}
+
+	/**
+	 * Run changes to the values or defaults as one write. Other threads keep reading the previous version
+	 * until the outermost write is done, and then see all of its changes at once.
+	 *
+	 * @param changes the changes, returning false or throwing throws them away
+	 * @return true if the changes were kept
+	 */
+	boolean tryWrite(@NotNull BooleanSupplier changes) {
+		synchronized (root.lock) {
+			boolean outermost = root.writer == null;
+			Object lastOwner = root.draftOwner;
+
+			if (outermost) {
+				root.draftValues = root.tree.values;
+				root.draftDefaults = root.tree.defaults;
+				root.draftComments = root.tree.comments;
+				root.draftDefaultComments = root.tree.defaultComments;
+				root.writer = Thread.currentThread();
+			}
+
+			// nodes changed by an earlier part of the write are copied again, so this part can be thrown away on its own
+			ConfigNode lastValues = root.draftValues, lastDefaults = root.draftDefaults;
+			Map<String, Comment> lastComments = root.draftComments, lastDefaultComments = root.draftDefaultComments;
+			root.draftOwner = new Object();
+			boolean keep = false;
+
+			try {
+				return keep = changes.getAsBoolean();
+			} finally {
+				if (!keep) {
+					root.draftValues = lastValues;
+					root.draftDefaults = lastDefaults;
+					root.draftComments = lastComments;
+					root.draftDefaultComments = lastDefaultComments;
+				}
+
+				root.draftOwner = lastOwner;
+
+				if (outermost) {
+					if (keep) {
+						root.tree = new ConfigTree(root.draftValues, root.draftDefaults, root.draftComments, root.draftDefaultComments);
+					}
+
+					root.writer = null;
+					root.draftValues = root.draftDefaults = null;
+					root.draftComments = root.draftDefaultComments = null;
+					root.draftCommentsOwner = root.draftDefaultCommentsOwner = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a node of the running write that can be changed, creating it if needed
+	 *
+	 * @param useDefault true to change the defaults
+	 * @param path       path parts below this section, or null for this section
+	 */
+	@NotNull
+	ConfigNode edit(boolean useDefault, @Nullable String[] path) {
+		if (useDefault) {
+			root.draftDefaults = root.draftDefaults.editable(root.draftOwner);
+			return root.draftDefaults.edit(root.draftOwner, pathParts, path);
+		}
+
+		root.draftValues = root.draftValues.editable(root.draftOwner);
+		return root.draftValues.edit(root.draftOwner, pathParts, path);
+	}
+
+	/**
+	 * Get the comments of the running write that can be changed, copying them the first time this part of the write changes them
+	 *
+	 * @param useDefault true to change the default comments
+	 */
+	@NotNull
+	Map<String, Comment> editComments(boolean useDefault) {
+		if (useDefault) {
+			if (root.draftDefaultCommentsOwner != root.draftOwner) {
+				root.draftDefaultComments = new HashMap<>(root.draftDefaultComments);
+				root.draftDefaultCommentsOwner = root.draftOwner;
+			}
+
+			return root.draftDefaultComments;
+		}
+
+		if (root.draftCommentsOwner != root.draftOwner) {
+			root.draftComments = new HashMap<>(root.draftComments);
+			root.draftCommentsOwner = root.draftOwner;
+		}
+
+		return root.draftComments;
+	}
+
+	/**
+	 * Remove every comment in the running write
+	 *
+	 * @param useDefault true to remove the default comments
+	 */
+	void clearComments(boolean useDefault) {
+		if (useDefault) {
+			root.draftDefaultComments = Collections.emptyMap();
+			root.draftDefaultCommentsOwner = null;
+		} else {
+			root.draftComments = Collections.emptyMap();
+			root.draftCommentsOwner = null;
+		}
+	}
+
+	@NotNull
+	private String[] splitPath(@NotNull String path) {
+		String[] parts = root.splitPaths.get(path);
+
+		if (parts == null) {
+			parts = path.split(Pattern.quote(String.valueOf(root.pathChar)), -1);
+
+			// paths built from player names and the like would grow this forever, start over once it is full
+			if (root.splitPaths.size() >= MAX_SPLIT_PATHS) {
+				root.splitPaths.clear();
+			}
+
+			root.splitPaths.put(path, parts);
+		}
+
+		return parts;
+	}
+
+	private boolean isSet(@NotNull ConfigNode tree, @NotNull String path) {
+		ConfigNode node = tree.find(pathParts, splitPath(path));
+
+		return node != null && node.isSet();
+	}
+
+	@Nullable
+	private Object getValue(@NotNull ConfigNode tree, @NotNull String path) {
+		ConfigNode node = tree.find(pathParts, splitPath(path));
+
+		return node != null ? node.getValue() : null;
 	}
 
 	@Override
@@ -431,10 +591,11 @@ public class ConfigSection extends MemoryConfiguration {
 	@Nullable
 	@Override
 	public Object get(@NotNull String path) {
-		Object result = root.values.get(fullPath + path);
+		ConfigTree tree = read();
+		Object result = getValue(tree.values, path);
 
 		if (result == null) {
-			result = root.defaults.get(fullPath + path);
+			result = getValue(tree.defaults, path);
 		}
 
 		return result;
@@ -443,7 +604,7 @@ public class ConfigSection extends MemoryConfiguration {
 	@Nullable
 	@Override
 	public Object get(@NotNull String path, @Nullable Object def) {
-		Object result = root.values.get(fullPath + path);
+		Object result = getValue(read().values, path);
 
 		return result != null ? result : def;
 	}
@@ -455,26 +616,31 @@ public class ConfigSection extends MemoryConfiguration {
 			return;
 		}
 
-		createNodePath(path, false);
-		Object last;
-		synchronized (root.lock) {
+		write(() -> {
+			createNodePath(path, false);
+
 			if (value != null) {
-				root.changed |= (last = root.values.put(fullPath + path, value)) != value;
+				ConfigNode node = edit(false, splitPath(path));
+				Object last = node.getValue();
+
+				if (last != value && last instanceof ConfigSection) {
+					// clean up orphaned nodes
+					node.clearChildren();
+				}
+
+				node.set(value);
+				root.changed |= last != value;
 			} else {
-				root.changed |= (last = root.values.remove(fullPath + path)) != null;
-			}
-		}
+				ConfigNode node = read().values.find(pathParts, splitPath(path));
 
-		if (last != value && last instanceof ConfigSection) {
-			// clean up orphaned nodes
-			final String trim = fullPath + path + root.pathChar;
-			synchronized (root.lock) {
-				root.values.keySet().stream()
-						.filter(k -> k.startsWith(trim))
-						.collect(Collectors.toSet())
-						.forEach(root.values::remove);
+				if (node != null && node.isSet()) {
+					// removes the orphaned nodes as well
+					root.draftValues = root.draftValues.editable(root.draftOwner);
+					root.draftValues.remove(root.draftOwner, pathParts, splitPath(path));
+					root.changed |= node.getValue() != null;
+				}
 			}
-		}
+		});
 
 		onChange();
 	}
@@ -536,12 +702,12 @@ public class ConfigSection extends MemoryConfiguration {
 	@NotNull
 	@Override
 	public ConfigSection createSection(@NotNull String path) {
-		createNodePath(path, false);
 		ConfigSection section = new ConfigSection(root, this, path, false);
 
-		synchronized (root.lock) {
-			root.values.put(fullPath + path, section);
-		}
+		write(() -> {
+			createNodePath(path, false);
+			edit(false, splitPath(path)).set(section);
+		});
 
 		root.changed = true;
 		onChange();
@@ -566,12 +732,12 @@ public class ConfigSection extends MemoryConfiguration {
 
 	@NotNull
 	public ConfigSection createSection(@NotNull String path, @Nullable ConfigFormattingRules.CommentStyle commentStyle, @Nullable List<String> comment) {
-		createNodePath(path, false);
 		ConfigSection section = new ConfigSection(root, this, path, false);
 
-		synchronized (root.lock) {
-			root.values.put(fullPath + path, section);
-		}
+		write(() -> {
+			createNodePath(path, false);
+			edit(false, splitPath(path)).set(section);
+		});
 
 		setComment(path, commentStyle, comment);
 		root.changed = true;
@@ -583,21 +749,21 @@ public class ConfigSection extends MemoryConfiguration {
 	@NotNull
 	@Override
 	public ConfigSection createSection(@NotNull String path, Map<?, ?> map) {
-		createNodePath(path, false);
 		ConfigSection section = new ConfigSection(root, this, path, false);
 
-		synchronized (root.lock) {
-			root.values.put(fullPath + path, section);
-		}
+		write(() -> {
+			createNodePath(path, false);
+			edit(false, splitPath(path)).set(section);
 
-		for (Map.Entry<?, ?> entry : map.entrySet()) {
-			if (entry.getValue() instanceof Map) {
-				section.createSection(entry.getKey().toString(), (Map<?, ?>) entry.getValue());
-				continue;
-			}
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				if (entry.getValue() instanceof Map) {
+					section.createSection(entry.getKey().toString(), (Map<?, ?>) entry.getValue());
+					continue;
+				}
 
-			section.set(entry.getKey().toString(), entry.getValue());
-		}
+				section.set(entry.getKey().toString(), entry.getValue());
+			}
+		});
 
 		root.changed = true;
 		onChange();
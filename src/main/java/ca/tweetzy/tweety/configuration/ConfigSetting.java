@@ -1,17 +1,31 @@
 package ca.tweetzy.tweety.configuration;
 
-import ca.tweetzy.tweety.TweetyPlugin;
+import ca.tweetzy.tweety.model.MessageTemplate;
+import ca.tweetzy.tweety.model.TweetySound;
 import ca.tweetzy.tweety.remain.comp.CompMaterial;
+import net.md_5.bungee.api.chat.BaseComponent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
-import java.util.logging.Level;
 
 public class ConfigSetting {
 	final Config config;
 	final String key;
 
+	/**
+	 * converted values, created on first use
+	 */
+	private ConfigValue<String> coloredString;
+	private ConfigValue<List<String>> coloredStringList;
+	private ConfigValue<List<BaseComponent[]>> components;
+	private ConfigValue<MessageTemplate> template;
+	private ConfigValue<List<MessageTemplate>> templates;
+	private ConfigValue<Long> ticks;
+	private ConfigValue<TweetySound> sound;
+	private ConfigValue<CompMaterial> material;
+	private ConfigValue<CompMaterial> materialWithDefault;
+
 	public ConfigSetting(@NotNull Config config, @NotNull String key) {
 		this.config = config;
 		this.key = key;
@@ -108,27 +122,108 @@ public class ConfigSetting {
 		return config.getChar(key, def);
 	}
 
+	/**
+	 * @return the string with its colors replaced, converted once until the value changes
+	 */
 	@NotNull
-	public CompMaterial getMaterial() {
-		String val = config.getString(key);
-		CompMaterial mat = CompMaterial.fromString(config.getString(key));
+	public String getColoredString() {
+		if (coloredString == null) {
+			coloredString = ConfigValue.coloredString(config, key);
+		}
+
+		return coloredString.get();
+	}
+
+	/**
+	 * @return the lines with their colors replaced, converted once until the value changes
+	 */
+	@NotNull
+	public List<String> getColoredStringList() {
+		if (coloredStringList == null) {
+			coloredStringList = ConfigValue.coloredList(config, key);
+		}
+
+		return coloredStringList.get();
+	}
+
+	/**
+	 * @return the colored lines as chat components, converted once until the value changes
+	 */
+	@NotNull
+	public List<BaseComponent[]> getComponents() {
+		if (components == null) {
+			components = ConfigValue.components(config, key);
+		}
+
+		return components.get();
+	}
+
+	/**
+	 * @return the message compiled for rendering with variables, compiled once until the value changes
+	 */
+	@NotNull
+	public MessageTemplate getTemplate() {
+		if (template == null) {
+			template = ConfigValue.template(config, key);
+		}
 
-		if (mat == null) {
-			TweetyPlugin.getInstance().getLogger().log(Level.WARNING, String.format("Config value \"%s\" has an invalid material name: \"%s\"", key, val));
+		return template.get();
+	}
+
+	/**
+	 * @return the lines compiled for rendering with variables, compiled once until the value changes
+	 */
+	@NotNull
+	public List<MessageTemplate> getTemplates() {
+		if (templates == null) {
+			templates = ConfigValue.templates(config, key);
+		}
+
+		return templates.get();
+	}
+
+	/**
+	 * @return the time, such as "5 seconds", in ticks. 0 if it is not set or invalid
+	 */
+	public long getTicks() {
+		if (ticks == null) {
+			ticks = ConfigValue.ticks(config, key, 0);
+		}
+
+		return ticks.get();
+	}
+
+	/**
+	 * @return the sound, or null if it is not set or invalid
+	 */
+	@Nullable
+	public TweetySound getSound() {
+		if (sound == null) {
+			sound = ConfigValue.sound(config, key, null);
+		}
+
+		return sound.get();
+	}
+
+	@NotNull
+	public CompMaterial getMaterial() {
+		if (material == null) {
+			material = ConfigValue.material(config, key, CompMaterial.STONE);
 		}
 
-		return mat != null ? mat : CompMaterial.STONE;
+		return material.get();
 	}
 
 	@NotNull
 	public CompMaterial getMaterial(@NotNull CompMaterial def) {
-		String val = config.getString(key);
-		CompMaterial mat = val != null ? CompMaterial.fromString(val) : null;
+		ConfigValue<CompMaterial> material = materialWithDefault;
 
-		if (mat == null) {
-			TweetyPlugin.getInstance().getLogger().log(Level.WARNING, String.format("Config value \"%s\" has an invalid material name: \"%s\"", key, val));
+		// callers normally pass the same default, so the value is only converted again when it changes
+		if (material == null || material.def != def) {
+			material = ConfigValue.material(config, key, def);
+			materialWithDefault = material;
 		}
 
-		return mat != null ? mat : def;
+		return material.get();
 	}
 }
@@ -0,0 +1,316 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary copy of what a {@link Config} read from its file: the parsed YAML tree, the header,
+ * the footer and the node comments. <br>
+ * It is stored next to the file and only used while the file size, modification time and
+ * content hash still match, so loading an unchanged file skips YAML and comment parsing.
+ */
+final class ConfigSnapshot {
+	private static final int MAGIC = 0x54435301;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte BIG_INTEGER = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte BOOLEAN = 6;
+	private static final byte DATE = 7;
+	private static final byte LIST = 8;
+	private static final byte MAP = 9;
+
+	final Map<?, ?> input;
+	final Comment header, footer;
+	final Map<String, Comment> comments;
+
+	ConfigSnapshot(@NotNull Map<?, ?> input, @Nullable Comment header, @Nullable Comment footer, @NotNull Map<String, Comment> comments) {
+		this.input = input;
+		this.header = header;
+		this.footer = footer;
+		this.comments = comments;
+	}
+
+	/**
+	 * Load this snapshot into the config the same way parsing the file would
+	 */
+	void apply(@NotNull Config config) {
+		if (config.loadComments) {
+			if (header != null) {
+				config.headerComment = header;
+			}
+
+			if (footer != null) {
+				config.footerComment = footer;
+			}
+
+			comments.forEach(config::setComment);
+		}
+
+		config.convertMapsToSections(input, config);
+	}
+
+	/**
+	 * @return the file the snapshot of this config file is stored in
+	 */
+	@NotNull
+	static File getFile(@NotNull File source) {
+		return new File(source.getAbsoluteFile().getParentFile(), "." + source.getName() + ".snapshot");
+	}
+
+	/**
+	 * Read the snapshot of a config file
+	 *
+	 * @param source   the config file
+	 * @param contents the current bytes of the config file
+	 * @param config   the config being loaded, the snapshot must have been made with the same settings
+	 * @return the snapshot, or null if there is none or it does not match the file anymore
+	 */
+	@Nullable
+	static ConfigSnapshot read(@NotNull File source, @NotNull byte[] contents, @NotNull Config config) {
+		File file = getFile(source);
+
+		if (!file.exists()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+			if (in.readInt() != MAGIC
+					|| in.readLong() != contents.length
+					|| in.readLong() != source.lastModified()
+					|| !Arrays.equals(readBytes(in), hash(contents))
+					|| in.readChar() != config.pathChar
+					|| in.readInt() != config.indentation
+					|| in.readBoolean() != config.loadComments) {
+				return null;
+			}
+
+			Comment header = readComment(in);
+			Comment footer = readComment(in);
+
+			int commentCount = in.readInt();
+			Map<String, Comment> comments = new LinkedHashMap<>(commentCount);
+
+			for (int i = 0; i < commentCount; i++) {
+				comments.put(readString(in), readComment(in));
+			}
+
+			return new ConfigSnapshot((Map<?, ?>) readValue(in), header, footer, comments);
+		} catch (IOException | RuntimeException ex) {
+			return null; // unreadable or from an older version, parse the file instead
+		}
+	}
+
+	/**
+	 * Store the snapshot of a config file
+	 *
+	 * @param source   the config file
+	 * @param contents the bytes of the config file that were parsed
+	 * @param config   the config that was loaded
+	 * @throws IOException if the snapshot could not be written, or the file contains values that cannot be stored
+	 */
+	void write(@NotNull File source, @NotNull byte[] contents, @NotNull Config config) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(contents.length);
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeLong(contents.length);
+			out.writeLong(source.lastModified());
+			writeBytes(out, hash(contents));
+			out.writeChar(config.pathChar);
+			out.writeInt(config.indentation);
+			out.writeBoolean(config.loadComments);
+
+			writeComment(out, header);
+			writeComment(out, footer);
+
+			out.writeInt(comments.size());
+
+			for (Map.Entry<String, Comment> entry : comments.entrySet()) {
+				writeString(out, entry.getKey());
+				writeComment(out, entry.getValue());
+			}
+
+			writeValue(out, input);
+		}
+
+		FileUtil.writeAtomically(getFile(source), bytes.toByteArray());
+	}
+
+	private static byte[] hash(byte[] contents) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(contents);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex); // every JVM has to support SHA-256
+		}
+	}
+
+	static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof BigInteger) {
+			out.writeByte(BIG_INTEGER);
+			writeBytes(out, ((BigInteger) value).toByteArray());
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Date) {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+
+			out.writeByte(LIST);
+			out.writeInt(list.size());
+
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+
+			out.writeByte(MAP);
+			out.writeInt(map.size());
+
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		} else {
+			throw new IOException("Cannot store values of type " + value.getClass().getName());
+		}
+	}
+
+	static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+
+		switch (type) {
+			case NULL:
+				return null;
+			case STRING:
+				return readString(in);
+			case INT:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case BIG_INTEGER:
+				return new BigInteger(readBytes(in));
+			case DOUBLE:
+				return in.readDouble();
+			case BOOLEAN:
+				return in.readBoolean();
+			case DATE:
+				return new Date(in.readLong());
+			case LIST: {
+				int size = in.readInt();
+				List<Object> list = new ArrayList<>(size);
+
+				for (int i = 0; i < size; i++) {
+					list.add(readValue(in));
+				}
+
+				return list;
+			}
+			case MAP: {
+				int size = in.readInt();
+				Map<Object, Object> map = new LinkedHashMap<>();
+
+				for (int i = 0; i < size; i++) {
+					map.put(readValue(in), readValue(in));
+				}
+
+				return map;
+			}
+			default:
+				throw new IOException("Unknown value type " + type);
+		}
+	}
+
+	private static void writeComment(DataOutputStream out, Comment comment) throws IOException {
+		if (comment == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(comment.lines.size());
+
+		for (String line : comment.lines) {
+			writeString(out, line);
+		}
+
+		out.writeByte(comment.commentStyle != null ? comment.commentStyle.ordinal() : -1);
+	}
+
+	private static Comment readComment(DataInputStream in) throws IOException {
+		int lineCount = in.readInt();
+
+		if (lineCount < 0) {
+			return null;
+		}
+
+		Comment comment = new Comment();
+
+		for (int i = 0; i < lineCount; i++) {
+			comment.lines.add(readString(in));
+		}
+
+		byte style = in.readByte();
+		comment.commentStyle = style >= 0 ? ConfigFormattingRules.CommentStyle.values()[style] : null;
+
+		return comment;
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] value = new byte[in.readInt()];
+		in.readFully(value);
+
+		return value;
+	}
+}
@@ -0,0 +1,42 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One version of the values, defaults and comments of a config. <br>
+ * Readers take the current version once and read from it, writers publish a new one when they are done,
+ * so a reader never sees a write that is only partly done.
+ */
+final class ConfigTree {
+	static final ConfigTree EMPTY = new ConfigTree(ConfigNode.EMPTY, ConfigNode.EMPTY, Collections.emptyMap(), Collections.emptyMap());
+
+	final ConfigNode values;
+	final ConfigNode defaults;
+
+	/**
+	 * comments by full path, never changed once the version is published
+	 */
+	final Map<String, Comment> comments;
+	final Map<String, Comment> defaultComments;
+
+	ConfigTree(@NotNull ConfigNode values, @NotNull ConfigNode defaults, @NotNull Map<String, Comment> comments, @NotNull Map<String, Comment> defaultComments) {
+		this.values = values;
+		this.defaults = defaults;
+		this.comments = comments;
+		this.defaultComments = defaultComments;
+	}
+
+	/**
+	 * @return the comment of the node at the full path, or its default comment if it has none
+	 */
+	@Nullable
+	Comment getComment(@NotNull String path) {
+		Comment result = comments.get(path);
+
+		return result != null ? result : defaultComments.get(path);
+	}
+}
@@ -0,0 +1,211 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.model.Common;
+import ca.tweetzy.tweety.model.MessageTemplate;
+import ca.tweetzy.tweety.model.TweetySound;
+import ca.tweetzy.tweety.model.TweetyTime;
+import ca.tweetzy.tweety.remain.comp.CompMaterial;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * A config value converted to the type it is used as, such as a colored message or a material. <br>
+ * The value is converted once and kept until its path is changed or the config is reloaded,
+ * so reading it again only costs a field read.
+ *
+ * @param <T> the type the value is converted to
+ */
+public final class ConfigValue<T> {
+	final Config config;
+	final String key;
+	final Function<Object, T> parser;
+	final T def;
+
+	/**
+	 * the last conversion, along with the config version and raw value it was made from
+	 */
+	private volatile Parsed<T> parsed;
+
+	/**
+	 * Read a config value through a custom conversion
+	 *
+	 * @param config the config
+	 * @param key    the path of the value
+	 * @param parser converts the raw value, which may be null. It may throw if the value is invalid
+	 * @param def    used if the value is invalid
+	 */
+	public ConfigValue(@NotNull Config config, @NotNull String key, @NotNull Function<Object, T> parser, @Nullable T def) {
+		this.config = config;
+		this.key = key;
+		this.parser = parser;
+		this.def = def;
+	}
+
+	/**
+	 * A string with its color codes and variables such as {prefix} replaced, see {@link Common#colorize(String)}
+	 */
+	@NotNull
+	public static ConfigValue<String> coloredString(@NotNull Config config, @NotNull String key) {
+		return new ConfigValue<>(config, key, raw -> Common.colorize(raw != null ? raw.toString() : null), "");
+	}
+
+	/**
+	 * A list of strings with their color codes replaced. A single string is read as a list of one line.
+	 */
+	@NotNull
+	public static ConfigValue<List<String>> coloredList(@NotNull Config config, @NotNull String key) {
+		return new ConfigValue<>(config, key, raw -> {
+			List<String> lines = new ArrayList<>();
+
+			for (Object line : toList(raw)) {
+				lines.add(Common.colorize(line.toString()));
+			}
+
+			return Collections.unmodifiableList(lines);
+		}, Collections.emptyList());
+	}
+
+	/**
+	 * A list of messages, each colored and converted to chat components
+	 */
+	@NotNull
+	public static ConfigValue<List<BaseComponent[]>> components(@NotNull Config config, @NotNull String key) {
+		return new ConfigValue<>(config, key, raw -> {
+			List<BaseComponent[]> lines = new ArrayList<>();
+
+			for (Object line : toList(raw)) {
+				lines.add(TextComponent.fromLegacyText(Common.colorize(line.toString())));
+			}
+
+			return Collections.unmodifiableList(lines);
+		}, Collections.emptyList());
+	}
+
+	/**
+	 * A message compiled once for rendering with variables, see {@link MessageTemplate#render(org.bukkit.command.CommandSender)}
+	 */
+	@NotNull
+	public static ConfigValue<MessageTemplate> template(@NotNull Config config, @NotNull String key) {
+		return new ConfigValue<>(config, key, raw -> new MessageTemplate(raw != null ? raw.toString() : ""), new MessageTemplate(""));
+	}
+
+	/**
+	 * A list of messages each compiled for rendering with variables, such as item lore. A single string is read as a list of one line.
+	 */
+	@NotNull
+	public static ConfigValue<List<MessageTemplate>> templates(@NotNull Config config, @NotNull String key) {
+		return new ConfigValue<>(config, key, raw -> {
+			List<MessageTemplate> lines = new ArrayList<>();
+
+			for (Object line : toList(raw)) {
+				lines.add(new MessageTemplate(line.toString()));
+			}
+
+			return Collections.unmodifiableList(lines);
+		}, Collections.emptyList());
+	}
+
+	/**
+	 * A time such as "5 seconds" or "none" in ticks, see {@link TweetyTime}
+	 */
+	@NotNull
+	public static ConfigValue<Long> ticks(@NotNull Config config, @NotNull String key, long def) {
+		return new ConfigValue<>(config, key, raw -> raw != null ? (long) TweetyTime.from(raw.toString()).getTimeTicks() : def, def);
+	}
+
+	/**
+	 * A material name, see {@link CompMaterial#fromString(String)}
+	 */
+	@NotNull
+	public static ConfigValue<CompMaterial> material(@NotNull Config config, @NotNull String key, @NotNull CompMaterial def) {
+		return new ConfigValue<>(config, key, raw -> {
+			CompMaterial material = raw != null ? CompMaterial.fromString(raw.toString()) : null;
+
+			if (material == null) {
+				throw new IllegalArgumentException("invalid material name: \"" + raw + "\"");
+			}
+
+			return material;
+		}, def);
+	}
+
+	/**
+	 * A sound line such as "ENTITY_PLAYER_LEVELUP 1.0 1.0" or "none", see {@link TweetySound#TweetySound(String)}
+	 */
+	@NotNull
+	public static ConfigValue<TweetySound> sound(@NotNull Config config, @NotNull String key, @Nullable TweetySound def) {
+		return new ConfigValue<>(config, key, raw -> raw != null ? new TweetySound(raw.toString()) : def, def);
+	}
+
+	@NotNull
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the converted value, or the default if the value is invalid
+	 */
+	public T get() {
+		ConfigSection root = config.root;
+
+		// a write in progress on this thread is not published yet, do not keep anything made from it
+		if (root.writer == Thread.currentThread()) {
+			return parse(config.get(key));
+		}
+
+		ConfigTree tree = root.tree;
+		Parsed<T> last = parsed;
+
+		if (last != null && last.tree == tree) {
+			return last.value;
+		}
+
+		// the config changed, but maybe not this value
+		Object raw = config.get(key);
+		T value = last != null && last.raw == raw ? last.value : parse(raw);
+
+		parsed = new Parsed<>(tree, raw, value);
+
+		return value;
+	}
+
+	private T parse(Object raw) {
+		try {
+			return parser.apply(raw);
+		} catch (RuntimeException ex) {
+			(config.plugin != null ? config.plugin.getLogger() : Bukkit.getLogger()).log(Level.WARNING,
+					String.format("Config value \"%s\" could not be read: %s", key, ex.getMessage() != null ? ex.getMessage() : ex.toString()));
+
+			return def;
+		}
+	}
+
+	private static List<?> toList(Object raw) {
+		if (raw instanceof List) {
+			return (List<?>) raw;
+		}
+
+		return raw != null ? Collections.singletonList(raw) : Collections.emptyList();
+	}
+
+	private static final class Parsed<T> {
+		final ConfigTree tree;
+		final Object raw;
+		final T value;
+
+		Parsed(ConfigTree tree, Object raw, T value) {
+			this.tree = tree;
+			this.raw = raw;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Reloads {@link Config} files when they are edited on disk, see {@link Config#setWatchFile(boolean)}. <br>
+ * One thread watches the files of every config. A file is reloaded once it has not been written to
+ * for the debounce time, so an editor saving a file in several steps only causes one reload.
+ */
+public final class ConfigWatcher {
+
+	/**
+	 * how long a file has to stay unchanged before it is reloaded
+	 */
+	private static volatile long debounceMillis = 500;
+
+	private static final Map<Path, Set<Config>> watched = new ConcurrentHashMap<>();
+	private static final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+	private static WatchService service;
+	private static Thread thread;
+
+	private ConfigWatcher() {
+	}
+
+	/**
+	 * Start reloading the config when its file changes
+	 *
+	 * @param config the config
+	 * @throws IOException if the directory of the file could not be watched
+	 */
+	static synchronized void watch(@NotNull Config config) throws IOException {
+		Path file = toPath(config);
+		Path directory = file.getParent();
+
+		if (service == null) {
+			WatchService created = FileSystems.getDefault().newWatchService();
+
+			service = created;
+			thread = new Thread(() -> run(created), "Tweety-Config-Watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		if (!directories.containsKey(directory)) {
+			directories.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+		}
+
+		watched.computeIfAbsent(file, key -> new CopyOnWriteArraySet<>()).add(config);
+	}
+
+	/**
+	 * Stop reloading the config when its file changes
+	 *
+	 * @param config the config
+	 */
+	static synchronized void unwatch(@NotNull Config config) {
+		Path file = toPath(config);
+		Set<Config> configs = watched.get(file);
+
+		if (configs == null || !configs.remove(config) || !configs.isEmpty()) {
+			return;
+		}
+
+		watched.remove(file);
+
+		// stop watching the directory once none of its files are watched
+		if (watched.keySet().stream().noneMatch(other -> other.getParent().equals(file.getParent()))) {
+			WatchKey key = directories.remove(file.getParent());
+
+			if (key != null) {
+				key.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Stop watching every file and end the watcher thread. Call this when the plugin disables.
+	 */
+	public static synchronized void stop() {
+		if (service != null) {
+			try {
+				service.close();
+			} catch (IOException ignored) {
+			}
+
+			thread.interrupt();
+			service = null;
+			thread = null;
+		}
+
+		watched.clear();
+		directories.clear();
+	}
+
+	public static long getDebounce() {
+		return debounceMillis;
+	}
+
+	/**
+	 * How long a file has to stay unchanged after an edit before it is reloaded
+	 *
+	 * @param debounceMillis time in milliseconds
+	 */
+	public static void setDebounce(long debounceMillis) {
+		ConfigWatcher.debounceMillis = Math.max(0, debounceMillis);
+	}
+
+	@NotNull
+	private static Path toPath(@NotNull Config config) {
+		return config.getFile().toPath().toAbsolutePath().normalize();
+	}
+
+	private static void run(@NotNull WatchService service) {
+		// files that were changed, and when they may be reloaded
+		Map<Path, Long> due = new HashMap<>();
+
+		while (true) {
+			WatchKey key;
+
+			try {
+				if (due.isEmpty()) {
+					key = service.take();
+				} else {
+					long wait = due.values().stream().min(Long::compare).get() - System.currentTimeMillis();
+					key = wait > 0 ? service.poll(wait, TimeUnit.MILLISECONDS) : service.poll();
+				}
+			} catch (InterruptedException | ClosedWatchServiceException ex) {
+				return;
+			}
+
+			if (key != null) {
+				Path directory = (Path) key.watchable();
+
+				for (WatchEvent<?> event : key.pollEvents()) {
+					// events were lost, any file of the directory may have changed
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						for (Path file : watched.keySet()) {
+							if (file.getParent().equals(directory)) {
+								due.put(file, System.currentTimeMillis() + debounceMillis);
+							}
+						}
+
+						continue;
+					}
+
+					Path file = directory.resolve((Path) event.context());
+
+					if (watched.containsKey(file)) {
+						due.put(file, System.currentTimeMillis() + debounceMillis);
+					}
+				}
+
+				if (!key.reset()) {
+					directories.remove(directory, key);
+				}
+			}
+
+			long now = System.currentTimeMillis();
+
+			for (Iterator<Map.Entry<Path, Long>> it = due.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<Path, Long> entry = it.next();
+
+				if (entry.getValue() <= now) {
+					it.remove();
+					reload(entry.getKey());
+				}
+			}
+		}
+	}
+
+	private static void reload(@NotNull Path file) {
+		Set<Config> configs = watched.get(file);
+
+		if (configs == null) {
+			return;
+		}
+
+		for (Config config : configs) {
+			try {
+				config.reloadChangedFile();
+			} catch (Throwable t) {
+				(config.plugin != null ? config.plugin.getLogger() : Bukkit.getLogger()).log(Level.SEVERE, "Failed to reload config file: " + file.getFileName(), t);
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package ca.tweetzy.tweety.configuration;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where a {@link SimpleDataStore} keeps its entries instead of its YAML files,
+ * see {@link SimpleDataStore#setBackend(DataStoreBackend)}. <br>
+ * Entries are passed as sections named after their config key, holding what
+ * {@link DataStoreObject#saveToSection(ConfigurationSection)} wrote.
+ */
+public interface DataStoreBackend {
+
+	/**
+	 * Read every stored entry
+	 *
+	 * @return the sections of the entries
+	 * @throws IOException if the entries could not be read
+	 */
+	@NotNull
+	Collection<ConfigurationSection> load() throws IOException;
+
+	/**
+	 * Read the config keys of every stored entry without reading the entries,
+	 * used when the store loads entries lazily. The default reads every entry.
+	 *
+	 * @return the config keys
+	 * @throws IOException if the keys could not be read
+	 */
+	@NotNull
+	default Collection<String> loadKeys() throws IOException {
+		List<String> keys = new ArrayList<>();
+
+		for (ConfigurationSection section : load()) {
+			keys.add(section.getName());
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Read one stored entry, used when the store loads entries lazily. The default reads every entry.
+	 *
+	 * @param configKey the config key of the entry
+	 * @return the section of the entry, or null if it is not stored
+	 * @throws IOException if the entry could not be read
+	 */
+	@Nullable
+	default ConfigurationSection load(@NotNull String configKey) throws IOException {
+		for (ConfigurationSection section : load()) {
+			if (section.getName().equals(configKey)) {
+				return section;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Write the new and changed entries and delete the removed ones. <br>
+	 * A store never runs two of these at the same time.
+	 *
+	 * @param changed the sections of the new and changed entries
+	 * @param removed the config keys of the removed entries
+	 * @throws IOException if the changes could not be written
+	 */
+	void store(@NotNull Collection<ConfigurationSection> changed, @NotNull Collection<String> removed) throws IOException;
+
+	/**
+	 * Release what this backend keeps open
+	 */
+	default void close() {
+	}
+}
@@ -0,0 +1,204 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.database.DatabaseConnector;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the entries of a {@link SimpleDataStore} in a database table, one row per entry. <br>
+ * Each row holds the config key and the entry as YAML, and only rows of new, changed
+ * or removed entries are written, all in one transaction.
+ */
+public class DatabaseDataStoreBackend implements DataStoreBackend {
+	private final DatabaseConnector databaseConnector;
+	private final String table;
+	private final String upsertSql, deleteSql;
+
+	private volatile boolean tableCreated = false;
+
+	/**
+	 * @param databaseConnector the database to use, such as a {@link ca.tweetzy.tweety.database.SQLiteConnector}
+	 * @param table             the full name of the table, created if it does not exist
+	 */
+	public DatabaseDataStoreBackend(@NotNull DatabaseConnector databaseConnector, @NotNull String table) {
+		this.databaseConnector = databaseConnector;
+		this.table = table;
+		this.upsertSql = databaseConnector.getDialect().upsert(table, new String[]{"config_key", "data"}, "config_key");
+		this.deleteSql = "DELETE FROM " + table + " WHERE config_key = ?";
+	}
+
+	@NotNull
+	public String getTable() {
+		return table;
+	}
+
+	@NotNull
+	@Override
+	public Collection<ConfigurationSection> load() throws IOException {
+		createTable();
+
+		List<String[]> rows = run(connection -> {
+			List<String[]> result = new ArrayList<>();
+
+			try (Statement statement = connection.createStatement();
+				 ResultSet resultSet = statement.executeQuery("SELECT config_key, data FROM " + table)) {
+				while (resultSet.next()) {
+					result.add(new String[]{resultSet.getString(1), resultSet.getString(2)});
+				}
+			}
+
+			return result;
+		}, true);
+
+		// parse once the connection is released
+		List<ConfigurationSection> sections = new ArrayList<>(rows.size());
+
+		for (String[] row : rows) {
+			sections.add(SimpleDataStore.fromYaml(row[0], row[1]));
+		}
+
+		return sections;
+	}
+
+	@NotNull
+	@Override
+	public Collection<String> loadKeys() throws IOException {
+		createTable();
+
+		return run(connection -> {
+			List<String> keys = new ArrayList<>();
+
+			try (Statement statement = connection.createStatement();
+				 ResultSet resultSet = statement.executeQuery("SELECT config_key FROM " + table)) {
+				while (resultSet.next()) {
+					keys.add(resultSet.getString(1));
+				}
+			}
+
+			return keys;
+		}, true);
+	}
+
+	@Nullable
+	@Override
+	public ConfigurationSection load(@NotNull String configKey) throws IOException {
+		createTable();
+
+		String data = run(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement("SELECT data FROM " + table + " WHERE config_key = ?")) {
+				statement.setString(1, configKey);
+
+				try (ResultSet resultSet = statement.executeQuery()) {
+					return resultSet.next() ? resultSet.getString(1) : null;
+				}
+			}
+		}, true);
+
+		return data != null ? SimpleDataStore.fromYaml(configKey, data) : null;
+	}
+
+	@Override
+	public void store(@NotNull Collection<ConfigurationSection> changed, @NotNull Collection<String> removed) throws IOException {
+		List<String[]> rows = new ArrayList<>(changed.size());
+
+		for (ConfigurationSection section : changed) {
+			rows.add(new String[]{section.getName(), SimpleDataStore.toYaml(section)});
+		}
+
+		run(connection -> {
+			createTable(connection);
+
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+
+			try {
+				if (!rows.isEmpty()) {
+					try (PreparedStatement statement = connection.prepareStatement(upsertSql)) {
+						for (String[] row : rows) {
+							statement.setString(1, row[0]);
+							statement.setString(2, row[1]);
+							statement.addBatch();
+						}
+
+						statement.executeBatch();
+					}
+				}
+
+				if (!removed.isEmpty()) {
+					try (PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+						for (String key : removed) {
+							statement.setString(1, key);
+							statement.addBatch();
+						}
+
+						statement.executeBatch();
+					}
+				}
+
+				connection.commit();
+			} catch (SQLException ex) {
+				connection.rollback();
+				throw ex;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+
+			return null;
+		}, false);
+	}
+
+	/**
+	 * Create the table on a writable connection before the first read, reads use a read-only connection
+	 */
+	private void createTable() throws IOException {
+		if (tableCreated) {
+			return;
+		}
+
+		run(connection -> {
+			createTable(connection);
+			return null;
+		}, false);
+	}
+
+	private void createTable(Connection connection) throws SQLException {
+		if (tableCreated) {
+			return;
+		}
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (config_key VARCHAR(255) NOT NULL PRIMARY KEY, data MEDIUMTEXT NOT NULL)");
+		}
+
+		tableCreated = true;
+	}
+
+	/**
+	 * Run the function on the calling thread, the store already decides which thread loads and saves run on,
+	 * see {@link SimpleDataStore#getAsync(Object)}
+	 *
+	 * @param readOnly true for selects, so they do not hold the writer connection
+	 */
+	private <R> R run(DatabaseConnector.ConnectionFunction<R> function, boolean readOnly) throws IOException {
+		try {
+			return databaseConnector.connectAsync(function, readOnly, Runnable::run).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while accessing table " + table, ex);
+		} catch (ExecutionException ex) {
+			throw new IOException("Failed to access table " + table, ex.getCause());
+		}
+	}
+}
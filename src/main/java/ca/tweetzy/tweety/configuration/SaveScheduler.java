@@ -0,0 +1,337 @@
+package ca.tweetzy.tweety.configuration;
+
+import ca.tweetzy.tweety.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the delayed saves of {@link Config} and {@link SimpleDataStore} files on one shared pool. <br>
+ * Repeated saves of the same file are coalesced into one, and only a few files are written at once.
+ */
+public final class SaveScheduler {
+
+	/**
+	 * how many saves may run at once
+	 */
+	private static final int THREADS = 4;
+
+	/**
+	 * how many files may be written to disk at once
+	 */
+	private static final int MAX_CONCURRENT_WRITES = 2;
+
+	private static final ScheduledThreadPoolExecutor executor;
+	private static final Semaphore writePermits = new Semaphore(MAX_CONCURRENT_WRITES, true);
+	private static final Map<File, ScheduledSave> pending = new ConcurrentHashMap<>();
+	private static final Map<File, SaveStats> stats = new ConcurrentHashMap<>();
+
+	/**
+	 * saves currently running on the pool
+	 */
+	private static final AtomicInteger running = new AtomicInteger();
+	private static final Object runningLock = new Object();
+
+	static {
+		AtomicInteger threadCount = new AtomicInteger();
+
+		executor = new ScheduledThreadPoolExecutor(THREADS, runnable -> new Thread(runnable, "Tweety-Save-" + threadCount.incrementAndGet()));
+		executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+		executor.allowCoreThreadTimeOut(true);
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	private SaveScheduler() {
+	}
+
+	/**
+	 * Save the file after the delay. If a save of this file is already waiting,
+	 * this call is merged into it and the delay is not reset.
+	 *
+	 * @param file        the file being saved, used to merge repeated saves
+	 * @param delayMillis how long to wait before saving
+	 * @param save        writes the file
+	 */
+	public static void schedule(@NotNull File file, long delayMillis, @NotNull Runnable save) {
+		pending.computeIfAbsent(file.getAbsoluteFile(), key -> new ScheduledSave(save, executor.schedule(() -> run(key), delayMillis, TimeUnit.MILLISECONDS)));
+	}
+
+	/**
+	 * Drop the waiting save of this file, usually because it is being saved right now
+	 *
+	 * @param file the file
+	 */
+	public static void cancel(@NotNull File file) {
+		ScheduledSave save = pending.remove(file.getAbsoluteFile());
+
+		if (save != null) {
+			save.future.cancel(false);
+		}
+	}
+
+	/**
+	 * @return true if a save of this file is waiting to run
+	 */
+	public static boolean isPending(@NotNull File file) {
+		return pending.containsKey(file.getAbsoluteFile());
+	}
+
+	/**
+	 * Run every waiting save now and wait for all saves to finish. Call this when the plugin disables.
+	 *
+	 * @param timeout how long to wait at most
+	 * @param unit    the unit of the timeout
+	 * @return true if every save finished in time
+	 */
+	public static boolean flushAll(long timeout, @NotNull TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		synchronized (runningLock) {
+			while (!pending.isEmpty() || running.get() > 0) {
+				// Saves running right now may schedule new ones, so keep pulling them forward
+				for (File file : new ArrayList<>(pending.keySet())) {
+					ScheduledSave save = pending.get(file);
+
+					if (save != null && save.future.cancel(false)) {
+						executor.execute(() -> run(file));
+					}
+				}
+
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+				if (remaining <= 0) {
+					return false;
+				}
+
+				try {
+					runningLock.wait(Math.min(remaining, 100));
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Run every waiting save now and wait up to 30 seconds for all saves to finish
+	 *
+	 * @return true if every save finished in time
+	 */
+	public static boolean flushAll() {
+		return flushAll(30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Write the content to the file through a temporary file, waiting if too many files are being written
+	 *
+	 * @param file    the file to write
+	 * @param content the serialized content
+	 * @param charset the charset to write with
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(@NotNull File file, @NotNull String content, @NotNull Charset charset) throws IOException {
+		write(file, file, content, charset);
+	}
+
+	/**
+	 * Write the content to the target file, reporting the write time under another file. <br>
+	 * Used for data that is spread over several files.
+	 *
+	 * @param reportAs the file the write time is reported under
+	 * @param target   the file to write
+	 * @param content  the serialized content
+	 * @param charset  the charset to write with
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(@NotNull File reportAs, @NotNull File target, @NotNull String content, @NotNull Charset charset) throws IOException {
+		writePermits.acquireUninterruptibly();
+
+		try {
+			long start = System.nanoTime();
+
+			FileUtil.writeAtomically(target, content, charset);
+			getStats(reportAs).recordWrite(System.nanoTime() - start);
+		} finally {
+			writePermits.release();
+		}
+	}
+
+	/**
+	 * Write the file through a temporary file as its content is serialized, waiting if too many files are being written. <br>
+	 * Serializing and writing happen together, so the whole time is reported as write time.
+	 *
+	 * @param file    the file to write
+	 * @param charset the charset to write with
+	 * @param content serializes the content to the writer
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(@NotNull File file, @NotNull Charset charset, @NotNull FileUtil.ContentWriter content) throws IOException {
+		writePermits.acquireUninterruptibly();
+
+		try {
+			long start = System.nanoTime();
+
+			FileUtil.writeAtomically(file, charset, content);
+			getStats(file).recordWrite(System.nanoTime() - start);
+		} finally {
+			writePermits.release();
+		}
+	}
+
+	/**
+	 * Report how long serializing the file took
+	 *
+	 * @param file  the file
+	 * @param nanos the time it took
+	 */
+	public static void recordSerialize(@NotNull File file, long nanos) {
+		getStats(file).recordSerialize(nanos);
+	}
+
+	/**
+	 * @return the save times of this file
+	 */
+	@NotNull
+	public static SaveStats getStats(@NotNull File file) {
+		return stats.computeIfAbsent(file.getAbsoluteFile(), SaveStats::new);
+	}
+
+	/**
+	 * @return the save times of every file saved so far
+	 */
+	@NotNull
+	public static Map<File, SaveStats> getAllStats() {
+		return new HashMap<>(stats);
+	}
+
+	/**
+	 * @return the pool saves run on, also used to read entries of lazily loaded stores off the calling thread
+	 */
+	@NotNull
+	static Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return how many saves are waiting to run
+	 */
+	public static int getPendingCount() {
+		return pending.size();
+	}
+
+	private static void run(File file) {
+		running.incrementAndGet();
+
+		try {
+			ScheduledSave save = pending.remove(file);
+
+			if (save != null) {
+				save.save.run();
+			}
+		} catch (Throwable t) {
+			Logger.getLogger(SaveScheduler.class.getName()).log(Level.SEVERE, "Failed to save " + file.getName(), t);
+		} finally {
+			running.decrementAndGet();
+
+			synchronized (runningLock) {
+				runningLock.notifyAll();
+			}
+		}
+	}
+
+	private static class ScheduledSave {
+		final Runnable save;
+		final ScheduledFuture<?> future;
+
+		ScheduledSave(Runnable save, ScheduledFuture<?> future) {
+			this.save = save;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Serialize and write times of one file
+	 */
+	public static class SaveStats {
+		private final File file;
+		private long serializeCount, serializeTotal, serializeMax, serializeLast;
+		private long writeCount, writeTotal, writeMax, writeLast;
+
+		SaveStats(File file) {
+			this.file = file;
+		}
+
+		synchronized void recordSerialize(long nanos) {
+			serializeCount++;
+			serializeTotal += nanos;
+			serializeMax = Math.max(serializeMax, nanos);
+			serializeLast = nanos;
+		}
+
+		synchronized void recordWrite(long nanos) {
+			writeCount++;
+			writeTotal += nanos;
+			writeMax = Math.max(writeMax, nanos);
+			writeLast = nanos;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public synchronized long getSerializeCount() {
+			return serializeCount;
+		}
+
+		public synchronized double getAverageSerializeMillis() {
+			return serializeCount == 0 ? 0 : serializeTotal / (double) serializeCount / 1_000_000D;
+		}
+
+		public synchronized double getMaxSerializeMillis() {
+			return serializeMax / 1_000_000D;
+		}
+
+		public synchronized double getLastSerializeMillis() {
+			return serializeLast / 1_000_000D;
+		}
+
+		public synchronized long getWriteCount() {
+			return writeCount;
+		}
+
+		public synchronized double getAverageWriteMillis() {
+			return writeCount == 0 ? 0 : writeTotal / (double) writeCount / 1_000_000D;
+		}
+
+		public synchronized double getMaxWriteMillis() {
+			return writeMax / 1_000_000D;
+		}
+
+		public synchronized double getLastWriteMillis() {
+			return writeLast / 1_000_000D;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format("%s: serialize avg %.2fms max %.2fms (%d), write avg %.2fms max %.2fms (%d)", file.getName(),
+					getAverageSerializeMillis(), getMaxSerializeMillis(), serializeCount, getAverageWriteMillis(), getMaxWriteMillis(), writeCount);
+		}
+	}
+}
@@ -9,9 +9,20 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  * Used to easily store a set of one data value
@@ -20,19 +31,104 @@ import java.util.logging.Level;
  */
 public class SimpleDataStore<T extends DataStoreObject> {
 
+	/**
+	 * Store every entry in the one data file
+	 */
+	public static final int SINGLE_FILE = 0;
+
+	/**
+	 * Store every entry in its own file
+	 */
+	public static final int SHARD_PER_KEY = -1;
+
 	protected final Plugin plugin;
 	protected final String filename, dirName;
 	private final Function<ConfigurationSection, T> getFromSection;
-	protected final HashMap<Object, T> data = new HashMap<>();
+	protected final Map<Object, T> data = new ConcurrentHashMap<>();
 	private File file;
 	private final Object lock = new Object();
-	SaveTask saveTask;
-	Timer autosaveTimer;
 	/**
 	 * time in seconds to start a save after a change is made
 	 */
 	int autosaveInterval = 60;
 
+	/**
+	 * how many files entries are spread over, see {@link #setShards(int)}
+	 */
+	int shards = SINGLE_FILE;
+
+	/**
+	 * config keys of the entries currently saved in a shard
+	 */
+	private final Set<String> storedKeys = new HashSet<>();
+
+	/**
+	 * parsed contents of each hashed shard, so a save only serializes the changed entries
+	 */
+	private final Map<String, YamlConfiguration> shardContents = new HashMap<>();
+
+	/**
+	 * shard files that need to be written even if none of their entries changed
+	 */
+	private final Set<String> dirtyShards = new HashSet<>();
+
+	/**
+	 * shard files left from another shard setting, deleted after the next save
+	 */
+	private final Set<String> staleShards = new HashSet<>();
+
+	/**
+	 * config keys of the entries a save marked as saved but did not write yet, with how many saves are writing each,
+	 * so they are not unloaded before their changes are stored
+	 */
+	private final Map<String, Integer> savingKeys = new HashMap<>();
+
+	/**
+	 * where the entries are kept, or null for the YAML files
+	 */
+	private DataStoreBackend backend;
+
+	/**
+	 * held while saving to the backend, so saves reach it in the order they were made
+	 */
+	private final Object backendLock = new Object();
+
+	/**
+	 * gives the config key of the entry stored under a key when entries are loaded lazily, null if every entry is loaded up front
+	 */
+	private Function<Object, String> lazyConfigKey;
+
+	/**
+	 * how many entries stay loaded before clean entries are unloaded again, 0 for no limit
+	 */
+	private int maxLoaded;
+
+	/**
+	 * config keys of every entry when entries are loaded lazily, whether they are loaded or not
+	 */
+	private final Set<String> presentKeys = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * when each loaded entry was last requested, so the ones not used for the longest are unloaded first
+	 */
+	private final Map<Object, Long> lastUsed = new ConcurrentHashMap<>();
+
+	/**
+	 * entries that were unloaded by their config key, kept as long as something else still holds them,
+	 * so they are handed out again instead of a second copy and their later changes are still saved
+	 */
+	private final Map<String, WeakReference<T>> unloaded = new HashMap<>();
+
+	/**
+	 * how many times entries were unloaded, so a load that raced with an unload can tell it may have read old data
+	 */
+	private volatile int unloads;
+
+	/**
+	 * parsed contents of the data file when entries are loaded lazily, holding the entries that are not loaded
+	 */
+	private YamlConfiguration fileContents;
+
 	public SimpleDataStore(@NotNull Plugin plugin, @NotNull String filename, @NotNull Function<ConfigurationSection, T> loadFunction) {
 		this.plugin = plugin;
 		this.filename = filename;
@@ -60,9 +156,118 @@ public class SimpleDataStore<T extends DataStoreObject> {
 		return file;
 	}
 
+	/**
+	 * @return the directory holding the shard files, named after the data file
+	 */
+	@NotNull
+	public File getShardDirectory() {
+		String name = getFile().getName();
+		int extension = name.lastIndexOf('.');
+
+		return new File(getFile().getParentFile(), extension > 0 ? name.substring(0, extension) : name);
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	/**
+	 * Spread the entries over several files in {@link #getShardDirectory()} instead of one. <br>
+	 * A save then only serializes the entries that changed and only rewrites the files holding them.
+	 * Shards are loaded in parallel. If the shard directory does not exist yet the data file is
+	 * loaded instead, split up on the next save and then renamed to end with .old.
+	 * <p>
+	 * Hashed shards keep their parsed contents in memory. Use {@link #SHARD_PER_KEY} for
+	 * one file per entry when the data set is too large for that.
+	 *
+	 * @param shards how many files to hash entries into, {@link #SHARD_PER_KEY} or {@link #SINGLE_FILE}
+	 * @return this class
+	 */
+	@NotNull
+	public SimpleDataStore<T> setShards(int shards) {
+		if (shards < SHARD_PER_KEY) {
+			throw new IllegalArgumentException("Shard count must be positive, SHARD_PER_KEY or SINGLE_FILE");
+		}
+
+		synchronized (lock) {
+			this.shards = shards;
+
+			storedKeys.clear();
+			shardContents.clear();
+			dirtyShards.clear();
+		}
+
+		return this;
+	}
+
+	@Nullable
+	public DataStoreBackend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * Keep the entries in a backend instead of the YAML files, such as a database with
+	 * {@link DatabaseDataStoreBackend} or a binary log with {@link BinaryLogDataStoreBackend}. <br>
+	 * A save only writes the entries that are new or changed and deletes the removed ones.
+	 * Existing data can be moved over with {@link #migrate(SimpleDataStore, SimpleDataStore)}.
+	 *
+	 * @param backend the backend, or null to use the YAML files
+	 * @return this class
+	 */
+	@NotNull
+	public SimpleDataStore<T> setBackend(@Nullable DataStoreBackend backend) {
+		synchronized (lock) {
+			this.backend = backend;
+
+			storedKeys.clear();
+			shardContents.clear();
+			dirtyShards.clear();
+		}
+
+		return this;
+	}
+
+	/**
+	 * Create entries when they are first requested instead of all at once. <br>
+	 * {@link #load()} then only reads which entries exist, and {@link #get(Object)} creates an entry
+	 * from its already parsed section, or reads it from the shard file or backend on the calling thread
+	 * (see {@link #getAsync(Object)}), the first time it is requested. Once more than the given amount of entries are loaded, the ones that were not
+	 * requested for the longest and have no unsaved changes are unloaded again.
+	 * <p>
+	 * {@link #getData()} then only holds the loaded entries, so entries should be removed through this class.
+	 * Set this before loading the store.
+	 * <p>
+	 * <b>An unloaded entry that is still referenced elsewhere is handed out again by {@link #get(Object)}
+	 * and its changes are still saved, but only while it is not removed or replaced.</b>
+	 * Changes made to such an entry after another entry was added under its key are dropped with a warning,
+	 * so prefer getting entries again over keeping them.
+	 *
+	 * @param configKey gives the config key of the entry stored under a key, the opposite of {@link DataStoreObject#getKey()},
+	 *                  or null to load every entry up front
+	 * @param maxLoaded how many entries to keep loaded, 0 for no limit
+	 * @return this class
+	 */
+	@NotNull
+	public SimpleDataStore<T> setLazyLoading(@Nullable Function<Object, String> configKey, int maxLoaded) {
+		if (maxLoaded < 0) {
+			throw new IllegalArgumentException("Loaded entry limit cannot be negative");
+		}
+
+		synchronized (lock) {
+			this.lazyConfigKey = configKey;
+			this.maxLoaded = maxLoaded;
+		}
+
+		return this;
+	}
+
+	public boolean isLazyLoading() {
+		return lazyConfigKey != null;
+	}
+
 	/**
 	 * @return a directly-modifiable instance of the data mapping for this
-	 * storage
+	 * storage, only holding the loaded entries if they are loaded lazily
 	 */
 	public Map<Object, T> getData() {
 		return data;
@@ -71,6 +276,9 @@ public class SimpleDataStore<T extends DataStoreObject> {
 	/**
 	 * Returns the value to which the specified key is mapped, or {@code null}
 	 * if this map contains no mapping for the key.
+	 * <p>
+	 * When entries are loaded lazily, the first request of an entry blocks while it is read from
+	 * its shard file or queried from the backend, so use {@link #getAsync(Object)} on the main thread.
 	 *
 	 * @param key key whose mapping is to be retrieved from this storage
 	 * @return the value associated with <tt>key</tt>, or
@@ -78,7 +286,57 @@ public class SimpleDataStore<T extends DataStoreObject> {
 	 */
 	@Nullable
 	public T get(Object key) {
-		return data.get(key);
+		if (key == null) {
+			return null;
+		}
+
+		T value = data.get(key);
+		Function<Object, String> configKey = lazyConfigKey;
+
+		if (configKey == null) {
+			return value;
+		}
+
+		if (value == null) {
+			value = loadEntry(configKey.apply(key));
+		}
+
+		if (value != null) {
+			lastUsed.put(key, System.nanoTime());
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the value mapped to the key like {@link #get(Object)}, reading an entry that is
+	 * not loaded yet on the save threads instead of the calling thread
+	 *
+	 * @param key key whose mapping is to be retrieved from this storage
+	 * @return a future completed with the value, or <tt>null</tt> if there was no mapping for <tt>key</tt>,
+	 * already completed if the entry is loaded
+	 */
+	@NotNull
+	public CompletableFuture<T> getAsync(Object key) {
+		return getAsync(key, SaveScheduler.getExecutor());
+	}
+
+	/**
+	 * Returns the value mapped to the key like {@link #get(Object)}, reading an entry that is
+	 * not loaded yet on the given executor instead of the calling thread
+	 *
+	 * @param key      key whose mapping is to be retrieved from this storage
+	 * @param executor runs the read of an entry that is not loaded
+	 * @return a future completed with the value, or <tt>null</tt> if there was no mapping for <tt>key</tt>,
+	 * already completed if the entry is loaded
+	 */
+	@NotNull
+	public CompletableFuture<T> getAsync(Object key, @NotNull Executor executor) {
+		if (key == null || lazyConfigKey == null || data.containsKey(key)) {
+			return CompletableFuture.completedFuture(get(key));
+		}
+
+		return CompletableFuture.supplyAsync(() -> get(key), executor);
 	}
 
 	/**
@@ -90,10 +348,22 @@ public class SimpleDataStore<T extends DataStoreObject> {
 	 */
 	@Nullable
 	public T remove(@NotNull Object key) {
-		T temp;
+		Function<Object, String> configKey = lazyConfigKey;
+
+		// the entry may not be loaded yet
+		T temp = configKey != null ? get(key) : null;
 
 		synchronized (lock) {
-			temp = data.remove(key);
+			T removed = data.remove(key);
+
+			if (removed != null) {
+				temp = removed;
+			}
+
+			if (configKey != null) {
+				presentKeys.remove(configKey.apply(key));
+				lastUsed.remove(key);
+			}
 		}
 
 		save();
@@ -118,6 +388,11 @@ public class SimpleDataStore<T extends DataStoreObject> {
 
 		synchronized (lock) {
 			temp = data.remove(value.getKey());
+
+			if (lazyConfigKey != null) {
+				presentKeys.remove(value.getConfigKey());
+				lastUsed.remove(value.getKey());
+			}
 		}
 
 		save();
@@ -142,7 +417,7 @@ public class SimpleDataStore<T extends DataStoreObject> {
 		T temp;
 
 		synchronized (lock) {
-			temp = data.put(value.getKey(), value);
+			temp = put(value);
 		}
 
 		save();
@@ -164,7 +439,7 @@ public class SimpleDataStore<T extends DataStoreObject> {
 		synchronized (lock) {
 			for (T t : value) {
 				if (t != null) {
-					data.put(t.getKey(), t);
+					put(t);
 				}
 			}
 		}
@@ -187,7 +462,7 @@ public class SimpleDataStore<T extends DataStoreObject> {
 		synchronized (lock) {
 			for (T v : value) {
 				if (v != null) {
-					data.put(v.getKey(), v);
+					put(v);
 				}
 			}
 		}
@@ -196,9 +471,21 @@ public class SimpleDataStore<T extends DataStoreObject> {
 	}
 
 	/**
-	 * Load data from the associated file
+	 * Load data from the associated file, from the shard files if sharding is enabled, or from the backend if one is set
 	 */
 	public void load() {
+		DataStoreBackend backend = this.backend;
+
+		if (backend != null) {
+			loadBackend(backend);
+			return;
+		}
+
+		if (shards != SINGLE_FILE && getShardDirectory().isDirectory()) {
+			loadShards();
+			return;
+		}
+
 		if (!getFile().exists()) {
 			return;
 		}
@@ -209,24 +496,146 @@ public class SimpleDataStore<T extends DataStoreObject> {
 			f.load(file);
 
 			synchronized (lock) {
-				data.clear();
+				clearLoaded();
+				shardContents.clear();
+				staleShards.clear();
 
-				f.getValues(false).values().stream()
-						.filter(ConfigurationSection.class::isInstance)
-						.map(v -> getFromSection.apply((ConfigurationSection) v))
-						.forEach(v -> data.put(v.getKey(), v));
+				// the file is split into shards on the next save, which needs every entry
+				if (lazyConfigKey != null && shards == SINGLE_FILE) {
+					fileContents = f;
+					storedKeys.addAll(f.getKeys(false));
+					presentKeys.addAll(storedKeys);
+				} else {
+					f.getValues(false).values().stream()
+							.filter(ConfigurationSection.class::isInstance)
+							.map(v -> getFromSection.apply((ConfigurationSection) v))
+							.forEach(this::put);
+				}
 			}
 		} catch (IOException | InvalidConfigurationException ex) {
 			plugin.getLogger().log(Level.SEVERE, "Failed to load data from " + file.getName(), ex);
 		}
 	}
 
+	private void loadBackend(@NotNull DataStoreBackend backend) {
+		try {
+			if (lazyConfigKey != null) {
+				Collection<String> keys = backend.loadKeys();
+
+				synchronized (lock) {
+					clearLoaded();
+					storedKeys.addAll(keys);
+					presentKeys.addAll(keys);
+				}
+
+				return;
+			}
+
+			Collection<ConfigurationSection> sections = backend.load();
+
+			synchronized (lock) {
+				clearLoaded();
+
+				for (ConfigurationSection section : sections) {
+					put(getFromSection.apply(section));
+					storedKeys.add(section.getName());
+				}
+			}
+		} catch (IOException ex) {
+			plugin.getLogger().log(Level.SEVERE, "Failed to load data of " + getFile().getName(), ex);
+		}
+	}
+
+	private void loadShards() {
+		File[] files = getShardDirectory().listFiles((dir, name) -> name.endsWith(".yml"));
+
+		if (files == null) {
+			return;
+		}
+
+		boolean lazy = lazyConfigKey != null;
+		List<String> namedKeys = new ArrayList<>();
+
+		if (lazy && shards == SHARD_PER_KEY) {
+			// The file name tells the config key, so only files that may hold other entries are read
+			files = Arrays.stream(files)
+					.filter(shardFile -> {
+						String key = getPerKeyConfigKey(shardFile.getName());
+
+						if (key == null) {
+							return true;
+						}
+
+						namedKeys.add(key);
+						return false;
+					})
+					.toArray(File[]::new);
+		}
+
+		// Parsing is the slow part, so the files are parsed in parallel and the entries created here
+		Map<String, YamlConfiguration> parsed = Arrays.stream(files)
+				.parallel()
+				.map(shardFile -> {
+					try {
+						YamlConfiguration f = new YamlConfiguration();
+						f.options().pathSeparator('\0');
+						f.load(shardFile);
+
+						return new AbstractMap.SimpleEntry<>(shardFile.getName(), f);
+					} catch (IOException | InvalidConfigurationException ex) {
+						plugin.getLogger().log(Level.SEVERE, "Failed to load data from " + shardFile.getName(), ex);
+						return null;
+					}
+				})
+				.filter(Objects::nonNull)
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+		synchronized (lock) {
+			clearLoaded();
+			shardContents.clear();
+			dirtyShards.clear();
+			staleShards.clear();
+
+			storedKeys.addAll(namedKeys);
+			presentKeys.addAll(namedKeys);
+
+			for (Map.Entry<String, YamlConfiguration> shard : parsed.entrySet()) {
+				Set<String> keys = shard.getValue().getKeys(false);
+
+				// A file written with another shard setting is rewritten into the right shards on the next save
+				boolean stale = keys.stream().anyMatch(key -> !getShardName(key).equals(shard.getKey()));
+
+				if (stale) {
+					staleShards.add(shard.getKey());
+				} else {
+					storedKeys.addAll(keys);
+
+					if (shards > 0) {
+						shardContents.put(shard.getKey(), shard.getValue());
+					}
+
+					if (lazy) {
+						presentKeys.addAll(keys);
+						continue;
+					}
+				}
+
+				shard.getValue().getValues(false).values().stream()
+						.filter(ConfigurationSection.class::isInstance)
+						.map(v -> getFromSection.apply((ConfigurationSection) v))
+						.forEach(this::put);
+			}
+		}
+	}
+
 	/**
 	 * Optionally save this storage's data to file if there have been changes
 	 * made
 	 */
 	public void saveChanges() {
-		if (saveTask != null || data.values().stream().anyMatch(DataStoreObject::hasChanged)) {
+		reattachChanged();
+
+		if (SaveScheduler.isPending(getFile()) || data.values().stream().anyMatch(DataStoreObject::hasChanged)) {
 			flushSave();
 		}
 	}
@@ -236,42 +645,666 @@ public class SimpleDataStore<T extends DataStoreObject> {
 	 */
 	public void save() {
 		// save async even if no plugin or if plugin disabled
-		if (saveTask == null) {
-			autosaveTimer = new Timer((plugin != null ? plugin.getName() + "-DataStoreSave-" : "DataStoreSave-") + getFile().getName());
-			autosaveTimer.schedule(saveTask = new SaveTask(), autosaveInterval * 1000L);
-		}
+		SaveScheduler.schedule(getFile(), autosaveInterval * 1000L, this::flushSave);
 	}
 
 	/**
 	 * Force a new save of this storage's data
 	 */
 	public void flushSave() {
-		if (saveTask != null) {
-			//Close Threads
-			saveTask.cancel();
-			autosaveTimer.cancel();
-			saveTask = null;
-			autosaveTimer = null;
+		SaveScheduler.cancel(getFile());
+		reattachChanged();
+
+		DataStoreBackend backend = this.backend;
+
+		if (backend != null) {
+			flushBackend(backend);
+		} else if (shards != SINGLE_FILE) {
+			flushShards();
+		} else if (lazyConfigKey != null) {
+			flushContents();
+		} else {
+			flushFile();
 		}
 
+		// saved entries can be unloaded now
+		unloadUnused();
+	}
+
+	private void flushFile() {
+		long start = System.nanoTime();
 		YamlConfiguration f = new YamlConfiguration();
+		List<T> saved;
 
 		synchronized (lock) {
-			data.values().forEach(e -> e.saveToSection(f.createSection(e.getConfigKey())));
+			saved = new ArrayList<>(data.values());
+			saved.forEach(e -> e.saveToSection(f.createSection(e.getConfigKey())));
 		}
 
+		String contents = f.saveToString();
+		SaveScheduler.recordSerialize(getFile(), System.nanoTime() - start);
+
 		try {
-			f.save(getFile());
-			data.values().forEach(e -> e.setChanged(false));
+			SaveScheduler.write(getFile(), contents, StandardCharsets.UTF_8);
+			saved.forEach(e -> e.setChanged(false));
 		} catch (IOException ex) {
 			plugin.getLogger().log(Level.SEVERE, "Failed to save data to " + file.getName(), ex);
 		}
 	}
 
-	class SaveTask extends TimerTask {
-		@Override
-		public void run() {
-			flushSave();
+	/**
+	 * Serialize the changed entries into their shards, then write only the shards that changed
+	 */
+	private void flushShards() {
+		long start = System.nanoTime();
+		Map<String, String> writes = new HashMap<>();
+		Map<String, List<T>> savedByShard = new HashMap<>();
+		Set<String> deletes = new HashSet<>();
+
+		synchronized (lock) {
+			Set<String> present = getPresentKeys();
+			Map<String, List<T>> changedByShard = new HashMap<>();
+
+			for (T e : data.values()) {
+				String key = e.getConfigKey();
+				present.add(key);
+
+				if (e.hasChanged() || !storedKeys.contains(key)) {
+					changedByShard.computeIfAbsent(getShardName(key), k -> new ArrayList<>()).add(e);
+				}
+			}
+
+			Map<String, List<String>> removedByShard = storedKeys.stream()
+					.filter(key -> !present.contains(key))
+					.collect(Collectors.groupingBy(this::getShardName));
+
+			Set<String> touched = new HashSet<>(dirtyShards);
+			touched.addAll(changedByShard.keySet());
+			touched.addAll(removedByShard.keySet());
+			dirtyShards.clear();
+
+			for (String shard : touched) {
+				List<T> changed = changedByShard.getOrDefault(shard, Collections.emptyList());
+				YamlConfiguration f;
+
+				if (shards == SHARD_PER_KEY) {
+					f = new YamlConfiguration();
+				} else {
+					f = shardContents.computeIfAbsent(shard, k -> {
+						YamlConfiguration created = new YamlConfiguration();
+						created.options().pathSeparator('\0');
+						return created;
+					});
+				}
+
+				removedByShard.getOrDefault(shard, Collections.emptyList()).forEach(key -> {
+					f.set(key, null);
+					storedKeys.remove(key);
+				});
+
+				for (T e : changed) {
+					e.saveToSection(f.createSection(e.getConfigKey()));
+					e.setChanged(false);
+					storedKeys.add(e.getConfigKey());
+				}
+
+				startSaving(changed);
+
+				if (f.getKeys(false).isEmpty()) {
+					deletes.add(shard);
+					shardContents.remove(shard);
+				} else {
+					writes.put(shard, f.saveToString());
+				}
+
+				savedByShard.put(shard, changed);
+			}
+		}
+
+		SaveScheduler.recordSerialize(getFile(), System.nanoTime() - start);
+
+		File directory = getShardDirectory();
+		directory.mkdirs();
+
+		for (Map.Entry<String, String> write : writes.entrySet()) {
+			try {
+				SaveScheduler.write(getFile(), new File(directory, write.getKey()), write.getValue(), StandardCharsets.UTF_8);
+			} catch (IOException ex) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to save data to " + write.getKey(), ex);
+
+				synchronized (lock) {
+					dirtyShards.add(write.getKey());
+					savedByShard.get(write.getKey()).forEach(e -> e.setChanged(true));
+				}
+			}
+		}
+
+		boolean complete;
+
+		synchronized (lock) {
+			savedByShard.values().forEach(this::finishSaving);
+			complete = dirtyShards.isEmpty();
+
+			if (complete) {
+				staleShards.stream()
+						.filter(shard -> !writes.containsKey(shard))
+						.forEach(deletes::add);
+				staleShards.clear();
+			}
+		}
+
+		for (String shard : deletes) {
+			new File(directory, shard).delete();
+		}
+
+		// every entry of the data file is in the shards now, so it is moved aside for no later load to read both
+		if (complete && getFile().exists()) {
+			File old = new File(getFile().getParentFile(), getFile().getName() + ".old");
+
+			try {
+				Files.move(getFile().toPath(), old.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException ex) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to move " + getFile().getName() + " aside after splitting it into shards", ex);
+			}
+		}
+	}
+
+	/**
+	 * Serialize the changed entries into the parsed contents of the data file, which still hold
+	 * the entries that are not loaded, then write the file if anything changed
+	 */
+	private void flushContents() {
+		long start = System.nanoTime();
+		List<T> saved = new ArrayList<>();
+		String contents;
+
+		synchronized (lock) {
+			if (fileContents == null) {
+				fileContents = new YamlConfiguration();
+				fileContents.options().pathSeparator('\0');
+			}
+
+			boolean changed = dirtyShards.remove(getFile().getName());
+
+			for (Iterator<String> it = storedKeys.iterator(); it.hasNext(); ) {
+				String key = it.next();
+
+				if (!presentKeys.contains(key)) {
+					fileContents.set(key, null);
+					it.remove();
+					changed = true;
+				}
+			}
+
+			for (T e : data.values()) {
+				String key = e.getConfigKey();
+
+				if (e.hasChanged() || !storedKeys.contains(key)) {
+					e.saveToSection(fileContents.createSection(key));
+					e.setChanged(false);
+
+					storedKeys.add(key);
+					presentKeys.add(key);
+					saved.add(e);
+				}
+			}
+
+			if (!changed && saved.isEmpty()) {
+				return;
+			}
+
+			contents = fileContents.saveToString();
+			startSaving(saved);
+		}
+
+		SaveScheduler.recordSerialize(getFile(), System.nanoTime() - start);
+
+		try {
+			SaveScheduler.write(getFile(), contents, StandardCharsets.UTF_8);
+		} catch (IOException ex) {
+			plugin.getLogger().log(Level.SEVERE, "Failed to save data to " + file.getName(), ex);
+
+			synchronized (lock) {
+				dirtyShards.add(getFile().getName());
+				saved.forEach(e -> e.setChanged(true));
+			}
+		} finally {
+			synchronized (lock) {
+				finishSaving(saved);
+			}
+		}
+	}
+
+	/**
+	 * Serialize the new and changed entries and hand them to the backend along with the removed ones
+	 */
+	private void flushBackend(@NotNull DataStoreBackend backend) {
+		synchronized (backendLock) {
+			long start = System.nanoTime();
+			List<ConfigurationSection> changed = new ArrayList<>();
+			List<T> saved = new ArrayList<>();
+			List<String> removed;
+
+			synchronized (lock) {
+				Set<String> present = getPresentKeys();
+
+				for (T e : data.values()) {
+					String key = e.getConfigKey();
+					present.add(key);
+
+					if (e.hasChanged() || !storedKeys.contains(key)) {
+						ConfigurationSection section = createEntrySection(key);
+						e.saveToSection(section);
+						e.setChanged(false);
+
+						changed.add(section);
+						saved.add(e);
+					}
+				}
+
+				removed = storedKeys.stream()
+						.filter(key -> !present.contains(key))
+						.collect(Collectors.toList());
+
+				startSaving(saved);
+			}
+
+			SaveScheduler.recordSerialize(getFile(), System.nanoTime() - start);
+
+			if (changed.isEmpty() && removed.isEmpty()) {
+				return;
+			}
+
+			try {
+				start = System.nanoTime();
+				backend.store(changed, removed);
+				SaveScheduler.getStats(getFile()).recordWrite(System.nanoTime() - start);
+
+				synchronized (lock) {
+					changed.forEach(section -> storedKeys.add(section.getName()));
+					removed.forEach(storedKeys::remove);
+				}
+			} catch (IOException ex) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to save data of " + getFile().getName(), ex);
+
+				synchronized (lock) {
+					saved.forEach(e -> e.setChanged(true));
+				}
+			} finally {
+				synchronized (lock) {
+					finishSaving(saved);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy every entry of one store into another, such as from the YAML files into a database. <br>
+	 * Both stores are loaded from their storage first, so this is meant to run once before either of them is used.
+	 * Entries of the target are replaced by entries of the source with the same key, the source is left as it is.
+	 *
+	 * @param from the store to copy the entries from
+	 * @param to   the store to copy the entries into
+	 * @return how many entries were copied
+	 * @throws IOException if not every entry could be written to the target
+	 */
+	public static <T extends DataStoreObject> int migrate(@NotNull SimpleDataStore<T> from, @NotNull SimpleDataStore<T> to) throws IOException {
+		from.load();
+		to.load();
+
+		List<T> entries;
+
+		synchronized (from.lock) {
+			entries = new ArrayList<>(from.data.values());
+		}
+
+		if (from.lazyConfigKey != null) {
+			// create the entries that are not loaded for the copy only, without loading them into the source
+			Set<String> loaded = entries.stream().map(e -> e.getConfigKey()).collect(Collectors.toSet());
+
+			for (String configKey : new ArrayList<>(from.presentKeys)) {
+				if (!loaded.contains(configKey)) {
+					ConfigurationSection section = from.readSection(configKey);
+
+					if (section != null) {
+						entries.add(from.getFromSection.apply(section));
+					}
+				}
+			}
+		}
+
+		synchronized (to.lock) {
+			for (T e : entries) {
+				e.setChanged(true);
+				to.put(e);
+			}
+		}
+
+		to.flushSave();
+
+		// every way of saving leaves the entries it failed to write marked as changed
+		if (entries.stream().anyMatch(DataStoreObject::hasChanged)) {
+			throw new IOException("Not every entry could be written to " + to.getFile().getName());
+		}
+
+		return entries.size();
+	}
+
+	/**
+	 * Add an entry to the loaded entries, call while holding the lock
+	 *
+	 * @return the loaded entry it replaced
+	 */
+	private T put(T value) {
+		if (lazyConfigKey != null) {
+			presentKeys.add(value.getConfigKey());
+		}
+
+		return data.put(value.getKey(), value);
+	}
+
+	/**
+	 * Forget every entry before loading, call while holding the lock
+	 */
+	private void clearLoaded() {
+		data.clear();
+		storedKeys.clear();
+		presentKeys.clear();
+		lastUsed.clear();
+		unloaded.clear();
+		fileContents = null;
+	}
+
+	/**
+	 * Load the unloaded entries that were changed again since, so the next save writes them.
+	 * Changes to an entry that was removed or replaced in the meantime are dropped with a warning.
+	 */
+	private void reattachChanged() {
+		if (lazyConfigKey == null) {
+			return;
+		}
+
+		synchronized (lock) {
+			for (Iterator<Map.Entry<String, WeakReference<T>>> it = unloaded.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<String, WeakReference<T>> entry = it.next();
+				T e = entry.getValue().get();
+
+				if (e == null) {
+					it.remove();
+				} else if (e.hasChanged()) {
+					it.remove();
+
+					if (!presentKeys.contains(entry.getKey()) || data.containsKey(e.getKey())) {
+						plugin.getLogger().warning("Dropped changes to " + entry.getKey() + " of " + getFile().getName()
+								+ ", it was changed after being unloaded and its entry was removed or replaced since");
+						continue;
+					}
+
+					data.put(e.getKey(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Load an unloaded entry again if something still holds it, call while holding the lock
+	 *
+	 * @return the entry, or null if it was not held anymore
+	 */
+	@Nullable
+	private T reattach(String configKey) {
+		WeakReference<T> reference = unloaded.remove(configKey);
+		T e = reference != null ? reference.get() : null;
+
+		if (e == null || !presentKeys.contains(configKey)) {
+			return null;
+		}
+
+		T loaded = data.putIfAbsent(e.getKey(), e);
+		lastUsed.put(e.getKey(), System.nanoTime());
+
+		return loaded != null ? loaded : e;
+	}
+
+	/**
+	 * Keep entries loaded while a save writes them, call while holding the lock
+	 */
+	private void startSaving(Collection<T> saved) {
+		saved.forEach(e -> savingKeys.merge(e.getConfigKey(), 1, Integer::sum));
+	}
+
+	/**
+	 * Let entries be unloaded again once a save wrote them or marked them as changed again, call while holding the lock
+	 */
+	private void finishSaving(Collection<T> saved) {
+		saved.forEach(e -> savingKeys.computeIfPresent(e.getConfigKey(), (key, count) -> count > 1 ? count - 1 : null));
+	}
+
+	/**
+	 * @return the config keys of the entries that should stay saved, filled in by the caller unless entries are loaded lazily
+	 */
+	private Set<String> getPresentKeys() {
+		return lazyConfigKey != null ? presentKeys : new HashSet<>();
+	}
+
+	/**
+	 * Create an entry that is not loaded yet from its stored section
+	 *
+	 * @return the entry, or null if there is no entry with that config key
+	 */
+	@Nullable
+	private T loadEntry(@Nullable String configKey) {
+		while (configKey != null && presentKeys.contains(configKey)) {
+			int unloadsBefore = unloads;
+			ConfigurationSection section;
+
+			T held;
+
+			synchronized (lock) {
+				held = reattach(configKey);
+			}
+
+			if (held != null) {
+				unloadUnused();
+
+				return held;
+			}
+
+			try {
+				section = readSection(configKey);
+			} catch (IOException ex) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to load " + configKey + " from " + getFile().getName(), ex);
+				return null;
+			}
+
+			if (section == null) {
+				return null;
+			}
+
+			T value = getFromSection.apply(section);
+			T loaded;
+
+			synchronized (lock) {
+				loaded = data.get(value.getKey());
+
+				if (loaded == null) {
+					// removed while it was read, or loaded, changed, saved and unloaded again
+					if (!presentKeys.contains(configKey)) {
+						return null;
+					}
+
+					if (unloadsBefore != unloads) {
+						continue;
+					}
+
+					data.put(value.getKey(), value);
+
+					// counts as used now, so unloading below does not pick the entry that was just loaded
+					lastUsed.put(value.getKey(), System.nanoTime());
+				}
+			}
+
+			unloadUnused();
+
+			return loaded != null ? loaded : value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the stored section of an entry, or null if it is not stored
+	 */
+	@Nullable
+	private ConfigurationSection readSection(@NotNull String configKey) throws IOException {
+		DataStoreBackend backend = this.backend;
+
+		if (backend != null) {
+			return backend.load(configKey);
+		}
+
+		if (shards == SHARD_PER_KEY) {
+			File shardFile = new File(getShardDirectory(), getShardName(configKey));
+
+			if (!shardFile.exists()) {
+				return null;
+			}
+
+			YamlConfiguration f = new YamlConfiguration();
+			f.options().pathSeparator('\0');
+
+			try {
+				f.load(shardFile);
+			} catch (InvalidConfigurationException ex) {
+				throw new IOException("Invalid data in " + shardFile.getName(), ex);
+			}
+
+			return f.getConfigurationSection(configKey);
+		}
+
+		synchronized (lock) {
+			YamlConfiguration f = shards == SINGLE_FILE ? fileContents : shardContents.get(getShardName(configKey));
+
+			return f != null ? f.getConfigurationSection(configKey) : null;
+		}
+	}
+
+	/**
+	 * Unload the entries that were not requested for the longest once there are too many loaded,
+	 * skipping entries with unsaved changes and entries a save is still writing
+	 */
+	private void unloadUnused() {
+		int maxLoaded = this.maxLoaded;
+
+		if (lazyConfigKey == null || maxLoaded == 0 || data.size() <= maxLoaded) {
+			return;
+		}
+
+		synchronized (lock) {
+			if (data.size() <= maxLoaded) {
+				return;
+			}
+
+			// unload a few more than needed, so the next load does not have to do this again
+			int target = maxLoaded - maxLoaded / 8;
+
+			List<T> clean = data.values().stream()
+					.filter(e -> !e.hasChanged() && storedKeys.contains(e.getConfigKey()) && !savingKeys.containsKey(e.getConfigKey()))
+					.sorted(Comparator.comparingLong(e -> lastUsed.getOrDefault(e.getKey(), 0L)))
+					.collect(Collectors.toList());
+
+			for (T e : clean) {
+				if (data.size() <= target) {
+					break;
+				}
+
+				data.remove(e.getKey());
+				unloaded.put(e.getConfigKey(), new WeakReference<>(e));
+			}
+
+			unloaded.values().removeIf(reference -> reference.get() == null);
+			lastUsed.keySet().retainAll(data.keySet());
+			unloads++;
+		}
+	}
+
+	/**
+	 * @return an empty section named after the config key, the way entries are passed to a {@link DataStoreBackend}
+	 */
+	@NotNull
+	static ConfigurationSection createEntrySection(@NotNull String configKey) {
+		YamlConfiguration holder = new YamlConfiguration();
+		holder.options().pathSeparator('\0');
+
+		return holder.createSection(configKey);
+	}
+
+	/**
+	 * @return the entry as a YAML document holding its section, the same way it would be saved in a data file
+	 */
+	@NotNull
+	static String toYaml(@NotNull ConfigurationSection section) {
+		YamlConfiguration document = new YamlConfiguration();
+		document.options().pathSeparator('\0');
+		document.set(section.getName(), section);
+
+		return document.saveToString();
+	}
+
+	/**
+	 * @return the section of the entry from a document written by {@link #toYaml(ConfigurationSection)}
+	 * @throws IOException if the document is not valid or does not hold the entry
+	 */
+	@NotNull
+	static ConfigurationSection fromYaml(@NotNull String configKey, @NotNull String yaml) throws IOException {
+		YamlConfiguration document = new YamlConfiguration();
+		document.options().pathSeparator('\0');
+
+		try {
+			document.loadFromString(yaml);
+		} catch (InvalidConfigurationException ex) {
+			throw new IOException("Invalid data for " + configKey, ex);
+		}
+
+		ConfigurationSection section = document.getConfigurationSection(configKey);
+
+		if (section == null) {
+			throw new IOException("No data for " + configKey);
+		}
+
+		return section;
+	}
+
+	/**
+	 * @return the config key of the entry in a file of {@link #SHARD_PER_KEY}, or null if the file may hold other entries
+	 */
+	@Nullable
+	private String getPerKeyConfigKey(String fileName) {
+		if (fileName.startsWith("shard-") || !fileName.endsWith(".yml")) {
+			return null;
+		}
+
+		try {
+			String configKey = URLDecoder.decode(fileName.substring(0, fileName.length() - 4), StandardCharsets.UTF_8.name());
+
+			return getShardName(configKey).equals(fileName) ? configKey : null;
+		} catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the name of the shard file the entry with this config key is saved in
+	 */
+	private String getShardName(String configKey) {
+		if (shards != SHARD_PER_KEY) {
+			return "shard-" + Math.floorMod(configKey.hashCode(), shards) + ".yml";
+		}
+
+		try {
+			return URLEncoder.encode(configKey, StandardCharsets.UTF_8.name()).replace("*", "%2A") + ".yml";
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex); // UTF-8 is always supported
 		}
 	}
 }
@@ -0,0 +1,152 @@
+package ca.tweetzy.tweety.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the rows of a query one at a time instead of loading them all into memory.
+ * <p>
+ * The statement, and the connection when the cursor owns one, stay open until
+ * {@link #close()} is called or the last row has been read.
+ */
+public final class Cursor<T> implements Iterator<T>, AutoCloseable {
+	private final PreparedStatement statement;
+	private final ResultSet resultSet;
+	private final DatabaseConnector.RowMapper<T> mapper;
+	private final AutoCloseable connection;
+
+	private boolean hasRow;
+	private boolean advanced;
+	private boolean closed;
+
+	private Cursor(PreparedStatement statement, ResultSet resultSet, DatabaseConnector.RowMapper<T> mapper, AutoCloseable connection) {
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.mapper = mapper;
+		this.connection = connection;
+	}
+
+	/**
+	 * Run a query on a connection the caller keeps ownership of, such as the one
+	 * passed to {@link DataMigration#migrate(Connection, String)}
+	 *
+	 * @param connection the connection to query on
+	 * @param sql        the query to run
+	 * @param binder     binds the query parameters, or null if there are none
+	 * @param mapper     maps the current row of the result set
+	 * @param fetchSize  how many rows the driver should fetch at once
+	 * @return the cursor, which must be closed
+	 * @throws SQLException if the query failed
+	 */
+	public static <T> Cursor<T> open(Connection connection, String sql, DatabaseConnector.ParameterBinder binder,
+									 DatabaseConnector.RowMapper<T> mapper, int fetchSize) throws SQLException {
+		return open(connection, sql, binder, mapper, fetchSize, null);
+	}
+
+	static <T> Cursor<T> open(Connection connection, String sql, DatabaseConnector.ParameterBinder binder,
+							  DatabaseConnector.RowMapper<T> mapper, int fetchSize, AutoCloseable owner) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+		try {
+			statement.setFetchSize(fetchSize);
+
+			if (binder != null) {
+				binder.bind(statement);
+			}
+
+			return new Cursor<>(statement, statement.executeQuery(), mapper, owner);
+		} catch (SQLException ex) {
+			statement.close();
+			throw ex;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (this.closed) {
+			return false;
+		}
+
+		if (!this.advanced) {
+			try {
+				this.hasRow = this.resultSet.next();
+				this.advanced = true;
+			} catch (SQLException ex) {
+				this.close();
+				throw new IllegalStateException("Failed to read the next row", ex);
+			}
+
+			if (!this.hasRow) {
+				this.close();
+			}
+		}
+
+		return this.hasRow;
+	}
+
+	@Override
+	public T next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		this.advanced = false;
+
+		try {
+			return this.mapper.map(this.resultSet);
+		} catch (SQLException ex) {
+			this.close();
+			throw new IllegalStateException("Failed to map a row", ex);
+		}
+	}
+
+	/**
+	 * Read up to the given amount of rows
+	 *
+	 * @param size the maximum page size
+	 * @return the next rows, empty once the cursor is exhausted
+	 */
+	public List<T> nextPage(int size) {
+		List<T> page = new ArrayList<>(size);
+
+		while (page.size() < size && this.hasNext()) {
+			page.add(this.next());
+		}
+
+		return page;
+	}
+
+	/**
+	 * @return a sequential stream over the remaining rows that closes this cursor when closed
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false).onClose(this::close);
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+
+		this.closed = true;
+
+		// Closed from the last to the first, each one even if closing the one before failed
+		try (AutoCloseable owner = this.connection;
+			 PreparedStatement statement = this.statement;
+			 ResultSet resultSet = this.resultSet) {
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package ca.tweetzy.tweety.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A long running data change that is applied in chunks after the schema migrations
+ * have finished. Progress is stored after every chunk, so a restart continues
+ * where the last committed chunk left off.
+ */
+public abstract class DataBackfill {
+
+	/**
+	 * Returned by {@link #migrateChunk(Connection, String, long)} once there is nothing left to do
+	 */
+	public static final long FINISHED = -1;
+
+	private final String name;
+
+	/**
+	 * @param name a unique name, used to store the progress of this backfill
+	 */
+	public DataBackfill(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Process the next chunk. Each call runs in its own transaction together with
+	 * saving the returned checkpoint.
+	 *
+	 * @param connection  the connection to use
+	 * @param tablePrefix the prefix of all table names
+	 * @param checkpoint  the value returned by the previous chunk, 0 for the first one
+	 * @return the checkpoint to continue from, usually the last processed id, or {@link #FINISHED}
+	 * @throws SQLException if the chunk failed, it is rolled back and retried on the next start
+	 */
+	public abstract long migrateChunk(Connection connection, String tablePrefix, long checkpoint) throws SQLException;
+
+	/**
+	 * @return the unique name of this backfill
+	 */
+	public String getName() {
+		return this.name;
+	}
+}
@@ -7,28 +7,63 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Base class of the data managers of a plugin, running database work on a {@link DatabaseExecutor}.
+ * <p>
+ * Tasks queued through {@link #runAsync(Runnable)} without a key run one at a time in the order
+ * they were queued, like they always have. Tasks queued with a key only wait for the tasks of the
+ * same key, and {@link #query}, {@link #update} and {@link #insert} run in parallel, up to
+ * {@link DatabaseConnector#getMaxConnections()} at a time.
+ * <p>
+ * When the queue is full, threads other than the main server thread wait for room, while the main thread
+ * gets a {@link RejectedExecutionException}, see {@link DatabaseExecutor.BackPressurePolicy#BLOCK_OFF_MAIN_THREAD}.
+ */
 public class DataManagerAbstract {
 	protected final DatabaseConnector databaseConnector;
 	protected final Plugin plugin;
 
-	protected final ExecutorService asyncPool = Executors.newSingleThreadExecutor();
+	/**
+	 * How many tasks may wait in the default async pool before submitting threads have to wait
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 8192;
 
-	@Deprecated
-	private static final Map<String, LinkedList<Runnable>> queues = new HashMap<>();
+	protected final DatabaseExecutor asyncPool;
+
+	/**
+	 * The key tasks queued without a key are ordered under
+	 */
+	private final Object unkeyedTasks = new Object();
+
+	/**
+	 * Buffers writes to be flushed in batches, null until {@link #enableWriteBehind(long, int)} is called
+	 */
+	protected WriteBehindBuffer writeBehind;
 
 	public DataManagerAbstract(DatabaseConnector databaseConnector, Plugin plugin) {
+		this(databaseConnector, plugin, new DatabaseExecutor(plugin.getName(), Math.max(1, databaseConnector.getMaxConnections()),
+				DEFAULT_QUEUE_CAPACITY, DatabaseExecutor.BackPressurePolicy.BLOCK_OFF_MAIN_THREAD));
+	}
+
+	/**
+	 * Creates a new data manager running its async tasks on the given executor
+	 *
+	 * @param databaseConnector the connector to use
+	 * @param plugin            the owning plugin
+	 * @param asyncPool         the executor to run async tasks on
+	 */
+	public DataManagerAbstract(DatabaseConnector databaseConnector, Plugin plugin, DatabaseExecutor asyncPool) {
 		this.databaseConnector = databaseConnector;
 		this.plugin = plugin;
+		this.asyncPool = asyncPool;
 	}
 
 	/**
@@ -47,21 +82,19 @@ public class DataManagerAbstract {
 	}
 
 	/**
-	 * Deprecated because it is often times not accurate to its use case. (+race-conditions)
+	 * Returns the highest id of the given table, or the id generated by the last insert
+	 * made on this connection if the table is null.
+	 *
+	 * @deprecated use {@link SqlDialect#insertAndGetId(Connection, String, DatabaseConnector.ParameterBinder)} instead
 	 */
 	@Deprecated
 	protected int lastInsertedId(Connection connection, String table) {
-		String select = "SELECT * FROM " + this.getTablePrefix() + table + " ORDER BY id DESC LIMIT 1";
-		String query;
-		if (this.databaseConnector instanceof SQLiteConnector) {
-			query = table == null ? "SELECT last_insert_rowid()" : select;
-		} else {
-			query = table == null ? "SELECT LAST_INSERT_ID()" : select;
-		}
+		String query = table == null ? this.databaseConnector.getDialect().lastInsertIdQuery()
+				: "SELECT * FROM " + this.getTablePrefix() + table + " ORDER BY id DESC LIMIT 1";
 
 		int id = -1;
-		try (Statement statement = connection.createStatement()) {
-			ResultSet result = statement.executeQuery(query);
+		try (Statement statement = connection.createStatement();
+			 ResultSet result = statement.executeQuery(query)) {
 			result.next();
 			id = result.getInt(1);
 		} catch (SQLException ex) {
@@ -71,6 +104,13 @@ public class DataManagerAbstract {
 		return id;
 	}
 
+	/**
+	 * @return the dialect of the database this manager writes to
+	 */
+	public SqlDialect getDialect() {
+		return this.databaseConnector.getDialect();
+	}
+
 	/**
 	 * Queue a task to be run asynchronously. <br>
 	 *
@@ -90,22 +130,194 @@ public class DataManagerAbstract {
 		Bukkit.getScheduler().runTask(this.plugin, runnable);
 	}
 
+	/**
+	 * @return an executor running tasks on the main server thread, directly when already on it
+	 * or when the plugin is disabled and can no longer schedule tasks
+	 */
+	public Executor getMainThreadExecutor() {
+		return runnable -> {
+			if (Bukkit.isPrimaryThread() || !this.plugin.isEnabled()) {
+				runnable.run();
+			} else {
+				sync(runnable);
+			}
+		};
+	}
+
+	/**
+	 * Run a query on the async pool. Independent queries run in parallel,
+	 * up to {@link DatabaseConnector#getMaxConnections()} at a time.
+	 *
+	 * @param sql    the query to run
+	 * @param binder binds the query parameters, or null if there are none
+	 * @param mapper maps the current row of the result set
+	 * @return a future completed on the async pool with the mapped rows
+	 */
+	public <T> CompletableFuture<List<T>> query(String sql, DatabaseConnector.ParameterBinder binder, DatabaseConnector.RowMapper<T> mapper) {
+		return this.databaseConnector.query(sql, binder, mapper, this.asyncPool);
+	}
+
+	/**
+	 * Run a query on the async pool and complete the result on the given executor,
+	 * such as {@link #getMainThreadExecutor()}
+	 *
+	 * @param sql      the query to run
+	 * @param binder   binds the query parameters, or null if there are none
+	 * @param mapper   maps the current row of the result set
+	 * @param executor the executor to complete the future on
+	 * @return a future completed on the given executor with the mapped rows
+	 */
+	public <T> CompletableFuture<List<T>> query(String sql, DatabaseConnector.ParameterBinder binder, DatabaseConnector.RowMapper<T> mapper, Executor executor) {
+		return completeOn(this.query(sql, binder, mapper), executor);
+	}
+
+	/**
+	 * Run an insert, update or delete statement on the async pool
+	 *
+	 * @param sql    the statement to run
+	 * @param binder binds the statement parameters, or null if there are none
+	 * @return a future completed on the async pool with the amount of affected rows
+	 */
+	public CompletableFuture<Integer> update(String sql, DatabaseConnector.ParameterBinder binder) {
+		return this.databaseConnector.update(sql, binder, this.asyncPool);
+	}
+
+	/**
+	 * Run an insert, update or delete statement on the async pool and complete
+	 * the result on the given executor, such as {@link #getMainThreadExecutor()}
+	 *
+	 * @param sql      the statement to run
+	 * @param binder   binds the statement parameters, or null if there are none
+	 * @param executor the executor to complete the future on
+	 * @return a future completed on the given executor with the amount of affected rows
+	 */
+	public CompletableFuture<Integer> update(String sql, DatabaseConnector.ParameterBinder binder, Executor executor) {
+		return completeOn(this.update(sql, binder), executor);
+	}
+
+	/**
+	 * Run an insert on the async pool
+	 *
+	 * @param sql    the insert statement
+	 * @param binder binds the statement parameters, or null if there are none
+	 * @return a future completed on the async pool with the generated key, or -1 if none was generated
+	 */
+	public CompletableFuture<Long> insert(String sql, DatabaseConnector.ParameterBinder binder) {
+		return this.databaseConnector.insert(sql, binder, this.asyncPool);
+	}
+
+	/**
+	 * Run an insert, update or delete statement on the async pool and drop the
+	 * written row from the given cache once the statement has finished
+	 *
+	 * @param sql    the statement to run
+	 * @param binder binds the statement parameters, or null if there are none
+	 * @param cache  the cache holding the written row
+	 * @param key    the primary key of the written row
+	 * @return a future completed on the async pool with the amount of affected rows
+	 */
+	public <K> CompletableFuture<Integer> update(String sql, DatabaseConnector.ParameterBinder binder, EntityCache<K, ?> cache, K key) {
+		return this.update(sql, binder).whenComplete((rows, error) -> cache.invalidate(key));
+	}
+
+	/**
+	 * Create a read-through cache for a table of this plugin, see {@link EntityCache}
+	 *
+	 * @param table      the table name without prefix
+	 * @param keyColumn  the primary key column
+	 * @param keyOf      extracts the primary key from a loaded value
+	 * @param mapper     maps a row to a value
+	 * @param maxSize    how many entries to keep at most
+	 * @param expiration how long an entry is kept after it was last accessed
+	 * @param unit       the unit of the expiration
+	 * @return the new cache
+	 */
+	public <K, V> EntityCache<K, V> createCache(String table, String keyColumn, Function<V, K> keyOf, DatabaseConnector.RowMapper<V> mapper,
+												int maxSize, long expiration, TimeUnit unit) {
+		return new EntityCache<>(this.databaseConnector, this.getTablePrefix() + table, keyColumn, keyOf, mapper, maxSize, expiration, unit);
+	}
+
+	private static <T> CompletableFuture<T> completeOn(CompletableFuture<T> future, Executor executor) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+
+		future.whenComplete((value, error) -> {
+			try {
+				executor.execute(() -> {
+					if (error != null) {
+						result.completeExceptionally(error);
+					} else {
+						result.complete(value);
+					}
+				});
+			} catch (Throwable th) {
+
+				// The executor can no longer run tasks, such as the scheduler of a disabled plugin
+				if (error != null) {
+					th.addSuppressed(error);
+				}
+
+				result.completeExceptionally(th);
+			}
+		});
+
+		return result;
+	}
+
 	public void runAsync(Runnable runnable) {
-		runAsync(runnable, null);
+		runAsync(null, runnable, null);
 	}
 
-	// FIXME: The problem with a single threaded async queue is that the database implementations and this queue
-	//        are **not** thread-safe in any way. The connection is not pooled or anything...
-	//        So the actual problem is that plugins just queue way too much tasks on bulk which it just shouldn't need to do...
+	/**
+	 * Queue a task to be run on the async pool after all tasks previously
+	 * queued without a key have finished.
+	 *
+	 * @param task     task to run
+	 * @param callback called with the thrown error, or null on success
+	 */
 	public void runAsync(Runnable task, Consumer<Throwable> callback) {
-		this.asyncPool.execute(() -> {
-			try {
-				task.run();
+		runAsync(null, task, callback);
+	}
 
-				if (callback != null) {
-					callback.accept(null);
+	/**
+	 * Queue a task to be run on the async pool after all tasks previously
+	 * queued for the same key have finished.
+	 *
+	 * @param key  the ordering key, such as a player's UUID
+	 * @param task task to run
+	 */
+	public void runAsync(Object key, Runnable task) {
+		runAsync(key, task, null);
+	}
+
+	/**
+	 * Queue a task to be run on the async pool after all tasks previously
+	 * queued for the same key have finished.
+	 *
+	 * @param key      the ordering key, or null to run after the other tasks queued without a key
+	 * @param task     task to run
+	 * @param callback called with the thrown error, or null on success
+	 */
+	public void runAsync(Object key, Runnable task, Consumer<Throwable> callback) {
+		this.asyncPool.execute(key != null ? key : this.unkeyedTasks, new DatabaseExecutor.RejectableTask() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+
+					if (callback != null) {
+						callback.accept(null);
+					}
+				} catch (Throwable th) {
+					this.fail(th);
 				}
-			} catch (Throwable th) {
+			}
+
+			@Override
+			public void reject(RejectedExecutionException ex) {
+				this.fail(ex);
+			}
+
+			private void fail(Throwable th) {
 				if (callback != null) {
 					callback.accept(th);
 					return;
@@ -116,12 +328,64 @@ public class DataManagerAbstract {
 		});
 	}
 
+	/**
+	 * Start buffering writes made through {@link #getWriteBehind()} and flushing them in batches
+	 *
+	 * @param flushIntervalMillis how often pending writes are flushed
+	 * @param maxPendingRows      how many rows a table may hold before it is flushed early
+	 * @return the write-behind buffer
+	 */
+	public WriteBehindBuffer enableWriteBehind(long flushIntervalMillis, int maxPendingRows) {
+		if (this.writeBehind == null) {
+			this.writeBehind = new WriteBehindBuffer(this.databaseConnector, this.asyncPool, this.plugin.getLogger(), flushIntervalMillis, maxPendingRows);
+		}
+
+		return this.writeBehind;
+	}
+
+	/**
+	 * @return the write-behind buffer, or null if it has not been enabled
+	 */
+	public WriteBehindBuffer getWriteBehind() {
+		return this.writeBehind;
+	}
+
+	/**
+	 * Write all buffered writes on the calling thread and wait for them to finish.
+	 * Does nothing when write-behind is not enabled.
+	 */
+	public void flush() {
+		if (this.writeBehind != null) {
+			this.writeBehind.flush();
+		}
+	}
+
+	/**
+	 * Stops accepting new tasks. Buffered writes are queued as the last task,
+	 * so {@link #waitForShutdown(long, TimeUnit)} also waits for them to be written.
+	 */
 	public void shutdownTaskQueue() {
+		if (this.writeBehind != null) {
+			this.writeBehind.close();
+		}
+
 		this.asyncPool.shutdown();
 	}
 
+	/**
+	 * Stops all running tasks and drops queued ones, then writes buffered writes on the calling thread
+	 *
+	 * @return the tasks that never ran
+	 */
 	public List<Runnable> forceShutdownTaskQueue() {
-		return this.asyncPool.shutdownNow();
+		List<Runnable> pending = this.asyncPool.shutdownNow();
+
+		// Stops the flush timer, and flushes here as the executor is shut down
+		if (this.writeBehind != null) {
+			this.writeBehind.close();
+		}
+
+		return pending;
 	}
 
 	public boolean isTaskQueueTerminated() {
@@ -129,11 +393,7 @@ public class DataManagerAbstract {
 	}
 
 	public long getTaskQueueSize() {
-		if (this.asyncPool instanceof ThreadPoolExecutor) {
-			return ((ThreadPoolExecutor) this.asyncPool).getTaskCount();
-		}
-
-		return -1;
+		return this.asyncPool.getTaskCount();
 	}
 
 	/**
@@ -148,6 +408,7 @@ public class DataManagerAbstract {
 	 *
 	 * @param runnable task to put into queue.
 	 * @param queueKey the queue key to add the runnable to.
+	 * @deprecated use {@link #runAsync(Object, Runnable)} instead
 	 */
 	@Deprecated
 	public void queueAsync(Runnable runnable, String queueKey) {
@@ -155,34 +416,6 @@ public class DataManagerAbstract {
 			return;
 		}
 
-		List<Runnable> queue = queues.computeIfAbsent(queueKey, t -> new LinkedList<>());
-		queue.add(runnable);
-
-		if (queue.size() == 1) {
-			runQueue(queueKey);
-		}
-	}
-
-	@Deprecated
-	private void runQueue(String queueKey) {
-		doQueue(queueKey, (s) -> {
-			if (!queues.get(queueKey).isEmpty()) {
-				runQueue(queueKey);
-			}
-		});
-	}
-
-	@Deprecated
-	private void doQueue(String queueKey, Consumer<Boolean> callback) {
-		Runnable runnable = queues.get(queueKey).getFirst();
-
-		async(() -> {
-			runnable.run();
-
-			sync(() -> {
-				queues.get(queueKey).remove(runnable);
-				callback.accept(true);
-			});
-		});
+		runAsync(queueKey, runnable);
 	}
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package ca.tweetzy.tweety.database;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
 public abstract class DataMigration {
 	private final int revision;
@@ -10,8 +12,23 @@ public abstract class DataMigration {
 		this.revision = revision;
 	}
 
+	/**
+	 * Apply this migration. It runs in its own transaction together with
+	 * raising the stored migration version.
+	 *
+	 * @param connection  the connection to use
+	 * @param tablePrefix the prefix of all table names
+	 * @throws SQLException if the migration failed, it is rolled back and retried on the next start
+	 */
 	public abstract void migrate(Connection connection, String tablePrefix) throws SQLException;
 
+	/**
+	 * @return data changes too large to run at startup, applied in chunks once this migration has been applied
+	 */
+	public List<DataBackfill> getBackfills() {
+		return Collections.emptyList();
+	}
+
 	/**
 	 * @return the revision number of this migration
 	 */
@@ -1,10 +1,19 @@
 package ca.tweetzy.tweety.database;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class DataMigrationManager {
@@ -12,6 +21,11 @@ public class DataMigrationManager {
 	private final DatabaseConnector databaseConnector;
 	private final DataManagerAbstract dataManagerAbstract;
 
+	/**
+	 * How long each applied migration and finished backfill took, in milliseconds
+	 */
+	private final Map<String, Long> stepDurations = Collections.synchronizedMap(new LinkedHashMap<>());
+
 	public DataMigrationManager(DatabaseConnector databaseConnector, DataManagerAbstract dataManagerAbstract, DataMigration... migrations) {
 		this.databaseConnector = databaseConnector;
 		this.dataManagerAbstract = dataManagerAbstract;
@@ -20,77 +34,219 @@ public class DataMigrationManager {
 	}
 
 	/**
-	 * Runs any needed data migrations
+	 * Runs any needed data migrations, each in its own transaction, then starts
+	 * the backfills of applied migrations in the background.
+	 * <p>
+	 * Note that MySQL commits schema changes (CREATE, ALTER, DROP) immediately,
+	 * so only SQLite can roll those back when a migration fails.
+	 *
+	 * @see #runMigrationsAsync() to wait for the backfills
 	 */
 	public void runMigrations() {
-		this.databaseConnector.connect((connection -> {
-			int currentMigration = -1;
-			boolean migrationsExist;
-
-			String query;
-			if (this.databaseConnector instanceof SQLiteConnector) {
-				query = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?";
-			} else {
-				query = "SHOW TABLES LIKE ?";
-			}
-
-			try (PreparedStatement statement = connection.prepareStatement(query)) {
-				statement.setString(1, this.getMigrationsTableName());
-				migrationsExist = statement.executeQuery().next();
-			}
+		this.runMigrationsAsync();
+	}
 
-			if (!migrationsExist) {
-				// No migration table exists, create one
-				String createTable = "CREATE TABLE " + this.getMigrationsTableName() + " (migration_version INT NOT NULL)";
-				try (PreparedStatement statement = connection.prepareStatement(createTable)) {
-					statement.execute();
-				}
+	/**
+	 * Runs any needed data migrations like {@link #runMigrations()}
+	 *
+	 * @return a future completed once every backfill has finished
+	 */
+	public CompletableFuture<Void> runMigrationsAsync() {
+		int[] appliedVersion = {-1};
 
-				// Insert primary row into migration table
-				String insertRow = "INSERT INTO " + this.getMigrationsTableName() + " VALUES (?)";
-				try (PreparedStatement statement = connection.prepareStatement(insertRow)) {
-					statement.setInt(1, -1);
-					statement.execute();
-				}
-			} else {
-				// Grab the current migration version
-				String selectVersion = "SELECT migration_version FROM " + this.getMigrationsTableName();
-				try (PreparedStatement statement = connection.prepareStatement(selectVersion)) {
-					ResultSet result = statement.executeQuery();
-					result.next();
-					currentMigration = result.getInt("migration_version");
-				}
-			}
+		this.databaseConnector.connect((connection -> {
+			int currentMigration = this.getCurrentMigration(connection);
 
 			// Grab required migrations
-			int finalCurrentMigration = currentMigration;
 			List<DataMigration> requiredMigrations = this.migrations.stream()
-					.filter(x -> x.getRevision() > finalCurrentMigration)
+					.filter(x -> x.getRevision() > currentMigration)
 					.sorted(Comparator.comparingInt(DataMigration::getRevision))
 					.collect(Collectors.toList());
 
-			// Nothing to migrate, abort
-			if (requiredMigrations.isEmpty()) {
-				return;
-			}
+			appliedVersion[0] = currentMigration;
 
-			// Migrate the data
+			// Migrate the data, bumping the version together with each migration
 			for (DataMigration dataMigration : requiredMigrations) {
-				dataMigration.migrate(connection, this.dataManagerAbstract.getTablePrefix());
+				long started = System.nanoTime();
+
+				this.inTransaction(connection, () -> {
+					dataMigration.migrate(connection, this.dataManagerAbstract.getTablePrefix());
+
+					String updateVersion = "UPDATE " + this.getMigrationsTableName() + " SET migration_version = ?";
+					try (PreparedStatement statement = connection.prepareStatement(updateVersion)) {
+						statement.setInt(1, dataMigration.getRevision());
+						statement.execute();
+					}
+				});
+
+				appliedVersion[0] = dataMigration.getRevision();
+				this.reportDuration("migration " + dataMigration.getRevision(), started);
 			}
+		}));
 
-			// Set the new current migration to be the highest migrated to
-			currentMigration = requiredMigrations.stream()
-					.map(DataMigration::getRevision)
-					.max(Integer::compareTo)
-					.orElse(-1);
+		return this.runBackfills(appliedVersion[0]);
+	}
 
-			String updateVersion = "UPDATE " + this.getMigrationsTableName() + " SET migration_version = ?";
-			try (PreparedStatement statement = connection.prepareStatement(updateVersion)) {
-				statement.setInt(1, currentMigration);
+	/**
+	 * @return how long each applied migration and finished backfill took in milliseconds, in the order they finished
+	 */
+	public Map<String, Long> getStepDurations() {
+		synchronized (this.stepDurations) {
+			return new LinkedHashMap<>(this.stepDurations);
+		}
+	}
+
+	private int getCurrentMigration(Connection connection) throws SQLException {
+		if (!this.databaseConnector.getDialect().tableExists(connection, this.getMigrationsTableName())) {
+			// No migration table exists, create one
+			String createTable = "CREATE TABLE " + this.getMigrationsTableName() + " (migration_version INT NOT NULL)";
+			try (PreparedStatement statement = connection.prepareStatement(createTable)) {
 				statement.execute();
 			}
-		}));
+
+			// Insert primary row into migration table
+			String insertRow = "INSERT INTO " + this.getMigrationsTableName() + " VALUES (?)";
+			try (PreparedStatement statement = connection.prepareStatement(insertRow)) {
+				statement.setInt(1, -1);
+				statement.execute();
+			}
+
+			return -1;
+		}
+
+		// Grab the current migration version
+		String selectVersion = "SELECT migration_version FROM " + this.getMigrationsTableName();
+		try (PreparedStatement statement = connection.prepareStatement(selectVersion); ResultSet result = statement.executeQuery()) {
+			result.next();
+			return result.getInt("migration_version");
+		}
+	}
+
+	/**
+	 * Start every unfinished backfill of the migrations up to the given version on the async pool
+	 */
+	private CompletableFuture<Void> runBackfills(int appliedVersion) {
+		List<DataBackfill> backfills = this.migrations.stream()
+				.filter(x -> x.getRevision() <= appliedVersion)
+				.sorted(Comparator.comparingInt(DataMigration::getRevision))
+				.flatMap(x -> x.getBackfills().stream())
+				.collect(Collectors.toList());
+
+		if (backfills.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		Map<String, Long> checkpoints = new HashMap<>();
+
+		this.databaseConnector.connect(connection -> {
+			String createTable = "CREATE TABLE IF NOT EXISTS " + this.getBackfillsTableName() + " (name VARCHAR(64) NOT NULL PRIMARY KEY, checkpoint BIGINT NOT NULL)";
+			try (PreparedStatement statement = connection.prepareStatement(createTable)) {
+				statement.execute();
+			}
+
+			String selectCheckpoints = "SELECT name, checkpoint FROM " + this.getBackfillsTableName();
+			try (PreparedStatement statement = connection.prepareStatement(selectCheckpoints); ResultSet result = statement.executeQuery()) {
+				while (result.next()) {
+					checkpoints.put(result.getString("name"), result.getLong("checkpoint"));
+				}
+			}
+		});
+
+		List<CompletableFuture<Void>> running = new ArrayList<>();
+
+		for (DataBackfill backfill : backfills) {
+			long checkpoint = checkpoints.getOrDefault(backfill.getName(), 0L);
+
+			if (checkpoint != DataBackfill.FINISHED) {
+				CompletableFuture<Void> future = new CompletableFuture<>();
+
+				this.runBackfillChunk(backfill, checkpoint, System.nanoTime(), future);
+				running.add(future);
+			}
+		}
+
+		return CompletableFuture.allOf(running.toArray(new CompletableFuture[0]));
+	}
+
+	/**
+	 * Queue the first chunk of the backfill, after the tasks already queued under its name
+	 */
+	private void runBackfillChunk(DataBackfill backfill, long checkpoint, long started, CompletableFuture<Void> future) {
+		this.dataManagerAbstract.runAsync(backfill.getName(), () -> this.migrateBackfillChunk(backfill, checkpoint, started, future));
+	}
+
+	/**
+	 * Migrate one chunk of the backfill, then queue the next one at the back of the shared queue.
+	 * Queued under a key, it would be run right away by the same worker, holding it until the
+	 * backfill finished, so each chunk is handed back to let other database work run in between.
+	 */
+	private void migrateBackfillChunk(DataBackfill backfill, long checkpoint, long started, CompletableFuture<Void> future) {
+		long[] next = {checkpoint};
+		boolean[] committed = {false};
+
+		try {
+			this.databaseConnector.connect(connection -> {
+				this.inTransaction(connection, () -> {
+					next[0] = backfill.migrateChunk(connection, this.dataManagerAbstract.getTablePrefix(), checkpoint);
+
+					this.saveCheckpoint(connection, backfill.getName(), next[0]);
+				});
+
+				committed[0] = true;
+			});
+		} catch (RuntimeException ex) {
+			ex.printStackTrace();
+		}
+
+		if (!committed[0]) {
+			this.getLogger().severe("Backfill " + backfill.getName() + " failed and will continue from its last checkpoint on the next start");
+			future.completeExceptionally(new SQLException("Backfill " + backfill.getName() + " failed"));
+
+		} else if (next[0] == DataBackfill.FINISHED) {
+			this.reportDuration("backfill " + backfill.getName(), started);
+			future.complete(null);
+
+		} else {
+			this.dataManagerAbstract.asyncPool.requeue(() -> this.migrateBackfillChunk(backfill, next[0], started, future));
+		}
+	}
+
+	private void saveCheckpoint(Connection connection, String name, long checkpoint) throws SQLException {
+		String upsert = this.databaseConnector.getDialect().upsert(this.getBackfillsTableName(), new String[]{"name", "checkpoint"}, "name");
+		try (PreparedStatement statement = connection.prepareStatement(upsert)) {
+			statement.setString(1, name);
+			statement.setLong(2, checkpoint);
+			statement.execute();
+		}
+	}
+
+	/**
+	 * Run the work in a transaction, rolling back and rethrowing on failure
+	 */
+	private void inTransaction(Connection connection, TransactionWork work) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+
+		try {
+			work.run();
+			connection.commit();
+		} catch (SQLException | RuntimeException ex) {
+			connection.rollback();
+			throw ex;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+
+	private void reportDuration(String step, long started) {
+		long millis = (System.nanoTime() - started) / 1_000_000;
+
+		this.stepDurations.put(step, millis);
+		this.getLogger().info("Applied " + step + " in " + millis + " ms");
+	}
+
+	private Logger getLogger() {
+		return this.dataManagerAbstract.plugin.getLogger();
 	}
 
 	/**
@@ -99,4 +255,15 @@ public class DataMigrationManager {
 	private String getMigrationsTableName() {
 		return this.dataManagerAbstract.getTablePrefix() + "migrations";
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return the name of the table storing backfill progress
+	 */
+	private String getBackfillsTableName() {
+		return this.dataManagerAbstract.getTablePrefix() + "migration_backfills";
+	}
+
+	private interface TransactionWork {
+		void run() throws SQLException;
+	}
+}
@@ -1,7 +1,17 @@
 package ca.tweetzy.tweety.database;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface DatabaseConnector {
 	/**
@@ -23,10 +33,271 @@ public interface DatabaseConnector {
 	 */
 	void connect(ConnectionCallback callback);
 
+	/**
+	 * Executes a callback with a Connection that is only used for reading. Connectors
+	 * that keep separate read connections can run these in parallel with writes.
+	 *
+	 * @param callback The callback to execute once the connection is retrieved
+	 */
+	default void connectReadOnly(ConnectionCallback callback) {
+		this.connect(callback);
+	}
+
+	/**
+	 * @return the dialect used to build database specific statements
+	 */
+	default SqlDialect getDialect() {
+		return SqlDialect.MYSQL;
+	}
+
+	/**
+	 * @return how many connections can safely be used at the same time
+	 */
+	default int getMaxConnections() {
+		return 1;
+	}
+
+	/**
+	 * Runs a function with a Connection on the given executor. The connection is released
+	 * before the returned future completes, so dependent stages never hold it.
+	 *
+	 * @param function the function to run once the connection is retrieved
+	 * @param readOnly true to use {@link #connectReadOnly(ConnectionCallback)}
+	 * @param executor the executor to run the function on
+	 * @return a future completed with the result, or exceptionally with the thrown error
+	 */
+	default <T> CompletableFuture<T> connectAsync(ConnectionFunction<T> function, boolean readOnly, Executor executor) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+
+		try {
+			executor.execute(() -> {
+				List<T> result = new ArrayList<>(1);
+				Throwable[] error = {null};
+
+				ConnectionCallback callback = connection -> {
+					try {
+						result.add(function.apply(connection));
+					} catch (Throwable th) {
+						error[0] = th;
+					}
+				};
+
+				if (readOnly) {
+					this.connectReadOnly(callback);
+				} else {
+					this.connect(callback);
+				}
+
+				if (error[0] != null) {
+					future.completeExceptionally(error[0]);
+				} else if (result.isEmpty()) {
+					future.completeExceptionally(new SQLException("Could not retrieve a database connection"));
+				} else {
+					future.complete(result.get(0));
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			future.completeExceptionally(ex);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Runs a query on the given executor and maps every returned row
+	 *
+	 * @param sql      the query to run
+	 * @param binder   binds the query parameters, or null if there are none
+	 * @param mapper   maps the current row of the result set
+	 * @param executor the executor to run the query on
+	 * @return a future completed with the mapped rows once the connection has been released
+	 */
+	default <T> CompletableFuture<List<T>> query(String sql, ParameterBinder binder, RowMapper<T> mapper, Executor executor) {
+		return this.connectAsync(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				if (binder != null) {
+					binder.bind(statement);
+				}
+
+				List<T> rows = new ArrayList<>();
+
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						rows.add(mapper.map(resultSet));
+					}
+				}
+
+				return rows;
+			}
+		}, true, executor);
+	}
+
+	/**
+	 * Runs an insert, update or delete statement on the given executor
+	 *
+	 * @param sql      the statement to run
+	 * @param binder   binds the statement parameters, or null if there are none
+	 * @param executor the executor to run the statement on
+	 * @return a future completed with the amount of affected rows once the connection has been released
+	 */
+	default CompletableFuture<Integer> update(String sql, ParameterBinder binder, Executor executor) {
+		return this.connectAsync(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				if (binder != null) {
+					binder.bind(statement);
+				}
+
+				return statement.executeUpdate();
+			}
+		}, false, executor);
+	}
+
+	/**
+	 * Runs an insert on the given executor
+	 *
+	 * @param sql      the insert statement
+	 * @param binder   binds the statement parameters, or null if there are none
+	 * @param executor the executor to run the statement on
+	 * @return a future completed with the generated key, or -1 if none was generated
+	 */
+	default CompletableFuture<Long> insert(String sql, ParameterBinder binder, Executor executor) {
+		return this.connectAsync(connection -> this.getDialect().insertAndGetId(connection, sql, binder), false, executor);
+	}
+
+	/**
+	 * Retrieves a read connection that stays in use until the returned lease is closed.
+	 * <p>
+	 * Connectors that can hand out connections directly override this, the default
+	 * implementation throws, so {@link #cursor(String, ParameterBinder, RowMapper, int)}
+	 * and {@link #stream(String, ParameterBinder, RowMapper, int)} are not supported.
+	 *
+	 * @return the lease, which must be closed
+	 * @throws SQLException if no connection could be retrieved
+	 */
+	default ConnectionLease leaseReadOnly() throws SQLException {
+		throw new SQLFeatureNotSupportedException(this.getClass().getSimpleName() + " cannot lease connections");
+	}
+
+	/**
+	 * Get the fetch size to use so the driver streams rows instead of loading the whole result
+	 *
+	 * @param rows how many rows should be fetched at once
+	 * @return the fetch size to pass to {@link java.sql.Statement#setFetchSize(int)}
+	 */
+	default int getStreamingFetchSize(int rows) {
+		return this.getDialect().getStreamingFetchSize(rows);
+	}
+
+	/**
+	 * Run a query on its own read connection and read the rows lazily.
+	 * The connection is released once the cursor is closed.
+	 *
+	 * @param sql       the query to run
+	 * @param binder    binds the query parameters, or null if there are none
+	 * @param mapper    maps the current row of the result set
+	 * @param fetchSize how many rows to fetch from the database at once
+	 * @return the cursor, which must be closed
+	 * @throws SQLException if the query failed
+	 */
+	default <T> Cursor<T> cursor(String sql, ParameterBinder binder, RowMapper<T> mapper, int fetchSize) throws SQLException {
+		ConnectionLease lease = this.leaseReadOnly();
+
+		try {
+			return Cursor.open(lease.getConnection(), sql, binder, mapper, this.getStreamingFetchSize(fetchSize), lease);
+		} catch (SQLException ex) {
+			lease.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Run a query on its own read connection and map the rows lazily into a stream.
+	 * The stream must be closed, for example with try-with-resources, to release the connection.
+	 *
+	 * @param sql       the query to run
+	 * @param binder    binds the query parameters, or null if there are none
+	 * @param mapper    maps the current row of the result set
+	 * @param fetchSize how many rows to fetch from the database at once
+	 * @return the stream of mapped rows
+	 * @throws SQLException if the query failed
+	 */
+	default <T> Stream<T> stream(String sql, ParameterBinder binder, RowMapper<T> mapper, int fetchSize) throws SQLException {
+		return this.cursor(sql, binder, mapper, fetchSize).stream();
+	}
+
+	/**
+	 * Run a query on the given executor and hand the rows to the consumer in pages,
+	 * never holding more than one page in memory
+	 *
+	 * @param sql      the query to run
+	 * @param binder   binds the query parameters, or null if there are none
+	 * @param mapper   maps the current row of the result set
+	 * @param pageSize how many rows to put into each page
+	 * @param consumer called on the executor with each page
+	 * @param executor the executor to read and process the pages on
+	 * @return a future completed with the total amount of rows once every page has been processed
+	 */
+	default <T> CompletableFuture<Long> forEachPage(String sql, ParameterBinder binder, RowMapper<T> mapper, int pageSize,
+													 Consumer<List<T>> consumer, Executor executor) {
+		CompletableFuture<Long> future = new CompletableFuture<>();
+
+		try {
+			executor.execute(() -> {
+				long rows = 0;
+
+				try (Cursor<T> cursor = this.cursor(sql, binder, mapper, pageSize)) {
+					for (List<T> page = cursor.nextPage(pageSize); !page.isEmpty(); page = cursor.nextPage(pageSize)) {
+						consumer.accept(page);
+						rows += page.size();
+					}
+
+					future.complete(rows);
+				} catch (Throwable th) {
+					future.completeExceptionally(th);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			future.completeExceptionally(ex);
+		}
+
+		return future;
+	}
+
 	/**
 	 * Wraps a connection in a callback which will automagically handle catching sql errors
 	 */
 	interface ConnectionCallback {
 		void accept(Connection connection) throws SQLException;
 	}
+
+	/**
+	 * Computes a result from a connection, see {@link #connectAsync(ConnectionFunction, boolean, Executor)}
+	 */
+	interface ConnectionFunction<T> {
+		T apply(Connection connection) throws SQLException;
+	}
+
+	/**
+	 * A connection that is in use until it is closed, see {@link #leaseReadOnly()}
+	 */
+	interface ConnectionLease extends AutoCloseable {
+		Connection getConnection();
+
+		@Override
+		void close();
+	}
+
+	/**
+	 * Binds the parameters of a prepared statement
+	 */
+	interface ParameterBinder {
+		void bind(PreparedStatement statement) throws SQLException;
+	}
+
+	/**
+	 * Maps the current row of a result set
+	 */
+	interface RowMapper<T> {
+		T map(ResultSet resultSet) throws SQLException;
+	}
 }
\ No newline at end of file
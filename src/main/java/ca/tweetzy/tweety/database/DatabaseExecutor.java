@@ -0,0 +1,249 @@
+package ca.tweetzy.tweety.database;
+
+import org.bukkit.Bukkit;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded thread pool used to run database tasks off the main thread.
+ * <p>
+ * Tasks submitted through {@link #execute(Object, Runnable)} are run in submission
+ * order for the same key (e.g. a player's UUID), while tasks for different keys
+ * are spread over all workers.
+ */
+public class DatabaseExecutor extends ThreadPoolExecutor {
+
+	/**
+	 * Pending tasks for keys that currently have a task queued or running
+	 */
+	private final Map<Object, Queue<Runnable>> keyedTasks = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new executor
+	 *
+	 * @param name          the name used for the worker threads
+	 * @param workers       the amount of worker threads
+	 * @param queueCapacity how many tasks may wait before the policy kicks in
+	 * @param policy        what to do with tasks submitted when the queue is full
+	 */
+	public DatabaseExecutor(String name, int workers, int queueCapacity, BackPressurePolicy policy) {
+		super(workers, workers, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), new WorkerThreadFactory(name), policy.handler);
+	}
+
+	/**
+	 * Queue a task to be run after every other task queued under the same key
+	 * has finished. Tasks for different keys may run in parallel.
+	 *
+	 * @param key  the ordering key, or null to run without ordering
+	 * @param task task to run
+	 */
+	public void execute(Object key, Runnable task) {
+		if (key == null) {
+			this.execute(task);
+			return;
+		}
+
+		boolean[] schedule = {false};
+
+		this.keyedTasks.compute(key, (k, queue) -> {
+			if (queue == null) {
+				queue = new ArrayDeque<>();
+				schedule[0] = true;
+			}
+
+			queue.add(task);
+			return queue;
+		});
+
+		if (schedule[0]) {
+			try {
+				this.execute(() -> this.drain(key));
+			} catch (RejectedExecutionException ex) {
+				this.rejectQueued(key, task, ex);
+				throw ex;
+			}
+		}
+	}
+
+	/**
+	 * Release the key after its drain task was rejected. The given task is rejected by throwing,
+	 * while other tasks queued under the key in the meantime are told through
+	 * {@link RejectableTask#reject(RejectedExecutionException)}, or run on this thread
+	 * if they cannot be told, so none of them is silently dropped.
+	 */
+	private void rejectQueued(Object key, Runnable rejected, RejectedExecutionException ex) {
+		Queue<Runnable> queue = this.keyedTasks.remove(key);
+
+		if (queue == null) {
+			return;
+		}
+
+		boolean skipped = false;
+
+		for (Runnable queued : queue) {
+			if (!skipped && queued == rejected) {
+				skipped = true;
+				continue;
+			}
+
+			if (queued instanceof RejectableTask) {
+				((RejectableTask) queued).reject(ex);
+				continue;
+			}
+
+			try {
+				queued.run();
+			} catch (Throwable th) {
+				th.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Queue a task from one of the workers at the back of the shared queue, behind every task
+	 * already waiting, so a long job split into steps lets other work run in between.
+	 * The task runs on the calling thread instead if the queue is full, as a worker
+	 * waiting for room in its own queue could wait forever.
+	 *
+	 * @param task task to run
+	 */
+	public void requeue(Runnable task) {
+		if (!this.getQueue().offer(task)) {
+			task.run();
+		}
+	}
+
+	/**
+	 * @return the amount of keys that currently have tasks pending or running
+	 */
+	public int getActiveKeyCount() {
+		return this.keyedTasks.size();
+	}
+
+	private void drain(Object key) {
+		Runnable task = this.keyedTasks.get(key).peek();
+
+		while (task != null) {
+			try {
+				task.run();
+			} catch (Throwable th) {
+				th.printStackTrace();
+			}
+
+			Runnable[] next = {null};
+
+			// Remove the finished task and either pick the next one or release the key
+			this.keyedTasks.computeIfPresent(key, (k, queue) -> {
+				queue.poll();
+				next[0] = queue.peek();
+
+				return next[0] == null ? null : queue;
+			});
+
+			task = next[0];
+		}
+	}
+
+	/**
+	 * A task that can be told it will never run, so it can fail its future or callback
+	 */
+	public interface RejectableTask extends Runnable {
+
+		/**
+		 * Called instead of {@link #run()} when the task was queued but the executor rejected it
+		 *
+		 * @param ex why the task was rejected
+		 */
+		void reject(RejectedExecutionException ex);
+	}
+
+	/**
+	 * What to do when a task is submitted while the queue is full
+	 */
+	public enum BackPressurePolicy {
+
+		/**
+		 * Run the task on the submitting thread, slowing down the producer
+		 */
+		CALLER_RUNS(new CallerRunsPolicy()),
+
+		/**
+		 * Block the submitting thread until there is room in the queue
+		 */
+		BLOCK((task, executor) -> {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Database executor has been shut down");
+			}
+
+			try {
+				executor.getQueue().put(task);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for room in the database queue", ex);
+			}
+		}),
+
+		/**
+		 * Throw a {@link RejectedExecutionException}
+		 */
+		ABORT(new AbortPolicy()),
+
+		/**
+		 * Block the submitting thread until there is room in the queue like {@link #BLOCK}, but throw a
+		 * {@link RejectedExecutionException} on the main server thread, which must never wait for the database,
+		 * and run the task on the submitting thread when it is a database worker, which would wait for itself
+		 */
+		BLOCK_OFF_MAIN_THREAD((task, executor) -> {
+			if (Bukkit.isPrimaryThread()) {
+				throw new RejectedExecutionException("Database queue is full, the main thread will not wait for it");
+			}
+
+			if (Thread.currentThread() instanceof WorkerThread) {
+				if (executor.isShutdown()) {
+					throw new RejectedExecutionException("Database executor has been shut down");
+				}
+
+				task.run();
+				return;
+			}
+
+			BLOCK.handler.rejectedExecution(task, executor);
+		});
+
+		private final RejectedExecutionHandler handler;
+
+		BackPressurePolicy(RejectedExecutionHandler handler) {
+			this.handler = handler;
+		}
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		private final String name;
+
+		private WorkerThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new WorkerThread(runnable, this.name + "-db-" + this.threadNumber.getAndIncrement());
+		}
+	}
+
+	private static final class WorkerThread extends Thread {
+		private WorkerThread(Runnable runnable, String name) {
+			super(runnable, name);
+		}
+	}
+}
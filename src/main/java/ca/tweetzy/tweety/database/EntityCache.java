@@ -0,0 +1,300 @@
+package ca.tweetzy.tweety.database;
+
+import ca.tweetzy.tweety.collection.expiringmap.ExpirationPolicy;
+import ca.tweetzy.tweety.collection.expiringmap.ExpiringMap;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A read-through cache for the rows of one table, keyed by primary key.
+ * <p>
+ * Missing entries are loaded with a single {@code WHERE key IN (...)} query per batch.
+ * Entries expire after the configured time since they were last accessed and the least
+ * recently used ones are dropped once the maximum size is reached.
+ * <p>
+ * Writes must go through {@link #put(Object, Object)}, {@link #invalidate(Object)} or
+ * a {@link WriteBehindBuffer.Table} linked to this cache so that it never serves stale rows.
+ */
+public class EntityCache<K, V> {
+
+	/**
+	 * How many keys are loaded in one query at most
+	 */
+	private static final int MAX_BATCH_SIZE = 500;
+
+	/**
+	 * Stored for keys that have no row, so repeated lookups do not query again
+	 */
+	private static final Object ABSENT = new Object();
+
+	private final DatabaseConnector databaseConnector;
+	private final String selectSql;
+	private final Function<V, K> keyOf;
+	private final DatabaseConnector.RowMapper<V> mapper;
+
+	private final ExpiringMap<K, Object> entries;
+
+	/**
+	 * Bumped on every invalidation, loads started before an invalidation are not cached
+	 */
+	private final AtomicLong generation = new AtomicLong();
+	private final Object writeLock = new Object();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param databaseConnector the connector to load rows with
+	 * @param table             the full table name
+	 * @param keyColumn         the primary key column
+	 * @param keyOf             extracts the primary key from a loaded value
+	 * @param mapper            maps a row to a value
+	 * @param maxSize           how many entries to keep at most
+	 * @param expiration        how long an entry is kept after it was last accessed
+	 * @param unit              the unit of the expiration
+	 */
+	public EntityCache(DatabaseConnector databaseConnector, String table, String keyColumn, Function<V, K> keyOf,
+					   DatabaseConnector.RowMapper<V> mapper, int maxSize, long expiration, TimeUnit unit) {
+		this.databaseConnector = databaseConnector;
+		this.selectSql = "SELECT * FROM " + table + " WHERE " + keyColumn + " IN ";
+		this.keyOf = keyOf;
+		this.mapper = mapper;
+
+		this.entries = ExpiringMap.builder()
+				.maxSize(maxSize)
+				.expiration(expiration, unit)
+				.expirationPolicy(ExpirationPolicy.ACCESSED)
+				.expirationListener((key, value) -> this.evictions.incrementAndGet())
+				.build();
+	}
+
+	/**
+	 * Get the value for the key, loading it on the calling thread when it is not cached
+	 *
+	 * @param key the primary key
+	 * @return the value, or null if there is no such row
+	 */
+	public V get(K key) {
+		return this.getAll(Collections.singleton(key)).get(key);
+	}
+
+	/**
+	 * Get the values for the keys, loading all missing ones on the calling thread in batched queries
+	 *
+	 * @param keys the primary keys
+	 * @return the found values, keys without a row are left out
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<K, V> getAll(Collection<K> keys) {
+		Map<K, V> found = new LinkedHashMap<>();
+		Set<K> missing = new LinkedHashSet<>();
+
+		for (K key : keys) {
+			Object value = this.entries.get(key);
+
+			if (value == null) {
+				missing.add(key);
+			} else if (value != ABSENT) {
+				found.put(key, (V) value);
+			}
+		}
+
+		this.hits.addAndGet(keys.size() - missing.size());
+
+		if (!missing.isEmpty()) {
+			this.misses.addAndGet(missing.size());
+			found.putAll(this.load(missing));
+		}
+
+		return found;
+	}
+
+	/**
+	 * Get the values for the keys, loading missing ones on the given executor
+	 *
+	 * @param keys     the primary keys
+	 * @param executor the executor to load on
+	 * @return a future completed with the found values
+	 */
+	public CompletableFuture<Map<K, V>> getAllAsync(Collection<K> keys, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> this.getAll(keys), executor);
+	}
+
+	/**
+	 * Replace the cached value after it was written
+	 *
+	 * @param key   the primary key
+	 * @param value the new value, or null if the row was deleted
+	 */
+	public void put(K key, V value) {
+		synchronized (this.writeLock) {
+			this.generation.incrementAndGet();
+			this.entries.put(key, value == null ? ABSENT : value);
+		}
+	}
+
+	/**
+	 * Drop the cached value so the next lookup loads it again
+	 *
+	 * @param key the primary key
+	 */
+	public void invalidate(K key) {
+		synchronized (this.writeLock) {
+			this.generation.incrementAndGet();
+			this.entries.remove(key);
+		}
+	}
+
+	/**
+	 * Drop every cached value
+	 */
+	public void invalidateAll() {
+		synchronized (this.writeLock) {
+			this.generation.incrementAndGet();
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * @return how many entries are cached
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @return how many lookups were served from the cache
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return how many lookups had to go to the database
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return how many load queries were run
+	 */
+	public long getLoads() {
+		return this.loads.get();
+	}
+
+	/**
+	 * @return how many entries expired or were dropped because the cache was full
+	 */
+	public long getEvictions() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * Bind a key to a parameter of the load query. UUIDs are bound as strings,
+	 * other keys with {@link PreparedStatement#setObject(int, Object)}.
+	 *
+	 * @param statement the load query
+	 * @param index     the parameter index
+	 * @param key       the key to bind
+	 * @throws SQLException if the key could not be bound
+	 */
+	protected void bindKey(PreparedStatement statement, int index, K key) throws SQLException {
+		if (key instanceof UUID) {
+			statement.setString(index, key.toString());
+		} else {
+			statement.setObject(index, key);
+		}
+	}
+
+	private Map<K, V> load(Set<K> keys) {
+		Map<K, V> loaded = new LinkedHashMap<>();
+		List<K> batch = new ArrayList<>(Math.min(keys.size(), MAX_BATCH_SIZE));
+
+		for (K key : keys) {
+			batch.add(key);
+
+			if (batch.size() == MAX_BATCH_SIZE) {
+				this.loadBatch(batch, loaded);
+				batch.clear();
+			}
+		}
+
+		if (!batch.isEmpty()) {
+			this.loadBatch(batch, loaded);
+		}
+
+		return loaded;
+	}
+
+	private void loadBatch(List<K> keys, Map<K, V> loaded) {
+		long generation = this.generation.get();
+		Map<K, V> rows = new LinkedHashMap<>();
+		boolean[] success = {false};
+
+		StringBuilder sql = new StringBuilder(this.selectSql).append('(');
+
+		for (int i = 0; i < keys.size(); i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+
+		sql.append(')');
+
+		this.loads.incrementAndGet();
+		this.databaseConnector.connectReadOnly(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+				for (int i = 0; i < keys.size(); i++) {
+					this.bindKey(statement, i + 1, keys.get(i));
+				}
+
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						V value = this.mapper.map(resultSet);
+						rows.put(this.keyOf.apply(value), value);
+					}
+				}
+			}
+
+			success[0] = true;
+		});
+
+		loaded.putAll(rows);
+
+		if (!success[0]) {
+			return;
+		}
+
+		synchronized (this.writeLock) {
+			// Loads racing with a write are returned but never cached
+			if (generation != this.generation.get()) {
+				return;
+			}
+
+			for (K key : keys) {
+				V value = rows.get(key);
+
+				this.entries.putIfAbsent(key, value == null ? ABSENT : value);
+			}
+		}
+	}
+}
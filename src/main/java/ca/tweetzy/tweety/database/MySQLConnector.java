@@ -2,17 +2,31 @@ package ca.tweetzy.tweety.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
 import org.bukkit.plugin.Plugin;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class MySQLConnector implements DatabaseConnector {
 	private final Plugin plugin;
+	private final AcquireTimeTracker acquireTimes = new AcquireTimeTracker();
 	private HikariDataSource hikari;
 	private boolean initializedSuccessfully;
+	private Exception initializationError;
 
 	public MySQLConnector(Plugin plugin, String hostname, int port, String database, String username, String password, boolean useSSL) {
+		this(plugin, hostname, port, database, username, password, useSSL, new PoolSettings());
+	}
+
+	public MySQLConnector(Plugin plugin, String hostname, int port, String database, String username, String password, boolean useSSL, PoolSettings settings) {
 		this.plugin = plugin;
 
 		plugin.getLogger().info("connecting to " + hostname + " : " + port);
@@ -21,13 +35,30 @@ public class MySQLConnector implements DatabaseConnector {
 		config.setJdbcUrl("jdbc:mysql://" + hostname + ":" + port + "/" + database + "?useSSL=" + useSSL);
 		config.setUsername(username);
 		config.setPassword(password);
-		config.setMaximumPoolSize(3);
+		config.setPoolName(plugin.getName() + "-MySQL");
+		config.setMaximumPoolSize(settings.getMaximumPoolSize());
+		config.setConnectionTimeout(settings.getConnectionTimeout());
+		config.setLeakDetectionThreshold(settings.getLeakDetectionThreshold());
+		config.setKeepaliveTime(settings.getKeepaliveTime());
+		config.setMetricsTrackerFactory(this.acquireTimes);
+
+		if (settings.getMinimumIdle() >= 0) {
+			config.setMinimumIdle(settings.getMinimumIdle());
+		}
+
+		for (Map.Entry<String, String> property : settings.getDriverProperties().entrySet()) {
+			config.addDataSourceProperty(property.getKey(), property.getValue());
+		}
 
 		try {
 			this.hikari = new HikariDataSource(config);
 			this.initializedSuccessfully = true;
 		} catch (Exception ex) {
 			this.initializedSuccessfully = false;
+			this.initializationError = ex;
+
+			plugin.getLogger().severe("Failed to connect to MySQL at " + hostname + ":" + port + ": " + ex.getMessage());
+			ex.printStackTrace();
 		}
 	}
 
@@ -36,18 +67,134 @@ public class MySQLConnector implements DatabaseConnector {
 		return this.initializedSuccessfully;
 	}
 
+	/**
+	 * @return why the connection pool could not be created, or null if it was
+	 */
+	public Exception getInitializationError() {
+		return this.initializationError;
+	}
+
 	@Override
 	public void closeConnection() {
-		this.hikari.close();
+		if (this.hikari != null) {
+			this.hikari.close();
+		}
+	}
+
+	@Override
+	public int getMaxConnections() {
+		return this.hikari != null ? this.hikari.getMaximumPoolSize() : 1;
+	}
+
+	/**
+	 * Get the current state of the connection pool. Threads waiting for a connection
+	 * or high acquire times mean the pool is too small for the work queued on it.
+	 *
+	 * @return the pool metrics, all zero if the pool could not be created
+	 */
+	public PoolMetrics getPoolMetrics() {
+		HikariPoolMXBean pool = this.hikari != null ? this.hikari.getHikariPoolMXBean() : null;
+
+		if (pool == null) {
+			return new PoolMetrics(0, 0, 0, 0, this.acquireTimes.timeouts.get(), 0, 0, 0);
+		}
+
+		double[] percentiles = this.acquireTimes.percentiles(0.50, 0.95, 0.99);
+
+		return new PoolMetrics(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(), pool.getThreadsAwaitingConnection(),
+				this.acquireTimes.timeouts.get(), percentiles[0], percentiles[1], percentiles[2]);
+	}
+
+	@Override
+	public ConnectionLease leaseReadOnly() throws SQLException {
+		Connection connection = this.getConnection();
+
+		return new ConnectionLease() {
+			@Override
+			public Connection getConnection() {
+				return connection;
+			}
+
+			@Override
+			public void close() {
+				try {
+					connection.close();
+				} catch (SQLException ex) {
+					MySQLConnector.this.plugin.getLogger().severe("An error occurred releasing a MySQL connection: " + ex.getMessage());
+				}
+			}
+		};
+	}
+
+	@Override
+	public SqlDialect getDialect() {
+		return SqlDialect.MYSQL;
 	}
 
 	@Override
 	public void connect(ConnectionCallback callback) {
-		try (Connection connection = this.hikari.getConnection()) {
+		try (Connection connection = this.getConnection()) {
 			callback.accept(connection);
 		} catch (SQLException ex) {
 			this.plugin.getLogger().severe("An error occurred executing a MySQL query: " + ex.getMessage());
 			ex.printStackTrace();
 		}
 	}
-}
\ No newline at end of file
+
+	private Connection getConnection() throws SQLException {
+		if (this.hikari == null) {
+			throw new SQLException("The MySQL connection pool failed to initialize", this.initializationError);
+		}
+
+		return this.hikari.getConnection();
+	}
+
+	/**
+	 * Keeps the most recent connection acquire times reported by the pool
+	 */
+	private static class AcquireTimeTracker implements MetricsTrackerFactory, IMetricsTracker {
+		private static final int SAMPLES = 1024;
+
+		private final AtomicLongArray acquireNanos = new AtomicLongArray(SAMPLES);
+		private final AtomicLong recorded = new AtomicLong();
+		private final AtomicLong timeouts = new AtomicLong();
+
+		@Override
+		public IMetricsTracker create(String poolName, PoolStats poolStats) {
+			return this;
+		}
+
+		@Override
+		public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+			this.acquireNanos.set((int) (this.recorded.getAndIncrement() % SAMPLES), elapsedAcquiredNanos);
+		}
+
+		@Override
+		public void recordConnectionTimeout() {
+			this.timeouts.incrementAndGet();
+		}
+
+		private double[] percentiles(double... percentiles) {
+			int count = (int) Math.min(this.recorded.get(), SAMPLES);
+			double[] result = new double[percentiles.length];
+
+			if (count == 0) {
+				return result;
+			}
+
+			long[] sorted = new long[count];
+			for (int i = 0; i < count; i++) {
+				sorted[i] = this.acquireNanos.get(i);
+			}
+
+			Arrays.sort(sorted);
+
+			for (int i = 0; i < percentiles.length; i++) {
+				int index = (int) Math.min(count - 1, Math.ceil(percentiles[i] * count) - 1);
+				result[i] = sorted[Math.max(0, index)] / 1_000_000D;
+			}
+
+			return result;
+		}
+	}
+}
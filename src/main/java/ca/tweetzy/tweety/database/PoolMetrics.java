@@ -0,0 +1,90 @@
+package ca.tweetzy.tweety.database;
+
+/**
+ * A snapshot of the state of a connection pool, see {@link MySQLConnector#getPoolMetrics()}
+ */
+public final class PoolMetrics {
+	private final int activeConnections;
+	private final int idleConnections;
+	private final int totalConnections;
+	private final int threadsAwaitingConnection;
+	private final long connectionTimeouts;
+	private final double acquireMillis50;
+	private final double acquireMillis95;
+	private final double acquireMillis99;
+
+	PoolMetrics(int activeConnections, int idleConnections, int totalConnections, int threadsAwaitingConnection, long connectionTimeouts,
+				double acquireMillis50, double acquireMillis95, double acquireMillis99) {
+		this.activeConnections = activeConnections;
+		this.idleConnections = idleConnections;
+		this.totalConnections = totalConnections;
+		this.threadsAwaitingConnection = threadsAwaitingConnection;
+		this.connectionTimeouts = connectionTimeouts;
+		this.acquireMillis50 = acquireMillis50;
+		this.acquireMillis95 = acquireMillis95;
+		this.acquireMillis99 = acquireMillis99;
+	}
+
+	/**
+	 * @return how many connections are currently in use
+	 */
+	public int getActiveConnections() {
+		return this.activeConnections;
+	}
+
+	/**
+	 * @return how many open connections are waiting to be used
+	 */
+	public int getIdleConnections() {
+		return this.idleConnections;
+	}
+
+	/**
+	 * @return how many connections are open
+	 */
+	public int getTotalConnections() {
+		return this.totalConnections;
+	}
+
+	/**
+	 * @return how many threads are currently waiting for a free connection
+	 */
+	public int getThreadsAwaitingConnection() {
+		return this.threadsAwaitingConnection;
+	}
+
+	/**
+	 * @return how many times a thread gave up waiting for a connection
+	 */
+	public long getConnectionTimeouts() {
+		return this.connectionTimeouts;
+	}
+
+	/**
+	 * @return the median time it took to get a connection from the pool, in milliseconds
+	 */
+	public double getAcquireMillis50() {
+		return this.acquireMillis50;
+	}
+
+	/**
+	 * @return the 95th percentile of the time it took to get a connection from the pool, in milliseconds
+	 */
+	public double getAcquireMillis95() {
+		return this.acquireMillis95;
+	}
+
+	/**
+	 * @return the 99th percentile of the time it took to get a connection from the pool, in milliseconds
+	 */
+	public double getAcquireMillis99() {
+		return this.acquireMillis99;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PoolMetrics{active=%d, idle=%d, total=%d, waiting=%d, timeouts=%d, acquire p50=%.2fms p95=%.2fms p99=%.2fms}",
+				this.activeConnections, this.idleConnections, this.totalConnections, this.threadsAwaitingConnection, this.connectionTimeouts,
+				this.acquireMillis50, this.acquireMillis95, this.acquireMillis99);
+	}
+}
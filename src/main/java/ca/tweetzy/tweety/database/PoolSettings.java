@@ -0,0 +1,115 @@
+package ca.tweetzy.tweety.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool and driver settings for {@link MySQLConnector}
+ */
+public class PoolSettings {
+	private int maximumPoolSize = 3;
+	private int minimumIdle = -1;
+	private long connectionTimeout = TimeUnit.SECONDS.toMillis(30);
+	private long leakDetectionThreshold = 0;
+	private long keepaliveTime = 0;
+
+	private final Map<String, String> driverProperties = new LinkedHashMap<>();
+
+	public PoolSettings() {
+		this.driverProperties.put("cachePrepStmts", "true");
+		this.driverProperties.put("prepStmtCacheSize", "250");
+		this.driverProperties.put("prepStmtCacheSqlLimit", "2048");
+		this.driverProperties.put("useServerPrepStmts", "true");
+		this.driverProperties.put("rewriteBatchedStatements", "true");
+	}
+
+	/**
+	 * @param maximumPoolSize how many connections the pool may open, 3 by default
+	 * @return these settings
+	 */
+	public PoolSettings setMaximumPoolSize(int maximumPoolSize) {
+		this.maximumPoolSize = maximumPoolSize;
+		return this;
+	}
+
+	/**
+	 * @param minimumIdle how many idle connections to keep open, the maximum pool size by default
+	 * @return these settings
+	 */
+	public PoolSettings setMinimumIdle(int minimumIdle) {
+		this.minimumIdle = minimumIdle;
+		return this;
+	}
+
+	/**
+	 * @param connectionTimeout how long to wait for a free connection in milliseconds, 30 seconds by default
+	 * @return these settings
+	 */
+	public PoolSettings setConnectionTimeout(long connectionTimeout) {
+		this.connectionTimeout = connectionTimeout;
+		return this;
+	}
+
+	/**
+	 * @param leakDetectionThreshold how long a connection may be held in milliseconds before a
+	 *                               possible leak is logged, 0 (disabled) by default
+	 * @return these settings
+	 */
+	public PoolSettings setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+		return this;
+	}
+
+	/**
+	 * @param keepaliveTime how often idle connections are checked in milliseconds so broken ones
+	 *                      are replaced before they are handed out, 0 (disabled) by default
+	 * @return these settings
+	 */
+	public PoolSettings setKeepaliveTime(long keepaliveTime) {
+		this.keepaliveTime = keepaliveTime;
+		return this;
+	}
+
+	/**
+	 * Set a JDBC driver property. cachePrepStmts, useServerPrepStmts and
+	 * rewriteBatchedStatements are enabled by default.
+	 *
+	 * @param key   the property name
+	 * @param value the property value, or null to remove it
+	 * @return these settings
+	 */
+	public PoolSettings setDriverProperty(String key, String value) {
+		if (value == null) {
+			this.driverProperties.remove(key);
+		} else {
+			this.driverProperties.put(key, value);
+		}
+
+		return this;
+	}
+
+	public int getMaximumPoolSize() {
+		return this.maximumPoolSize;
+	}
+
+	public int getMinimumIdle() {
+		return this.minimumIdle;
+	}
+
+	public long getConnectionTimeout() {
+		return this.connectionTimeout;
+	}
+
+	public long getLeakDetectionThreshold() {
+		return this.leakDetectionThreshold;
+	}
+
+	public long getKeepaliveTime() {
+		return this.keepaliveTime;
+	}
+
+	public Map<String, String> getDriverProperties() {
+		return this.driverProperties;
+	}
+}
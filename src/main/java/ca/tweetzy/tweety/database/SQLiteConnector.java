@@ -1,20 +1,85 @@
 package ca.tweetzy.tweety.database;
 
 import org.bukkit.plugin.Plugin;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class SQLiteConnector implements DatabaseConnector {
+
+	/**
+	 * How many prepared statements each connection keeps
+	 */
+	private static final int STATEMENT_CACHE_SIZE = 64;
+
+	/**
+	 * How long to wait for a lock held by another connection, in milliseconds
+	 */
+	private static final int BUSY_TIMEOUT = 5000;
+
 	private final Plugin plugin;
 	private final String connectionString;
-	private Connection connection;
+	private StatementCache connection;
+
+	/**
+	 * Held while the shared connection is in use when concurrent mode is disabled, so a lease
+	 * and the tasks of the database workers never use it at the same time
+	 */
+	private final Semaphore connectionPermit = new Semaphore(1, true);
+
+	/**
+	 * The thread holding the shared connection, which may use it again while holding it
+	 */
+	private volatile Thread connectionOwner;
+
+	/**
+	 * How many read-only connections to open, 0 when concurrent mode is disabled
+	 */
+	private final int readConnections;
+
+	/**
+	 * The only connection allowed to write in concurrent mode
+	 */
+	private volatile StatementCache writer;
+	private final ReentrantLock writerLock = new ReentrantLock();
+
+	/**
+	 * Idle read-only connections in concurrent mode
+	 */
+	private final BlockingQueue<StatementCache> readers = new LinkedBlockingQueue<>();
+
+	/**
+	 * Every read-only connection opened since the connections were last closed, a reader
+	 * given back that is no longer in here was closed meanwhile and must not be pooled again
+	 */
+	private final List<StatementCache> openReaders = new ArrayList<>();
 
 	public SQLiteConnector(Plugin plugin) {
+		this(plugin, 0);
+	}
+
+	/**
+	 * Creates a connector that, when readConnections is above 0, runs the database in WAL mode
+	 * with synchronous=NORMAL, one writer connection and a pool of read-only connections.
+	 *
+	 * @param plugin          the owning plugin
+	 * @param readConnections how many read-only connections to keep, or 0 for a single shared connection
+	 */
+	public SQLiteConnector(Plugin plugin, int readConnections) {
 		this.plugin = plugin;
 		this.connectionString = "jdbc:sqlite:" + plugin.getDataFolder() + File.separator + plugin.getDescription().getName().toLowerCase() + ".db";
+		this.readConnections = readConnections;
 
 		try {
 			Class.forName("org.sqlite.JDBC"); // This is required to put here for Spigot 1.10 and below to force class load
@@ -28,11 +93,49 @@ public class SQLiteConnector implements DatabaseConnector {
 		return true; // Always available
 	}
 
+	/**
+	 * @return true if the database runs in WAL mode with a separate writer and reader pool
+	 */
+	public boolean isConcurrent() {
+		return this.readConnections > 0;
+	}
+
+	@Override
+	public SqlDialect getDialect() {
+		return SqlDialect.SQLITE;
+	}
+
+	@Override
+	public int getMaxConnections() {
+		return 1 + this.readConnections;
+	}
+
 	@Override
 	public void closeConnection() {
 		try {
 			if (this.connection != null) {
 				this.connection.close();
+				this.connection = null;
+			}
+
+			this.writerLock.lock();
+
+			try {
+				if (this.writer != null) {
+					this.writer.close();
+					this.writer = null;
+				}
+			} finally {
+				this.writerLock.unlock();
+			}
+
+			synchronized (this.openReaders) {
+				for (StatementCache reader : this.openReaders) {
+					reader.close();
+				}
+
+				this.openReaders.clear();
+				this.readers.clear();
 			}
 		} catch (SQLException ex) {
 			this.plugin.getLogger().severe("An error occurred closing the SQLite database connection: " + ex.getMessage());
@@ -41,19 +144,241 @@ public class SQLiteConnector implements DatabaseConnector {
 
 	@Override
 	public void connect(ConnectionCallback callback) {
-		if (this.connection == null) {
+		if (this.isConcurrent()) {
+			this.connectWriter(callback);
+			return;
+		}
+
+		boolean owner = this.connectionOwner == Thread.currentThread();
+
+		if (!owner) {
+			this.connectionPermit.acquireUninterruptibly();
+			this.connectionOwner = Thread.currentThread();
+		}
+
+		try {
+			if (this.connection == null) {
+				try {
+					this.connection = new StatementCache(DriverManager.getConnection(this.connectionString), STATEMENT_CACHE_SIZE);
+				} catch (SQLException ex) {
+					this.plugin.getLogger().severe("An error occurred retrieving the SQLite database connection: " + ex.getMessage());
+				}
+			}
+
 			try {
-				this.connection = DriverManager.getConnection(this.connectionString);
-			} catch (SQLException ex) {
-				this.plugin.getLogger().severe("An error occurred retrieving the SQLite database connection: " + ex.getMessage());
+				callback.accept(this.connection != null ? this.connection.getConnection() : null);
+			} catch (Exception ex) {
+				this.plugin.getLogger().severe("An error occurred executing an SQLite query: " + ex.getMessage());
+				ex.printStackTrace();
+			}
+		} finally {
+			if (!owner) {
+				this.connectionOwner = null;
+				this.connectionPermit.release();
 			}
 		}
+	}
+
+	@Override
+	public void connectReadOnly(ConnectionCallback callback) {
+		if (!this.isConcurrent()) {
+			this.connect(callback);
+			return;
+		}
+
+		StatementCache reader;
+
+		try {
+			reader = this.acquireReader();
+		} catch (SQLException ex) {
+			this.plugin.getLogger().severe("An error occurred retrieving an SQLite read connection: " + ex.getMessage());
+			return;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
 
 		try {
-			callback.accept(this.connection);
+			callback.accept(reader.getConnection());
 		} catch (Exception ex) {
 			this.plugin.getLogger().severe("An error occurred executing an SQLite query: " + ex.getMessage());
 			ex.printStackTrace();
+		} finally {
+			this.releaseReader(reader);
 		}
 	}
-}
\ No newline at end of file
+
+	@Override
+	public ConnectionLease leaseReadOnly() throws SQLException {
+		if (!this.isConcurrent()) {
+			return this.leaseShared();
+		}
+
+		StatementCache reader;
+
+		try {
+			reader = this.acquireReader();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while retrieving an SQLite read connection", ex);
+		}
+
+		return new ConnectionLease() {
+			@Override
+			public Connection getConnection() {
+				return reader.getConnection();
+			}
+
+			@Override
+			public void close() {
+				SQLiteConnector.this.releaseReader(reader);
+			}
+		};
+	}
+
+	/**
+	 * Lease the shared connection, holding it until the lease is closed like {@link #connect(ConnectionCallback)} does
+	 */
+	private ConnectionLease leaseShared() throws SQLException {
+		Thread thread = Thread.currentThread();
+
+		// Already held by this thread, such as when leasing inside a callback
+		if (this.connectionOwner == thread) {
+			if (this.connection == null) {
+				throw new SQLException("Could not retrieve the SQLite database connection");
+			}
+
+			Connection connection = this.connection.getConnection();
+
+			return new ConnectionLease() {
+				@Override
+				public Connection getConnection() {
+					return connection;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+
+		try {
+			this.connectionPermit.acquire();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for the SQLite database connection", ex);
+		}
+
+		this.connectionOwner = thread;
+
+		try {
+			if (this.connection == null) {
+				this.connection = new StatementCache(DriverManager.getConnection(this.connectionString), STATEMENT_CACHE_SIZE);
+			}
+		} catch (SQLException ex) {
+			this.connectionOwner = null;
+			this.connectionPermit.release();
+			throw ex;
+		}
+
+		Connection connection = this.connection.getConnection();
+		AtomicBoolean closed = new AtomicBoolean();
+
+		return new ConnectionLease() {
+			@Override
+			public Connection getConnection() {
+				return connection;
+			}
+
+			@Override
+			public void close() {
+				if (closed.compareAndSet(false, true)) {
+					SQLiteConnector.this.connectionOwner = null;
+					SQLiteConnector.this.connectionPermit.release();
+				}
+			}
+		};
+	}
+
+	private void connectWriter(ConnectionCallback callback) {
+		this.writerLock.lock();
+
+		try {
+			if (this.writer == null) {
+				this.writer = new StatementCache(this.openConnection(false), STATEMENT_CACHE_SIZE);
+			}
+
+			callback.accept(this.writer.getConnection());
+		} catch (Exception ex) {
+			this.plugin.getLogger().severe("An error occurred executing an SQLite query: " + ex.getMessage());
+			ex.printStackTrace();
+		} finally {
+			this.writerLock.unlock();
+		}
+	}
+
+	private StatementCache acquireReader() throws SQLException, InterruptedException {
+		while (true) {
+			StatementCache reader = this.readers.poll();
+
+			if (reader != null) {
+				return reader;
+			}
+
+			// The writer switches the database to WAL, which cannot happen while readers are open
+			if (this.writer == null) {
+				this.connectWriter(connection -> {
+				});
+			}
+
+			synchronized (this.openReaders) {
+				if (this.openReaders.size() < this.readConnections) {
+					reader = new StatementCache(this.openConnection(true), STATEMENT_CACHE_SIZE);
+					this.openReaders.add(reader);
+
+					return reader;
+				}
+			}
+
+			// Wait for a reader to be given back, looking again now and then as closing the connections makes room for new ones
+			reader = this.readers.poll(1, TimeUnit.SECONDS);
+
+			if (reader != null) {
+				return reader;
+			}
+		}
+	}
+
+	/**
+	 * Give a read-only connection back to the pool, or close it if the connections were closed while it was in use
+	 */
+	private void releaseReader(StatementCache reader) {
+		synchronized (this.openReaders) {
+			if (this.openReaders.contains(reader)) {
+				this.readers.add(reader);
+				return;
+			}
+		}
+
+		try {
+			reader.close();
+		} catch (SQLException ex) {
+			this.plugin.getLogger().severe("An error occurred closing an SQLite read connection: " + ex.getMessage());
+		}
+	}
+
+	private Connection openConnection(boolean readOnly) throws SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+
+		config.setBusyTimeout(BUSY_TIMEOUT);
+		config.setReadOnly(readOnly);
+
+		// The journal mode is stored in the database file, so only the writer sets it
+		if (!readOnly) {
+			config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+			config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+		}
+
+		return DriverManager.getConnection(this.connectionString, config.toProperties());
+	}
+}
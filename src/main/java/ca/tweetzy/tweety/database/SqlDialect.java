@@ -0,0 +1,169 @@
+package ca.tweetzy.tweety.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the statements whose syntax differs between the supported databases
+ */
+public enum SqlDialect {
+
+	SQLITE {
+		@Override
+		public String upsert(String table, List<String> columns, List<String> keyColumns) {
+			String insert = insert(table, columns);
+			List<String> updated = nonKeyColumns(columns, keyColumns);
+
+			if (updated.isEmpty()) {
+				return insert + " ON CONFLICT (" + String.join(", ", keyColumns) + ") DO NOTHING";
+			}
+
+			return insert + " ON CONFLICT (" + String.join(", ", keyColumns) + ") DO UPDATE SET "
+					+ updated.stream().map(column -> column + " = excluded." + column).collect(Collectors.joining(", "));
+		}
+
+		@Override
+		public String tableExistsQuery() {
+			return "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?";
+		}
+
+		@Override
+		public String lastInsertIdQuery() {
+			return "SELECT last_insert_rowid()";
+		}
+	},
+
+	MYSQL {
+		@Override
+		public String upsert(String table, List<String> columns, List<String> keyColumns) {
+			List<String> updated = nonKeyColumns(columns, keyColumns);
+
+			if (updated.isEmpty()) {
+				return "INSERT IGNORE" + insert(table, columns).substring("INSERT".length());
+			}
+
+			return insert(table, columns) + " ON DUPLICATE KEY UPDATE "
+					+ updated.stream().map(column -> column + " = VALUES(" + column + ")").collect(Collectors.joining(", "));
+		}
+
+		@Override
+		public String tableExistsQuery() {
+			return "SHOW TABLES LIKE ?";
+		}
+
+		@Override
+		public String lastInsertIdQuery() {
+			return "SELECT LAST_INSERT_ID()";
+		}
+
+		@Override
+		public int getStreamingFetchSize(int rows) {
+			return Integer.MIN_VALUE; // Makes Connector/J stream rows one by one instead of buffering the whole result
+		}
+	};
+
+	/**
+	 * Build a statement inserting a row, or updating the non-key columns if a row with the same key exists
+	 *
+	 * @param table      the full table name
+	 * @param columns    every column to write, bound in this order
+	 * @param keyColumns the columns of the primary or unique key
+	 * @return the statement
+	 */
+	public abstract String upsert(String table, List<String> columns, List<String> keyColumns);
+
+	/**
+	 * @see #upsert(String, List, List)
+	 */
+	public String upsert(String table, String[] columns, String... keyColumns) {
+		return this.upsert(table, Arrays.asList(columns), Arrays.asList(keyColumns));
+	}
+
+	/**
+	 * @return a query taking the table name as its only parameter and returning a row if the table exists
+	 */
+	public abstract String tableExistsQuery();
+
+	/**
+	 * @return a query returning the id generated by the last insert on the same connection
+	 */
+	public abstract String lastInsertIdQuery();
+
+	/**
+	 * Get the fetch size to use so the driver streams rows instead of loading the whole result
+	 *
+	 * @param rows how many rows should be fetched at once
+	 * @return the fetch size to pass to {@link Statement#setFetchSize(int)}
+	 */
+	public int getStreamingFetchSize(int rows) {
+		return rows;
+	}
+
+	/**
+	 * Append paging to a query
+	 *
+	 * @param sql    the query, which should have a stable ORDER BY
+	 * @param limit  how many rows to return at most
+	 * @param offset how many rows to skip
+	 * @return the paged query
+	 */
+	public String page(String sql, int limit, long offset) {
+		return sql + " LIMIT " + limit + " OFFSET " + offset;
+	}
+
+	/**
+	 * Check if a table exists
+	 *
+	 * @param connection the connection to use
+	 * @param table      the full table name
+	 * @return true if the table exists
+	 * @throws SQLException if the check failed
+	 */
+	public boolean tableExists(Connection connection, String table) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(this.tableExistsQuery())) {
+			statement.setString(1, table);
+
+			try (ResultSet result = statement.executeQuery()) {
+				return result.next();
+			}
+		}
+	}
+
+	/**
+	 * Run an insert and return the key the database generated for the new row
+	 *
+	 * @param connection the connection to use
+	 * @param sql        the insert statement
+	 * @param binder     binds the statement parameters, or null if there are none
+	 * @return the generated key, or -1 if none was generated
+	 * @throws SQLException if the insert failed
+	 */
+	public long insertAndGetId(Connection connection, String sql, DatabaseConnector.ParameterBinder binder) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+			if (binder != null) {
+				binder.bind(statement);
+			}
+
+			statement.executeUpdate();
+
+			try (ResultSet keys = statement.getGeneratedKeys()) {
+				return keys.next() ? keys.getLong(1) : -1;
+			}
+		}
+	}
+
+	private static String insert(String table, List<String> columns) {
+		return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+				+ columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+	}
+
+	private static List<String> nonKeyColumns(List<String> columns, List<String> keyColumns) {
+		return columns.stream().filter(column -> !keyColumns.contains(column)).collect(Collectors.toList());
+	}
+}
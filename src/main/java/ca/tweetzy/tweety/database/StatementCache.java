@@ -0,0 +1,222 @@
+package ca.tweetzy.tweety.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wraps a connection so that {@link Connection#prepareStatement(String)} reuses
+ * statements prepared earlier with the same SQL instead of parsing them again.
+ * <p>
+ * Closing a cached statement only resets it. Closing the wrapped connection does
+ * nothing, use {@link #close()} to close the statements and the connection.
+ * <p>
+ * A cached statement is only handed out again once it has been closed, callers
+ * preparing the same SQL while it is open get a separate statement.
+ */
+public final class StatementCache implements InvocationHandler {
+	private final Connection connection;
+	private final Connection proxy;
+	private final Map<String, CachedStatement> statements;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates a new cache for the given connection
+	 *
+	 * @param connection    the connection to wrap
+	 * @param maxStatements how many statements to keep, the least recently used ones are closed first
+	 */
+	public StatementCache(Connection connection, int maxStatements) {
+		this.connection = connection;
+		this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (this.size() <= maxStatements) {
+					return false;
+				}
+
+				eldest.getValue().evict();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return the connection to hand out to callers
+	 */
+	public Connection getConnection() {
+		return this.proxy;
+	}
+
+	/**
+	 * @return the underlying connection
+	 */
+	public Connection getDelegate() {
+		return this.connection;
+	}
+
+	/**
+	 * @return how many statements were served from the cache
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return how many statements had to be prepared
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Close every cached statement and the underlying connection
+	 *
+	 * @throws SQLException if the connection could not be closed
+	 */
+	public synchronized void close() throws SQLException {
+		for (CachedStatement statement : this.statements.values()) {
+			statement.closeQuietly();
+		}
+
+		this.statements.clear();
+		this.connection.close();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+
+		if (name.equals("prepareStatement") && args.length == 1) {
+			return this.prepare((String) args[0]);
+		}
+
+		if (name.equals("close")) {
+			return null;
+		}
+
+		return invokeDelegate(this.connection, method, args);
+	}
+
+	private synchronized PreparedStatement prepare(String sql) throws SQLException {
+		CachedStatement cached = this.statements.get(sql);
+
+		// The same statement is still open further up the stack, hand out a separate one
+		if (cached != null && cached.inUse) {
+			this.misses++;
+			return this.connection.prepareStatement(sql);
+		}
+
+		if (cached == null) {
+			this.misses++;
+
+			cached = new CachedStatement(this.connection.prepareStatement(sql));
+			this.statements.put(sql, cached);
+		} else {
+			this.hits++;
+		}
+
+		cached.inUse = true;
+		return cached.proxy;
+	}
+
+	private static Object invokeDelegate(Object delegate, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(delegate, args);
+		} catch (InvocationTargetException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private final class CachedStatement implements InvocationHandler {
+		private final PreparedStatement statement;
+		private final PreparedStatement proxy;
+
+		private boolean inUse;
+		private boolean evicted;
+		private ResultSet resultSet;
+
+		private CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					this.release();
+					return null;
+
+				case "isClosed":
+					return !this.inUse;
+
+				case "getConnection":
+					return StatementCache.this.proxy;
+
+				default:
+					Object result = invokeDelegate(this.statement, method, args);
+
+					if (result instanceof ResultSet) {
+						this.resultSet = (ResultSet) result;
+					}
+
+					return result;
+			}
+		}
+
+		private void release() throws SQLException {
+			synchronized (StatementCache.this) {
+				this.release0();
+			}
+		}
+
+		private void release0() throws SQLException {
+			if (!this.inUse) {
+				return;
+			}
+
+			this.inUse = false;
+
+			// An open result set would keep the read transaction alive
+			if (this.resultSet != null) {
+				this.resultSet.close();
+				this.resultSet = null;
+			}
+
+			if (this.evicted) {
+				this.closeQuietly();
+				return;
+			}
+
+			this.statement.clearParameters();
+			this.statement.clearBatch();
+		}
+
+		private void evict() {
+			this.evicted = true;
+
+			// Statements still in use are closed once they are released
+			if (!this.inUse) {
+				this.closeQuietly();
+			}
+		}
+
+		private void closeQuietly() {
+			try {
+				this.statement.close();
+			} catch (SQLException ignored) {
+			}
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package ca.tweetzy.tweety.database;
+
+import ca.tweetzy.tweety.collection.expiringmap.NamedThreadFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Collects upserts and deletes per table and writes them in batches, each flush
+ * being a single transaction. Repeated writes to the same key are collapsed so
+ * only the latest one reaches the database.
+ * <p>
+ * Flushes happen every flush interval, when a table holds the maximum amount of
+ * pending rows, or when {@link #flush()} is called.
+ * <p>
+ * A row that fails to be written is retried with the next flush, and given up with
+ * an error once it failed {@link #setMaxAttempts(int)} times without being overwritten.
+ */
+public class WriteBehindBuffer {
+
+	/**
+	 * Marks a pending delete in a table's pending writes
+	 */
+	private static final Object DELETE = new Object();
+
+	private final DatabaseConnector databaseConnector;
+	private final DatabaseExecutor executor;
+	private final Logger logger;
+	private final int maxPendingRows;
+
+	/**
+	 * How many failed flushes a row survives before it is dropped
+	 */
+	private volatile int maxAttempts = 10;
+
+	private final List<Table<?, ?>> tables = new ArrayList<>();
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * Serializes flushes so scheduled and manual flushes never overlap
+	 */
+	private final Object flushLock = new Object();
+
+	/**
+	 * Set while an async flush is queued but has not started yet
+	 */
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new buffer and starts its flush timer
+	 *
+	 * @param databaseConnector   the connector to write with
+	 * @param executor            the executor to run scheduled flushes on
+	 * @param logger              the logger rows given up on are reported to
+	 * @param flushIntervalMillis how often pending writes are flushed
+	 * @param maxPendingRows      how many rows a table may hold before it is flushed early
+	 */
+	public WriteBehindBuffer(DatabaseConnector databaseConnector, DatabaseExecutor executor, Logger logger, long flushIntervalMillis, int maxPendingRows) {
+		this.databaseConnector = databaseConnector;
+		this.executor = executor;
+		this.logger = logger;
+		this.maxPendingRows = maxPendingRows;
+
+		this.timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("WriteBehind-%d"));
+		this.timer.scheduleWithFixedDelay(this::flushAsync, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Register a table whose writes should go through this buffer
+	 *
+	 * @param name         the table name
+	 * @param upsertSql    the statement inserting or updating one row
+	 * @param deleteSql    the statement deleting one row by key
+	 * @param upsertBinder creates the binder of the upsert statement for a value
+	 * @param deleteBinder creates the binder of the delete statement for a key
+	 * @return the table to queue writes on
+	 */
+	public <K, V> Table<K, V> table(String name, String upsertSql, String deleteSql, Function<V, DatabaseConnector.ParameterBinder> upsertBinder,
+									Function<K, DatabaseConnector.ParameterBinder> deleteBinder) {
+		Table<K, V> table = new Table<>(name, upsertSql, deleteSql, upsertBinder, deleteBinder);
+
+		synchronized (this.tables) {
+			this.tables.add(table);
+		}
+
+		return table;
+	}
+
+	/**
+	 * Set how many failed flushes a row survives before it is dropped and reported
+	 *
+	 * @param maxAttempts the attempts, at least 1
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+	}
+
+	/**
+	 * @return how many rows are waiting to be written across all tables
+	 */
+	public int getPendingRows() {
+		int pending = 0;
+
+		synchronized (this.tables) {
+			for (Table<?, ?> table : this.tables) {
+				pending += table.getPendingRows();
+			}
+		}
+
+		return pending;
+	}
+
+	/**
+	 * Write every pending row on the calling thread and wait for it to finish
+	 */
+	public void flush() {
+		synchronized (this.flushLock) {
+			List<Table<?, ?>> tables;
+
+			synchronized (this.tables) {
+				tables = new ArrayList<>(this.tables);
+			}
+
+			List<Map<?, Object>> batches = new ArrayList<>(tables.size());
+			boolean empty = true;
+
+			for (Table<?, ?> table : tables) {
+				Map<?, Object> batch = table.drain();
+
+				batches.add(batch);
+				empty &= batch.isEmpty();
+			}
+
+			if (empty) {
+				return;
+			}
+
+			boolean[] written = {false};
+
+			this.databaseConnector.connect(connection -> {
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+
+				try {
+					for (int i = 0; i < tables.size(); i++) {
+						tables.get(i).write(connection, batches.get(i));
+					}
+
+					connection.commit();
+					written[0] = true;
+				} catch (SQLException ex) {
+					connection.rollback();
+					throw ex;
+				} finally {
+					connection.setAutoCommit(autoCommit);
+				}
+			});
+
+			// Put failed writes back unless they were overwritten in the meantime
+			for (int i = 0; i < tables.size(); i++) {
+				if (written[0]) {
+					tables.get(i).forgetAttempts(batches.get(i));
+				} else {
+					tables.get(i).restore(batches.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop the flush timer and queue a final flush on the executor, so it completes
+	 * before {@link DatabaseExecutor#awaitTermination(long, TimeUnit)} returns
+	 */
+	public void close() {
+		this.closed = true;
+		this.timer.shutdown();
+
+		if (this.executor.isShutdown()) {
+			this.flush();
+			return;
+		}
+
+		try {
+			this.executor.execute(this, this::flush);
+		} catch (RejectedExecutionException ex) {
+			this.flush();
+		}
+	}
+
+	private void flushAsync() {
+		if (!this.flushQueued.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			this.executor.execute(this, () -> {
+				this.flushQueued.set(false);
+				this.flush();
+			});
+		} catch (RejectedExecutionException ex) {
+			this.flushQueued.set(false);
+		}
+	}
+
+	/**
+	 * A table whose writes are buffered, see {@link WriteBehindBuffer#table(String, String, String, Function, Function)}
+	 */
+	public final class Table<K, V> {
+		private final String name;
+		private final String upsertSql;
+		private final String deleteSql;
+		private final Function<V, DatabaseConnector.ParameterBinder> upsertBinder;
+		private final Function<K, DatabaseConnector.ParameterBinder> deleteBinder;
+
+		private Map<K, Object> pending = new LinkedHashMap<>();
+		private EntityCache<K, V> cache;
+
+		/**
+		 * How many flushes failed for the pending rows that were already tried
+		 */
+		private final Map<K, Integer> attempts = new HashMap<>();
+
+		private Table(String name, String upsertSql, String deleteSql, Function<V, DatabaseConnector.ParameterBinder> upsertBinder,
+					  Function<K, DatabaseConnector.ParameterBinder> deleteBinder) {
+			this.name = name;
+			this.upsertSql = upsertSql;
+			this.deleteSql = deleteSql;
+			this.upsertBinder = upsertBinder;
+			this.deleteBinder = deleteBinder;
+		}
+
+		/**
+		 * Keep the given cache up to date with every write queued on this table,
+		 * so it serves the new values before they are flushed
+		 *
+		 * @param cache the cache of this table
+		 * @return this table
+		 */
+		public Table<K, V> cache(EntityCache<K, V> cache) {
+			this.cache = cache;
+			return this;
+		}
+
+		/**
+		 * Queue the row with the given key to be inserted or updated, replacing any pending write for it
+		 *
+		 * @param key   the primary key of the row
+		 * @param value the value to write
+		 */
+		public void upsert(K key, V value) {
+			this.queue(key, value);
+
+			if (this.cache != null) {
+				this.cache.put(key, value);
+			}
+		}
+
+		/**
+		 * Queue the row with the given key to be deleted, replacing any pending write for it
+		 *
+		 * @param key the primary key of the row
+		 */
+		public void delete(K key) {
+			this.queue(key, DELETE);
+
+			if (this.cache != null) {
+				this.cache.put(key, null);
+			}
+		}
+
+		/**
+		 * @return the table name
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @return how many rows are waiting to be written
+		 */
+		public synchronized int getPendingRows() {
+			return this.pending.size();
+		}
+
+		private void queue(K key, Object value) {
+			if (WriteBehindBuffer.this.closed) {
+				throw new IllegalStateException("Cannot queue writes for " + this.name + " after the buffer has been closed");
+			}
+
+			int size;
+
+			synchronized (this) {
+				// Remove first so the key moves to the end and keeps write order
+				this.pending.remove(key);
+				this.pending.put(key, value);
+				this.attempts.remove(key);
+
+				size = this.pending.size();
+			}
+
+			if (size >= WriteBehindBuffer.this.maxPendingRows) {
+				WriteBehindBuffer.this.flushAsync();
+			}
+		}
+
+		private synchronized Map<?, Object> drain() {
+			Map<K, Object> drained = this.pending;
+			this.pending = new LinkedHashMap<>();
+
+			return drained;
+		}
+
+		@SuppressWarnings("unchecked")
+		private synchronized void restore(Map<?, Object> batch) {
+			Map<K, Object> restored = new LinkedHashMap<>();
+
+			for (Map.Entry<K, Object> entry : ((Map<K, Object>) batch).entrySet()) {
+				K key = entry.getKey();
+
+				// Overwritten in the meantime
+				if (this.pending.containsKey(key)) {
+					continue;
+				}
+
+				int attempt = this.attempts.merge(key, 1, Integer::sum);
+
+				if (attempt >= WriteBehindBuffer.this.maxAttempts) {
+					this.attempts.remove(key);
+
+					WriteBehindBuffer.this.logger.severe("Giving up writing " + (entry.getValue() == DELETE ? "the delete" : "the row") + " of " + key + " to " + this.name + " after " + attempt + " failed attempts");
+					continue;
+				}
+
+				restored.put(key, entry.getValue());
+			}
+
+			restored.putAll(this.pending);
+
+			this.pending = restored;
+		}
+
+		private synchronized void forgetAttempts(Map<?, Object> batch) {
+			if (!this.attempts.isEmpty()) {
+				this.attempts.keySet().removeAll(batch.keySet());
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void write(Connection connection, Map<?, Object> batch) throws SQLException {
+			if (batch.isEmpty()) {
+				return;
+			}
+
+			try (PreparedStatement upsert = connection.prepareStatement(this.upsertSql);
+				 PreparedStatement delete = connection.prepareStatement(this.deleteSql)) {
+				boolean upserts = false;
+				boolean deletes = false;
+
+				for (Map.Entry<?, Object> entry : batch.entrySet()) {
+					if (entry.getValue() == DELETE) {
+						this.deleteBinder.apply((K) entry.getKey()).bind(delete);
+						delete.addBatch();
+						deletes = true;
+					} else {
+						this.upsertBinder.apply((V) entry.getValue()).bind(upsert);
+						upsert.addBatch();
+						upserts = true;
+					}
+				}
+
+				if (upserts) {
+					upsert.executeBatch();
+				}
+
+				if (deletes) {
+					delete.executeBatch();
+				}
+			}
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package ca.tweetzy.tweety.gui;
 
+import ca.tweetzy.tweety.model.MessageTemplate;
 import ca.tweetzy.tweety.remain.comp.CompMaterial;
 import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
@@ -9,6 +11,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class GuiUtils {
 	public static ItemStack getBorderGlassItem() {
@@ -97,6 +100,18 @@ public class GuiUtils {
 		return newLore;
 	}
 
+	/**
+	 * Render lore lines for a viewer and format them like {@link #getSafeLore(List)}
+	 *
+	 * @param viewer       who the lore is rendered for, used for player variables
+	 * @param lines        compiled lines, such as {@link ca.tweetzy.tweety.configuration.ConfigSetting#getTemplates()}
+	 * @param replacements extra variables to replace, may be null
+	 * @return newline and length-corrected item lore
+	 */
+	public static List<String> getSafeLore(CommandSender viewer, List<MessageTemplate> lines, Map<String, Object> replacements) {
+		return getSafeLore(MessageTemplate.renderAll(lines, viewer, replacements));
+	}
+
 	public static ItemStack createButtonItem(CompMaterial mat, String title, String... lore) {
 		ItemStack item = mat.toItem();
 		ItemMeta meta = item.getItemMeta();
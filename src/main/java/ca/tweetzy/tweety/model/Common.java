@@ -4,6 +4,7 @@ import ca.tweetzy.tweety.TweetyPlugin;
 import ca.tweetzy.tweety.debug.Debugger;
 import ca.tweetzy.tweety.exception.RegexTimeoutException;
 import ca.tweetzy.tweety.exception.TweetyException;
+import ca.tweetzy.tweety.model.MessageTemplate.Scope;
 import ca.tweetzy.tweety.model.chat.ColorFormatter;
 import ca.tweetzy.tweety.model.chat.Gradient;
 import ca.tweetzy.tweety.model.discord.DiscordSender;
@@ -15,7 +16,9 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.chat.ComponentSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -180,8 +183,7 @@ public final class Common {
 	public static void broadcast(final String... messages) {
 		if (!Valid.isNullOrEmpty(messages))
 			for (final String message : messages) {
-				for (final Player online : Remain.getOnlinePlayers())
-					tellJson(online, message);
+				tellAll(Remain.getOnlinePlayers(), message);
 
 				log(message);
 			}
@@ -194,8 +196,8 @@ public final class Common {
 	 * @param messages
 	 */
 	public static void broadcastTo(final Iterable<? extends CommandSender> recipients, final String... messages) {
-		for (final CommandSender sender : recipients)
-			tell(sender, messages);
+		for (final String message : messages)
+			tellAll(recipients, message);
 	}
 
 	/**
@@ -207,9 +209,13 @@ public final class Common {
 	 */
 	public static void broadcastWithPerm(final String showPermission, final String message, final boolean log) {
 		if (message != null && !message.equals("none")) {
+			final List<Player> recipients = new ArrayList<>();
+
 			for (final Player online : Remain.getOnlinePlayers())
 				if (PlayerUtil.hasPerm(online, showPermission))
-					tellJson(online, message);
+					recipients.add(online);
+
+			tellAll(recipients, message);
 
 			if (log)
 				log(message);
@@ -372,6 +378,67 @@ public final class Common {
 		tell(recipient, Replacer.replaceArray(message, replacements));
 	}
 
+	/**
+	 * Sends the message to all recipients like {@link #tell(CommandSender, String...)}, preparing it
+	 * once for every group of recipients who see the same text.
+	 * <p>
+	 * {player} and the variables of other plugins are replaced by who shares their value, see {@link Scope}:
+	 * global variables once for everyone, world variables once per world, group variables once per
+	 * primary group in each world and only the remaining variables once per player.
+	 *
+	 * @param recipients
+	 * @param message
+	 */
+	public static void tellAll(final Iterable<? extends CommandSender> recipients, final String message) {
+		if (message == null || message.isEmpty() || "none".equals(message))
+			return;
+
+		final MessageTemplate template = MessageTemplate.of(message);
+		final Scope scope = template.getPlaceholderScope();
+		final Map<String, PreparedMessage> prepared = new HashMap<>();
+
+		final Map<String, String[]> worldValues = new HashMap<>();
+		final Map<String, Map<String, String[]>> groupValues = new HashMap<>();
+		String[] globalValues = null;
+
+		for (final CommandSender recipient : recipients) {
+			final String replaced;
+
+			if (scope == null)
+				replaced = message;
+
+			else if (!(recipient instanceof Player) || !template.canReplacePlaceholders())
+				replaced = replaceRecipientVariables(recipient, message);
+
+			else {
+				final Player player = (Player) recipient;
+				final PlayerSnapshot snapshot = PlayerSnapshot.of(player);
+				final String world = snapshot != null ? snapshot.getWorldName() : player.getWorld().getName();
+
+				if (globalValues == null)
+					globalValues = template.replacePlaceholders(player, Scope.GLOBAL);
+
+				final String[] worldScoped = scope.ordinal() >= Scope.WORLD.ordinal()
+						? worldValues.computeIfAbsent(world, key -> template.replacePlaceholders(player, Scope.WORLD))
+						: null;
+
+				String[] groupScoped = null;
+
+				if (scope.ordinal() >= Scope.GROUP.ordinal()) {
+					final String group = getOrEmpty(snapshot != null ? snapshot.getPrimaryGroup() : HookManager.getPlayerPrimaryGroup(player));
+
+					groupScoped = groupValues.computeIfAbsent(world, key -> new HashMap<>()).computeIfAbsent(group, key -> template.replacePlaceholders(player, Scope.GROUP));
+				}
+
+				final String[] playerScoped = scope == Scope.PLAYER ? template.replacePlaceholders(player, Scope.PLAYER) : null;
+
+				replaced = template.joinPlaceholders(globalValues, worldScoped, groupScoped, playerScoped);
+			}
+
+			prepared.computeIfAbsent(replaced, key -> new PreparedMessage(message, key)).send(recipient);
+		}
+	}
+
 	/*
 	 * Tells the sender a basic message with & colors replaced and {player} with his variable replaced.
 	 * <p>
@@ -380,114 +447,172 @@ public final class Common {
 	 * <p>
 	 * Finally, a prefix to non-json messages is added, see {@link #getTellPrefix()}
 	 */
-	private static void tellJson(@NonNull final CommandSender sender, String message) {
+	private static void tellJson(@NonNull final CommandSender sender, final String message) {
 		if (message.isEmpty() || "none".equals(message))
 			return;
 
-		// Has prefix already? This is replaced when colorizing
-		final boolean hasPrefix = message.contains("{prefix}");
-		final boolean hasJSON = message.startsWith("[JSON]");
+		new PreparedMessage(message, replaceRecipientVariables(sender, message)).send(sender);
+	}
 
-		// Replace player
+	/*
+	 * Replace {player} and placeholders from other plugins for the recipient
+	 */
+	private static String replaceRecipientVariables(final CommandSender sender, String message) {
 		message = message.replace("{player}", resolveSenderName(sender));
 
-		if (sender instanceof Player) {
+		if (sender instanceof Player)
 			message = HookManager.replacePlaceholders((Player) sender, message);
-		}
 
-		// Replace colors
-		if (!hasJSON)
-			message = colorize(message);
+		return message;
+	}
 
-		// Used for matching
-		final String colorlessMessage = stripColors(message);
+	/*
+	 * A message with its colors and formatting applied, sent to any number of recipients
+	 */
+	private static final class PreparedMessage {
 
-		// Send [JSON] prefixed messages as json component
-		if (hasJSON) {
-			final String stripped = message.substring(6).trim();
+		private final String message;
+		private final String colorlessMessage;
+		private final boolean hasJSON;
 
-			if (!stripped.isEmpty())
-				Remain.sendJson(sender, stripped);
+		/*
+		 * The JSON parsed once, null if the message is not JSON or failed to parse
+		 */
+		private BaseComponent[] components;
 
-		} else if (colorlessMessage.startsWith("<actionbar>")) {
-			final String stripped = message.replace("<actionbar>", "");
+		/*
+		 * The chat lines with our prefix and centering, null if the message is not sent through the normal chat
+		 */
+		private List<String> lines;
 
-			if (!stripped.isEmpty())
-				if (sender instanceof Player)
-					Remain.sendActionBar((Player) sender, stripped);
-				else
-					tellJson(sender, stripped);
+		/*
+		 * Prepare the message with variables already replaced, checking {prefix} and [JSON] in the original
+		 */
+		private PreparedMessage(final String original, String message) {
 
-		} else if (colorlessMessage.startsWith("<toast>")) {
-			final String stripped = message.replace("<toast>", "");
+			// Has prefix already? This is replaced when colorizing
+			final boolean hasPrefix = original.contains("{prefix}");
+			this.hasJSON = original.startsWith("[JSON]");
 
-			if (!stripped.isEmpty())
-				if (sender instanceof Player)
-					Remain.sendToast((Player) sender, stripped);
-				else
-					tellJson(sender, stripped);
+			// Replace colors
+			if (!hasJSON)
+				message = colorize(message);
 
-		} else if (colorlessMessage.startsWith("<title>")) {
-			final String stripped = message.replace("<title>", "");
+			this.message = message;
 
-			if (!stripped.isEmpty()) {
-				final String[] split = stripped.split("\\|");
-				final String title = split[0];
-				final String subtitle = split.length > 1 ? Common.joinRange(1, split) : null;
+			// Used for matching
+			this.colorlessMessage = stripColors(message);
 
-				if (sender instanceof Player)
-					Remain.sendTitle((Player) sender, title, subtitle);
+			if (hasJSON) {
+				final String stripped = message.substring(6).trim();
 
-				else {
-					tellJson(sender, title);
+				try {
+					if (!stripped.isEmpty())
+						this.components = ComponentSerializer.parse(stripped);
 
-					if (subtitle != null)
-						tellJson(sender, subtitle);
+				} catch (final Throwable t) {
+					// Reported when sending, see Remain#sendJson
 				}
-			}
 
-		} else if (colorlessMessage.startsWith("<bossbar>")) {
-			final String stripped = message.replace("<bossbar>", "");
+			} else if (!colorlessMessage.startsWith("<actionbar>") && !colorlessMessage.startsWith("<toast>") && !colorlessMessage.startsWith("<title>") && !colorlessMessage.startsWith("<bossbar>")) {
+				final String prefixStripped = removeSurroundingSpaces(tellPrefix);
+				final String prefix = ADD_TELL_PREFIX && !hasPrefix && !prefixStripped.isEmpty() ? prefixStripped + " " : "";
+
+				this.lines = new ArrayList<>();
 
-			if (!stripped.isEmpty()) {
-				if (sender instanceof Player)
-					// cannot provide time here so we show it for 10 seconds
-					Remain.sendBossbarTimed((Player) sender, stripped, 10);
-				else
-					tellJson(sender, stripped);
+				for (final String part : message.split("\n"))
+					if (Common.stripColors(part).startsWith("<center>"))
+						lines.add(ChatUtil.center(prefix + part.replace("<center>", "")));
+					else
+						lines.add(prefix + part);
 			}
+		}
 
-		} else
-			for (final String part : message.split("\n")) {
-				final String prefixStripped = removeSurroundingSpaces(tellPrefix);
-				final String prefix = ADD_TELL_PREFIX && !hasPrefix && !prefixStripped.isEmpty() ? prefixStripped + " " : "";
+		/*
+		 * Send the prepared message to the sender
+		 */
+		private void send(final CommandSender sender) {
 
-				String toSend;
+			// Send [JSON] prefixed messages as json component
+			if (hasJSON) {
+				final String stripped = message.substring(6).trim();
 
-				if (Common.stripColors(part).startsWith("<center>"))
-					toSend = ChatUtil.center(prefix + part.replace("<center>", ""));
-				else
-					toSend = prefix + part;
+				if (components != null)
+					Remain.sendComponent(sender, components);
+
+				else if (!stripped.isEmpty())
+					Remain.sendJson(sender, stripped);
+
+			} else if (colorlessMessage.startsWith("<actionbar>")) {
+				final String stripped = message.replace("<actionbar>", "");
+
+				if (!stripped.isEmpty())
+					if (sender instanceof Player)
+						Remain.sendActionBar((Player) sender, stripped);
+					else
+						tellJson(sender, stripped);
 
-				if (MinecraftVersion.olderThan(V.v1_9) && toSend.length() + 1 >= Short.MAX_VALUE) {
-					toSend = toSend.substring(0, Short.MAX_VALUE / 2);
+			} else if (colorlessMessage.startsWith("<toast>")) {
+				final String stripped = message.replace("<toast>", "");
 
-					Common.warning("Message to " + sender.getName() + " was too large, sending the first 16,000 letters: " + toSend);
+				if (!stripped.isEmpty())
+					if (sender instanceof Player)
+						Remain.sendToast((Player) sender, stripped);
+					else
+						tellJson(sender, stripped);
+
+			} else if (colorlessMessage.startsWith("<title>")) {
+				final String stripped = message.replace("<title>", "");
+
+				if (!stripped.isEmpty()) {
+					final String[] split = stripped.split("\\|");
+					final String title = split[0];
+					final String subtitle = split.length > 1 ? Common.joinRange(1, split) : null;
+
+					if (sender instanceof Player)
+						Remain.sendTitle((Player) sender, title, subtitle);
+
+					else {
+						tellJson(sender, title);
+
+						if (subtitle != null)
+							tellJson(sender, subtitle);
+					}
 				}
 
-				// Make player engaged in a server conversation still receive the message
-				if (sender instanceof Conversable && ((Conversable) sender).isConversing())
-					((Conversable) sender).sendRawMessage(toSend);
+			} else if (colorlessMessage.startsWith("<bossbar>")) {
+				final String stripped = message.replace("<bossbar>", "");
 
-				else
-					try {
-						sender.sendMessage(toSend);
-					} catch (final Throwable t) {
-						Bukkit.getLogger().severe("Failed to send message to " + sender.getName() + ", message: " + toSend);
+				if (!stripped.isEmpty()) {
+					if (sender instanceof Player)
+						// cannot provide time here so we show it for 10 seconds
+						Remain.sendBossbarTimed((Player) sender, stripped, 10);
+					else
+						tellJson(sender, stripped);
+				}
 
-						t.printStackTrace();
+			} else
+				for (String toSend : lines) {
+					if (MinecraftVersion.olderThan(V.v1_9) && toSend.length() + 1 >= Short.MAX_VALUE) {
+						toSend = toSend.substring(0, Short.MAX_VALUE / 2);
+
+						Common.warning("Message to " + sender.getName() + " was too large, sending the first 16,000 letters: " + toSend);
 					}
-			}
+
+					// Make player engaged in a server conversation still receive the message
+					if (sender instanceof Conversable && ((Conversable) sender).isConversing())
+						((Conversable) sender).sendRawMessage(toSend);
+
+					else
+						try {
+							sender.sendMessage(toSend);
+						} catch (final Throwable t) {
+							Bukkit.getLogger().severe("Failed to send message to " + sender.getName() + ", message: " + toSend);
+
+							t.printStackTrace();
+						}
+				}
+		}
 	}
 
 	/**
@@ -571,12 +696,16 @@ public final class Common {
 		if (message == null || message.isEmpty())
 			return "";
 
-		String result = ChatColor.translateAlternateColorCodes('&', message
-				.replace("{prefix}", message.startsWith(tellPrefix) ? "" : removeSurroundingSpaces(tellPrefix.trim()))
-				.replace("{plugin_name}", TweetyPlugin.getNamed())
-				.replace("{plugin_version}", TweetyPlugin.getVersion()));
+		String result = message;
+
+		if (message.indexOf('{') != -1)
+			result = message
+					.replace("{prefix}", message.startsWith(tellPrefix) ? "" : removeSurroundingSpaces(tellPrefix.trim()))
+					.replace("{plugin_name}", TweetyPlugin.getNamed())
+					.replace("{plugin_version}", TweetyPlugin.getVersion());
 
-		return ColorFormatter.process(result);
+		// translates the & codes in the same pass as the other patterns
+		return ColorFormatter.colorize(result);
 	}
 
 	public static String gradient(String from, String to, String message, boolean bold) {
@@ -0,0 +1,612 @@
+package ca.tweetzy.tweety.model;
+
+import ca.tweetzy.tweety.collection.SerializedMap;
+import ca.tweetzy.tweety.collection.expiringmap.ExpirationPolicy;
+import ca.tweetzy.tweety.collection.expiringmap.ExpiringMap;
+import lombok.Getter;
+import lombok.NonNull;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * A message split once into the text between its variables and the variables themselves,
+ * so it can be rendered for any sender without searching the message again.
+ * <p>
+ * The text between the variables has its color codes replaced when the message is compiled,
+ * rendering only looks up the variables and joins the parts.
+ * <p>
+ * Variables are looked up in the same order as {@link Variables#replace(String, CommandSender, Map)}:
+ * the given replacements, PlaceholderAPI, the variables of {@link Variables} and then the prefixes of {@link Messenger}.
+ */
+public final class MessageTemplate {
+
+	/**
+	 * Recently compiled messages, see {@link #of(String)}
+	 */
+	private static final Map<String, MessageTemplate> compiled = ExpiringMap.builder()
+			.maxSize(4096)
+			.expiration(10, TimeUnit.MINUTES)
+			.expirationPolicy(ExpirationPolicy.ACCESSED)
+			.entryLoader(MessageTemplate::new)
+			.build();
+
+	/**
+	 * The builder messages are joined in, reused by each thread
+	 */
+	private static final ThreadLocal<StringBuilder> builder = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	/**
+	 * The message this template was compiled from
+	 */
+	@Getter
+	private final String source;
+
+	/**
+	 * The text around the variables, one more than there are variables
+	 */
+	private final String[] parts;
+
+	/**
+	 * The text around the variables with color codes replaced, null if the message can only be colored as a whole
+	 */
+	private final String[] coloredParts;
+
+	/**
+	 * The variables in the order they appear in
+	 */
+	private final Slot[] slots;
+
+	/**
+	 * Is this a [JSON] message which is never colored?
+	 */
+	private final boolean json;
+
+	/**
+	 * Does each variable appear in the message exactly where it was found, so replacing
+	 * a variable everywhere it appears is the same as replacing its slot?
+	 */
+	private final boolean exactSlots;
+
+	/**
+	 * Should the message be rendered by searching it for each kind of variable in turn, as variables
+	 * were replaced before templates? Messages with %variables%, (brackets) or |bars| are, since
+	 * replacing one variable can change where the next search finds the others.
+	 */
+	private final boolean searched;
+
+	/**
+	 * Compile the given message, use {@link #of(String)} to reuse recently compiled messages
+	 *
+	 * @param source
+	 */
+	public MessageTemplate(@NonNull final String source) {
+		final List<String> parts = new ArrayList<>();
+		final List<Slot> slots = new ArrayList<>();
+		final Matcher matcher = Variables.BRACKET_PLACEHOLDER_PATTERN.matcher(source);
+		int partStart = 0;
+
+		while (matcher.find()) {
+			parts.add(source.substring(partStart, matcher.start()));
+			slots.add(new Slot(matcher.group(), matcher.group(1)));
+
+			partStart = matcher.end();
+		}
+
+		parts.add(source.substring(partStart));
+
+		this.source = source;
+		this.parts = parts.toArray(new String[0]);
+		this.slots = slots.toArray(new Slot[0]);
+		this.json = source.startsWith("[JSON]");
+		this.exactSlots = matchesEveryOccurrence(slots);
+		this.searched = hasLooseBrackets(source) || !exactSlots;
+		this.coloredParts = this.json || !canColorParts() ? null : colorParts();
+	}
+
+	/*
+	 * Whether the message has characters a variable can start or end with other than { and }
+	 */
+	private static boolean hasLooseBrackets(final String message) {
+		for (int i = 0; i < message.length(); i++) {
+			final char c = message.charAt(i);
+
+			if (c == '%' || c == '(' || c == ')' || c == '|')
+				return true;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Whether each variable appears in the message exactly where it was found
+	 */
+	private boolean matchesEveryOccurrence(final List<Slot> slots) {
+		final Map<Integer, String> found = new HashMap<>();
+		int position = 0;
+
+		for (int i = 0; i < slots.size(); i++) {
+			position += parts[i].length();
+			found.put(position, slots.get(i).text);
+			position += slots.get(i).text.length();
+		}
+
+		final Set<String> checked = new HashSet<>();
+
+		for (final Slot slot : slots) {
+			if (!checked.add(slot.text))
+				continue;
+
+			for (int index = source.indexOf(slot.text); index != -1; index = source.indexOf(slot.text, index + slot.text.length()))
+				if (!slot.text.equals(found.get(index)))
+					return false;
+		}
+
+		return true;
+	}
+
+	/*
+	 * Whether coloring each part gives the same result as coloring the joined message,
+	 * true unless a color could start in one part and end in the next
+	 */
+	private boolean canColorParts() {
+
+		// gradients and rainbows span variables
+		if (source.indexOf('<') != -1)
+			return false;
+
+		// replaced by Common#colorize with the whole message in mind
+		if (source.contains("{prefix}") || source.contains("{plugin_name}") || source.contains("{plugin_version}"))
+			return false;
+
+		for (int i = 0; i < parts.length - 1; i++) {
+			final String part = parts[i];
+
+			if (part.endsWith("&") || part.lastIndexOf('#') >= Math.max(0, part.length() - 6))
+				return false;
+		}
+
+		return true;
+	}
+
+	private String[] colorParts() {
+		final String[] colored = new String[parts.length];
+
+		for (int i = 0; i < parts.length; i++)
+			colored[i] = Common.colorize(parts[i]);
+
+		return colored;
+	}
+
+	/**
+	 * Return the variables in this message, without brackets, in the order they appear in
+	 *
+	 * @return
+	 */
+	public List<String> getVariables() {
+		final List<String> variables = new ArrayList<>(slots.length);
+
+		for (final Slot slot : slots)
+			variables.add(slot.variable);
+
+		return variables;
+	}
+
+	/**
+	 * Return how long a render of this message stays valid, which is as long as its most changing variable allows.
+	 * Variables given in the replacements never change since they are part of what the render is found by.
+	 *
+	 * @param replacements
+	 * @return
+	 */
+	public Volatility getVolatility(final Map<String, Object> replacements) {
+		Volatility volatility = Volatility.STATIC;
+
+		for (final Slot slot : slots) {
+			if (replacements != null && (replacements.containsKey(slot.variable) || replacements.containsKey("{" + slot.variable + "}")))
+				continue;
+
+			final Volatility slotVolatility = Variables.getVolatility(slot.variable);
+
+			if (slotVolatility.ordinal() > volatility.ordinal())
+				volatility = slotVolatility;
+
+			if (volatility == Volatility.VOLATILE)
+				break;
+		}
+
+		return volatility;
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Placeholders
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Return the widest scope among {player} and the variables of other plugins in this message,
+	 * see {@link #replacePlaceholders(Player, Scope)}, or null if it has none and looks the same for everyone
+	 *
+	 * @return
+	 */
+	Scope getPlaceholderScope() {
+		Scope scope = null;
+
+		for (final Slot slot : slots) {
+			if (!isPlaceholder(slot))
+				continue;
+
+			final Scope slotScope = getScope(slot);
+
+			if (scope == null || slotScope.ordinal() > scope.ordinal())
+				scope = slotScope;
+		}
+
+		return scope;
+	}
+
+	/**
+	 * Can the placeholders be replaced slot by slot, or must the whole message be given to other plugins?
+	 *
+	 * @return
+	 */
+	boolean canReplacePlaceholders() {
+		return exactSlots;
+	}
+
+	/**
+	 * Replace {player} and the variables of other plugins which have the given scope for the player,
+	 * returning their values by slot and null for the slots of other scopes, see {@link #joinPlaceholders(String[]...)}
+	 *
+	 * @param player
+	 * @param scope
+	 * @return
+	 */
+	String[] replacePlaceholders(final Player player, final Scope scope) {
+		final String[] values = new String[slots.length];
+
+		for (int i = 0; i < slots.length; i++) {
+			final Slot slot = slots[i];
+
+			if (!isPlaceholder(slot) || getScope(slot) != scope)
+				continue;
+
+			values[i] = "{player}".equals(slot.text) ? Common.resolveSenderName(player) : HookManager.replacePlaceholders(player, slot.text);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Join the message with the first value each slot has in the given values, keeping
+	 * the variable as written where none has one. Colors are not replaced.
+	 *
+	 * @param values
+	 * @return
+	 */
+	String joinPlaceholders(final String[]... values) {
+		final String[] joined = new String[slots.length];
+
+		for (int i = 0; i < slots.length; i++) {
+			for (final String[] scopeValues : values)
+				if (scopeValues != null && scopeValues[i] != null) {
+					joined[i] = scopeValues[i];
+
+					break;
+				}
+
+			if (joined[i] == null)
+				joined[i] = slots[i].text;
+		}
+
+		return join(parts, joined);
+	}
+
+	/*
+	 * Whether the recipient replaces this variable, {player} always and others only when a placeholder plugin is loaded
+	 */
+	private static boolean isPlaceholder(final Slot slot) {
+		return "{player}".equals(slot.text) || HookManager.isPlaceholderAPILoaded() || HookManager.isMVdWPlaceholderAPILoaded();
+	}
+
+	/*
+	 * Return who shares the value of the variable
+	 */
+	private static Scope getScope(final Slot slot) {
+		return "{player}".equals(slot.text) ? Scope.PLAYER : Variables.getScope(slot.variable);
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Rendering
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Render this message for the given sender, see {@link Variables#replace(String, CommandSender)}
+	 *
+	 * @param sender
+	 * @return
+	 */
+	public String render(final CommandSender sender) {
+		return render(sender, null);
+	}
+
+	/**
+	 * Render this message for the given sender, replacing the given variables first,
+	 * see {@link Variables#replace(String, CommandSender, Map)}
+	 *
+	 * @param sender
+	 * @param replacements
+	 * @return
+	 */
+	public String render(final CommandSender sender, final Map<String, Object> replacements) {
+		if (source.isEmpty())
+			return "";
+
+		if (searched)
+			return Variables.replaceLegacy(source, sender, replacements);
+
+		final SerializedMap variables = replacements != null && !replacements.isEmpty() ? SerializedMap.of(replacements) : null;
+		final Player player = sender instanceof Player ? (Player) sender : null;
+		final String[] values = new String[slots.length];
+		boolean colorParts = coloredParts != null;
+
+		for (int i = 0; i < slots.length; i++) {
+			final Slot slot = slots[i];
+			String value = null;
+
+			if (variables != null) {
+				final String replacement = lookupReplacement(variables, slot.variable);
+
+				// the replacement may have its own variables, which are only found when the message is searched again
+				if (replacement != null && (replacement.indexOf('{') != -1 || replacement.indexOf('}') != -1 || hasLooseBrackets(replacement)))
+					return Variables.replaceLegacy(source, sender, replacements);
+
+				if (replacement != null)
+					value = slot.format(replacement);
+			}
+
+			if (value == null && player != null && (HookManager.isPlaceholderAPILoaded() || HookManager.isMVdWPlaceholderAPILoaded())) {
+				final String replaced = HookManager.replacePlaceholders(player, slot.text);
+
+				if (!slot.text.equals(replaced))
+					value = replaced;
+			}
+
+			if (value == null) {
+				final String variable = Variables.lookupVariable(player, sender, slot.variable);
+
+				if (variable != null)
+					value = slot.format(variable);
+			}
+
+			if (value == null && (slot.variable.endsWith("_prefix") || slot.variable.startsWith("prefix_")))
+				value = Messenger.replacePrefixes(slot.text);
+
+			if (value == null)
+				value = slot.text;
+
+			// a color started in the value could continue into the text after it
+			if (colorParts && (value.indexOf('&') != -1 || value.indexOf('#') != -1 || value.indexOf('<') != -1 || value.indexOf('{') != -1))
+				colorParts = false;
+
+			values[i] = value;
+		}
+
+		final String message = join(colorParts ? coloredParts : parts, values);
+
+		// a [JSON] message is never colored, even if a variable made it one
+		if (json)
+			return message;
+
+		if (message.startsWith("[JSON]"))
+			return colorParts ? join(parts, values) : message;
+
+		return colorParts ? message : Common.colorize(message);
+	}
+
+	/**
+	 * Render each message for the given sender
+	 *
+	 * @param templates
+	 * @param sender
+	 * @param replacements
+	 * @return
+	 */
+	public static List<String> renderAll(@NonNull final Iterable<MessageTemplate> templates, final CommandSender sender, final Map<String, Object> replacements) {
+		final List<String> lines = new ArrayList<>();
+
+		for (final MessageTemplate template : templates)
+			lines.add(template.render(sender, replacements));
+
+		return lines;
+	}
+
+	/*
+	 * Join the parts and values into the builder of this thread
+	 */
+	private static String join(final String[] parts, final String[] values) {
+		StringBuilder message = builder.get();
+
+		// do not keep a builder grown by one very long message
+		if (message.capacity() > 8192) {
+			message = new StringBuilder(256);
+
+			builder.set(message);
+		}
+
+		message.setLength(0);
+		message.append(parts[0]);
+
+		for (int i = 0; i < values.length; i++)
+			message.append(values[i]).append(parts[i + 1]);
+
+		return message.toString();
+	}
+
+	/*
+	 * Find the value of the variable in the replacements the same way as {@link Replacer#replaceVariables(String, SerializedMap)}
+	 */
+	private static String lookupReplacement(final SerializedMap variables, final String variable) {
+		String value = null;
+
+		for (final Map.Entry<String, Object> entry : variables.entrySet()) {
+			String key = entry.getKey();
+
+			key = key.startsWith("{") ? key.substring(1) : key;
+			key = key.endsWith("}") ? key.substring(0, key.length() - 1) : key;
+
+			if (key.equals(variable))
+				value = entry.getValue() == null ? "null" : entry.getValue().toString();
+		}
+
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "MessageTemplate{" + source + "}";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static access
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Return the compiled template for the given message, compiling it if it was not used recently
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static MessageTemplate of(@NonNull final String message) {
+		return compiled.get(message);
+	}
+
+	/**
+	 * Return the compiled templates for the given messages
+	 *
+	 * @param messages
+	 * @return
+	 */
+	public static List<MessageTemplate> of(@NonNull final Iterable<String> messages) {
+		final List<MessageTemplate> templates = new ArrayList<>();
+
+		for (final String message : messages)
+			templates.add(of(message));
+
+		return templates;
+	}
+
+	/**
+	 * How often the value of a variable changes, which decides how long renders using it are kept,
+	 * see {@link Variables#setVolatility(String, Volatility)}
+	 */
+	public enum Volatility {
+
+		/**
+		 * Rarely changes, such as the player name, renders are kept for a minute
+		 */
+		STATIC(TimeUnit.MINUTES.toNanos(1)),
+
+		/**
+		 * May change at any time, such as the player prefix, renders are kept for half a second
+		 */
+		SHORT(TimeUnit.MILLISECONDS.toNanos(500)),
+
+		/**
+		 * Changes all the time, such as the location, renders are never kept
+		 */
+		VOLATILE(0);
+
+		/**
+		 * How long renders are kept, in nanoseconds
+		 */
+		@Getter
+		private final long keepNanos;
+
+		Volatility(final long keepNanos) {
+			this.keepNanos = keepNanos;
+		}
+	}
+
+	/**
+	 * Who shares the value of a variable, ordered from the most to the least shared,
+	 * see {@link Variables#setScope(String, Scope)}
+	 */
+	public enum Scope {
+
+		/**
+		 * The same for everyone, such as the server name
+		 */
+		GLOBAL,
+
+		/**
+		 * The same for everyone in one world, such as the world name
+		 */
+		WORLD,
+
+		/**
+		 * The same for everyone in one world with the same primary group, such as the group prefix
+		 */
+		GROUP,
+
+		/**
+		 * Different for each player, such as their balance
+		 */
+		PLAYER
+	}
+
+	/**
+	 * A variable in the message
+	 */
+	private static final class Slot {
+
+		/**
+		 * The variable as written in the message, with brackets
+		 */
+		private final String text;
+
+		/**
+		 * The variable name, without brackets and + signs
+		 */
+		private final String variable;
+
+		/**
+		 * Add a space before or after the value when it is not empty, written as {+variable} and {variable+}
+		 */
+		private final boolean frontSpace, backSpace;
+
+		private Slot(final String text, String variable) {
+			this.frontSpace = variable.startsWith("+");
+
+			if (frontSpace)
+				variable = variable.substring(1);
+
+			this.backSpace = variable.endsWith("+");
+
+			if (backSpace)
+				variable = variable.substring(0, variable.length() - 1);
+
+			this.text = text;
+			this.variable = variable;
+		}
+
+		/*
+		 * Color the value and add the spaces around it
+		 */
+		private String format(final String value) {
+			if (value.isEmpty())
+				return "";
+
+			final boolean emptyColorless = Common.stripColors(value).isEmpty();
+
+			return (frontSpace && !emptyColorless ? " " : "") + Common.colorize(value) + (backSpace && !emptyColorless ? " " : "");
+		}
+	}
+}
@@ -6,7 +6,6 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.UtilityClass;
 import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Player;
 
 /**
  * Streamlines the process of sending themed messages to players
@@ -67,8 +66,7 @@ public class Messenger {
 	 * @param message
 	 */
 	public void broadcastInfo(final String message) {
-		for (final Player online : Remain.getOnlinePlayers())
-			tell(online, infoPrefix, message);
+		broadcast(infoPrefix, message);
 	}
 
 	/**
@@ -77,8 +75,7 @@ public class Messenger {
 	 * @param message
 	 */
 	public void broadcastSuccess(final String message) {
-		for (final Player online : Remain.getOnlinePlayers())
-			tell(online, successPrefix, message);
+		broadcast(successPrefix, message);
 	}
 
 	/**
@@ -87,8 +84,7 @@ public class Messenger {
 	 * @param message
 	 */
 	public void broadcastWarn(final String message) {
-		for (final Player online : Remain.getOnlinePlayers())
-			tell(online, warnPrefix, message);
+		broadcast(warnPrefix, message);
 	}
 
 	/**
@@ -97,8 +93,7 @@ public class Messenger {
 	 * @param message
 	 */
 	public void broadcastError(final String message) {
-		for (final Player online : Remain.getOnlinePlayers())
-			tell(online, errorPrefix, message);
+		broadcast(errorPrefix, message);
 	}
 
 	/**
@@ -107,8 +102,7 @@ public class Messenger {
 	 * @param message
 	 */
 	public void broadcastQuestion(final String message) {
-		for (final Player online : Remain.getOnlinePlayers())
-			tell(online, questionPrefix, message);
+		broadcast(questionPrefix, message);
 	}
 
 	/**
@@ -117,8 +111,7 @@ public class Messenger {
 	 * @param message
 	 */
 	public void broadcastAnnounce(final String message) {
-		for (final Player online : Remain.getOnlinePlayers())
-			tell(online, announcePrefix, message);
+		broadcast(announcePrefix, message);
 	}
 
 	/**
@@ -192,14 +185,41 @@ public class Messenger {
 		tell(player, announcePrefix, message);
 	}
 
+	/*
+	 * Internal method to send the message to everyone online, prepared once for all of them
+	 */
+	private void broadcast(final String prefix, final String message) {
+		final String prefixed = addPrefix(prefix, message);
+
+		if (prefixed == null)
+			return;
+
+		final boolean hadPrefix = Common.ADD_TELL_PREFIX;
+		Common.ADD_TELL_PREFIX = false;
+
+		Common.tellAll(Remain.getOnlinePlayers(), prefixed);
+
+		Common.ADD_TELL_PREFIX = hadPrefix;
+	}
+
 	/*
 	 * Internal method to perform the sending
 	 */
-	private void tell(final CommandSender player, final String prefix, String message) {
+	private void tell(final CommandSender player, final String prefix, final String message) {
+		final String prefixed = addPrefix(prefix, message);
+
+		if (prefixed != null)
+			Common.tellNoPrefix(player, prefixed);
+	}
+
+	/*
+	 * Insert the prefix into the message, or return null if the message should not be sent
+	 */
+	private String addPrefix(final String prefix, String message) {
 
 		// Support localization being none or empty
 		if (message.isEmpty() || "none".equals(message))
-			return;
+			return null;
 
 		final String colorless = Common.stripColors(message);
 		boolean noPrefix = ChatUtil.isInteractive(colorless);
@@ -215,7 +235,7 @@ public class Messenger {
 		}
 
 		// Only insert prefix if the message is sent through the normal chat
-		Common.tellNoPrefix(player, (noPrefix ? "" : prefix) + message);
+		return (noPrefix ? "" : prefix) + message;
 	}
 
 	/**
@@ -0,0 +1,251 @@
+package ca.tweetzy.tweety.model;
+
+import ca.tweetzy.tweety.remain.Remain;
+import ca.tweetzy.tweety.util.PlayerUtil;
+import ca.tweetzy.tweety.util.Valid;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The values of a player that our variables need, captured on the main thread once per tick
+ * so messages can be rendered on any thread without touching Bukkit, see {@link Variables#replace(String, org.bukkit.command.CommandSender, Map)}
+ * <p>
+ * Values from other plugins such as the prefix or town are only captured once per second,
+ * spread over the ticks of that second so not every player queries them on the same tick.
+ */
+@Getter
+public final class PlayerSnapshot {
+
+	/**
+	 * How many ticks to keep the values from other plugins for before we capture them again
+	 */
+	private static final int HOOK_REFRESH_TICKS = 20;
+
+	/**
+	 * The latest snapshot of each online player
+	 */
+	private static final Map<UUID, PlayerSnapshot> snapshots = new ConcurrentHashMap<>();
+
+	/**
+	 * The task capturing snapshots every tick, null if not started
+	 */
+	private static BukkitTask task;
+
+	/**
+	 * Ticks since the task started
+	 */
+	private static int ticks;
+
+	/**
+	 * The location the task reads players into, so checking if they moved does not create a new one
+	 */
+	private static final Location scratchLocation = new Location(null, 0, 0, 0);
+
+	private final UUID uniqueId;
+	private final String name;
+	private final String displayName;
+	private final String tabName;
+
+	private final String worldName;
+	private final String worldAlias;
+	private final int blockX;
+	private final int blockY;
+	private final int blockZ;
+	private final int health;
+
+	private final String address;
+	private final boolean vanished;
+	private final String nick;
+	private final String prefix;
+	private final String suffix;
+	private final String group;
+	private final String primaryGroup;
+	private final String town;
+	private final String nation;
+	private final String faction;
+
+	/**
+	 * When this snapshot was captured, from {@link System#currentTimeMillis()}.
+	 * The same snapshot is kept for the following ticks until the player changes.
+	 */
+	private final long capturedAt;
+
+	/*
+	 * Captures the player, reusing the values from other plugins from the previous snapshot if given
+	 */
+	private PlayerSnapshot(final Player player, final Location location, final PlayerSnapshot previous) {
+		this.uniqueId = player.getUniqueId();
+		this.name = player.getName();
+		this.displayName = player.getDisplayName();
+		this.tabName = player.getPlayerListName();
+
+		this.worldName = location.getWorld().getName();
+		this.worldAlias = previous != null && previous.worldName.equals(worldName) ? previous.worldAlias : HookManager.getWorldAlias(location.getWorld());
+		this.blockX = location.getBlockX();
+		this.blockY = location.getBlockY();
+		this.blockZ = location.getBlockZ();
+		this.health = Remain.getHealth(player);
+
+		if (previous != null) {
+			this.address = previous.address;
+			this.vanished = previous.vanished;
+			this.nick = previous.nick;
+			this.prefix = previous.prefix;
+			this.suffix = previous.suffix;
+			this.group = previous.group;
+			this.primaryGroup = previous.primaryGroup;
+			this.town = previous.town;
+			this.nation = previous.nation;
+			this.faction = previous.faction;
+
+		} else {
+			this.address = formatAddress(player);
+			this.vanished = PlayerUtil.isVanished(player);
+			this.nick = HookManager.getNickColored(player);
+			this.prefix = HookManager.getPlayerPrefix(player);
+			this.suffix = HookManager.getPlayerSuffix(player);
+			this.group = HookManager.getPlayerPermissionGroup(player);
+			this.primaryGroup = HookManager.getPlayerPrimaryGroup(player);
+			this.town = HookManager.getTownName(player);
+			this.nation = HookManager.getNation(player);
+			this.faction = HookManager.getFaction(player);
+		}
+
+		this.capturedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Return the location of the player at block points, such as world [10, 64, -20],
+	 * like {@link Common#shortLocation(Location)}
+	 *
+	 * @return
+	 */
+	public String getShortLocation() {
+		return worldName + " [" + blockX + ", " + blockY + ", " + blockZ + "]";
+	}
+
+	/*
+	 * Return true if the player still has the values captured in this snapshot
+	 */
+	private boolean matches(final Player player, final Location location) {
+		return blockX == location.getBlockX()
+				&& blockY == location.getBlockY()
+				&& blockZ == location.getBlockZ()
+				&& health == Remain.getHealth(player)
+				&& worldName.equals(location.getWorld().getName())
+				&& name.equals(player.getName())
+				&& Objects.equals(displayName, player.getDisplayName())
+				&& Objects.equals(tabName, player.getPlayerListName());
+	}
+
+	/*
+	 * Formats the IP address of the player without the port
+	 */
+	private static String formatAddress(final Player player) {
+		try {
+			return player.getAddress().toString().split("\\:")[0];
+		} catch (final Throwable t) {
+			return player.getAddress() != null ? player.getAddress().toString() : "";
+		}
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Static access
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Start capturing all online players every tick, called automatically when the plugin starts or reloads
+	 */
+	public static void start() {
+		stop();
+
+		task = Common.runTimer(1, PlayerSnapshot::captureAll);
+	}
+
+	/**
+	 * Stop capturing players and forget all snapshots
+	 */
+	public static void stop() {
+		if (task != null) {
+			task.cancel();
+
+			task = null;
+		}
+
+		ticks = 0;
+		snapshots.clear();
+	}
+
+	/*
+	 * Capture every online player that changed, forgetting those who left
+	 */
+	private static void captureAll() {
+		final int tick = ticks++;
+		final Set<UUID> online = new HashSet<>();
+
+		for (final Player player : Remain.getOnlinePlayers()) {
+			final UUID uniqueId = player.getUniqueId();
+			final PlayerSnapshot previous = snapshots.get(uniqueId);
+			final Location location = player.getLocation(scratchLocation);
+
+			// each player refreshes the values from other plugins on their own tick of the second
+			final boolean refreshHooks = previous == null || Math.floorMod(tick + uniqueId.hashCode(), HOOK_REFRESH_TICKS) == 0;
+
+			if (refreshHooks || !previous.matches(player, location))
+				snapshots.put(uniqueId, new PlayerSnapshot(player, location, refreshHooks ? null : previous));
+
+			online.add(uniqueId);
+		}
+
+		// do not keep the last world loaded
+		scratchLocation.setWorld(null);
+
+		snapshots.keySet().retainAll(online);
+	}
+
+	/**
+	 * Capture the player now, such as when they join before the next tick.
+	 * Must be called on the main thread.
+	 *
+	 * @param player
+	 * @return
+	 */
+	public static PlayerSnapshot capture(final Player player) {
+		Valid.checkBoolean(Bukkit.isPrimaryThread(), "Players can only be captured on the main thread!");
+
+		final PlayerSnapshot snapshot = new PlayerSnapshot(player, player.getLocation(), null);
+
+		snapshots.put(player.getUniqueId(), snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Return the latest snapshot of the player, or null if they were not captured yet.
+	 * Safe to call from any thread.
+	 *
+	 * @param player
+	 * @return
+	 */
+	public static PlayerSnapshot of(final Player player) {
+		return snapshots.get(player.getUniqueId());
+	}
+
+	/**
+	 * Forget the snapshot of the player, such as when they leave
+	 *
+	 * @param player
+	 */
+	public static void remove(final Player player) {
+		snapshots.remove(player.getUniqueId());
+	}
+}
@@ -0,0 +1,356 @@
+package ca.tweetzy.tweety.model;
+
+import ca.tweetzy.tweety.model.MessageTemplate.Volatility;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the messages recently rendered for each player, see {@link Variables#replace(String, CommandSender, Map)}.
+ * <p>
+ * A render is found by its {@link MessageTemplate} and the hash of its replacements, and is kept for as long
+ * as its most changing variable allows, see {@link Volatility}. Renders with variables such as {x} are never kept.
+ * <p>
+ * Each player keeps the renders they used most recently, and once all players together hold more than
+ * the maximum size, the players who rendered a message the longest ago are dropped.
+ */
+public final class RenderCache {
+
+	/**
+	 * How many renders of one message with different replacements are kept for a player
+	 */
+	private static final int MAX_RENDERS_PER_TEMPLATE = 4;
+
+	private final int maxPerPlayer;
+	private final int maxSize;
+
+	private final Map<String, PlayerRenders> players = new ConcurrentHashMap<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final ReentrantLock evictLock = new ReentrantLock();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong uncached = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param maxPerPlayer how many renders to keep for one player at most
+	 * @param maxSize      how many renders to keep for all players together at most
+	 */
+	public RenderCache(final int maxPerPlayer, final int maxSize) {
+		this.maxPerPlayer = maxPerPlayer;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Return the kept render of the message for the sender, or render it and keep it
+	 *
+	 * @param template
+	 * @param sender
+	 * @param replacements
+	 * @return
+	 */
+	public String render(final MessageTemplate template, final CommandSender sender, final Map<String, Object> replacements) {
+		if (!(sender instanceof Player))
+			return template.render(sender, replacements);
+
+		final Volatility volatility = template.getVolatility(replacements);
+
+		// off the main thread a player without a snapshot renders with empty variables, which must not be kept
+		if (volatility == Volatility.VOLATILE || !isPlain(replacements) || !Bukkit.isPrimaryThread() && PlayerSnapshot.of((Player) sender) == null) {
+			uncached.incrementAndGet();
+
+			return template.render(sender, replacements);
+		}
+
+		final int hash = replacements == null || replacements.isEmpty() ? 0 : replacements.hashCode();
+		final long now = System.nanoTime();
+
+		PlayerRenders renders = players.get(sender.getName());
+
+		if (renders != null)
+			synchronized (renders) {
+				for (Render render = renders.get(template); render != null; render = render.next)
+					if (render.hash == hash && render.hasReplacements(replacements)) {
+						if (now - render.expires < 0) {
+							renders.lastUsed = now;
+							hits.incrementAndGet();
+
+							return render.result;
+						}
+
+						break;
+					}
+			}
+
+		misses.incrementAndGet();
+
+		final String result = template.render(sender, replacements);
+
+		if (renders == null)
+			renders = players.computeIfAbsent(sender.getName(), name -> new PlayerRenders());
+
+		synchronized (renders) {
+
+			// dropped while we were rendering
+			if (!renders.removed) {
+				final Render render = new Render(hash, replacements == null || replacements.isEmpty() ? null : new HashMap<>(replacements), result, now + volatility.getKeepNanos());
+
+				renders.lastUsed = now;
+				renders.add(template, render);
+			}
+		}
+
+		if (size.get() > maxSize)
+			evictPlayers();
+
+		return result;
+	}
+
+	/*
+	 * Whether the replacements only hold values that cannot change, so their hash stays the same
+	 */
+	private static boolean isPlain(final Map<String, Object> replacements) {
+		if (replacements == null)
+			return true;
+
+		for (final Object value : replacements.values())
+			if (value != null && !(value instanceof String) && !(value instanceof Number) && !(value instanceof Boolean) && !(value instanceof Character) && !(value instanceof Enum))
+				return false;
+
+		return true;
+	}
+
+	/*
+	 * Drop the players who rendered a message the longest ago, leaving some room so this does not run on every render
+	 */
+	private void evictPlayers() {
+		if (!evictLock.tryLock())
+			return;
+
+		try {
+			final List<Map.Entry<String, PlayerRenders>> byAge = new ArrayList<>(players.entrySet());
+			final int target = maxSize - maxSize / 8;
+
+			// taken once, as players keep rendering while we sort
+			for (final Map.Entry<String, PlayerRenders> entry : byAge)
+				entry.getValue().sortedLastUsed = entry.getValue().lastUsed;
+
+			byAge.sort(Comparator.comparingLong(entry -> entry.getValue().sortedLastUsed));
+
+			for (final Map.Entry<String, PlayerRenders> entry : byAge) {
+				if (size.get() <= target)
+					break;
+
+				if (players.remove(entry.getKey(), entry.getValue()))
+					evictions.addAndGet(entry.getValue().drop());
+			}
+
+		} finally {
+			evictLock.unlock();
+		}
+	}
+
+	/**
+	 * Forget the renders of the given player, such as when they leave
+	 *
+	 * @param playerName
+	 */
+	public void invalidate(final String playerName) {
+		final PlayerRenders renders = players.remove(playerName);
+
+		if (renders != null)
+			renders.drop();
+	}
+
+	/**
+	 * Forget all renders, such as after the variables or messages were reloaded
+	 */
+	public void clear() {
+		for (final String playerName : new ArrayList<>(players.keySet()))
+			invalidate(playerName);
+	}
+
+	/**
+	 * @return how many renders are kept
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return how many renders were served from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return how many renders were not kept or had expired, and were rendered again
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return how many renders were never kept, because of volatile variables or replacements that may change
+	 */
+	public long getUncached() {
+		return uncached.get();
+	}
+
+	/**
+	 * @return how many renders were dropped because too many were kept
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the share of renders that could be kept which were served from the cache, from 0 to 1
+	 */
+	public double getHitRate() {
+		final long hits = this.hits.get();
+		final long total = hits + misses.get();
+
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return "RenderCache{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", uncached=" + getUncached() + ", evictions=" + getEvictions() + "}";
+	}
+
+	/**
+	 * The renders of one player, the least recently used message first
+	 */
+	private final class PlayerRenders extends LinkedHashMap<MessageTemplate, Render> {
+
+		/**
+		 * When this player last rendered a message, from {@link System#nanoTime()}
+		 */
+		private volatile long lastUsed;
+
+		/**
+		 * The {@link #lastUsed} time players are sorted by when evicting, only used under the evict lock
+		 */
+		private long sortedLastUsed;
+
+		/**
+		 * How many renders are kept, counting every render of each message
+		 */
+		private int count;
+
+		/**
+		 * Was this player dropped from the cache? No renders are added then.
+		 */
+		private boolean removed;
+
+		private PlayerRenders() {
+			super(16, 0.75F, true);
+		}
+
+		/*
+		 * Keep the render in front of the other renders of the message, replacing one with the same replacements
+		 */
+		private void add(final MessageTemplate template, final Render render) {
+			Render last = render;
+			int length = 1;
+
+			for (Render other = get(template); other != null; other = other.next) {
+				if (length == MAX_RENDERS_PER_TEMPLATE || other.hash == render.hash && other.hasReplacements(render.replacements)) {
+					forget(1);
+
+					continue;
+				}
+
+				last.next = other;
+				last = other;
+				length++;
+			}
+
+			last.next = null;
+
+			// counted first, adding may drop the least recently used message
+			count++;
+			size.incrementAndGet();
+
+			put(template, render);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<MessageTemplate, Render> eldest) {
+			if (count <= maxPerPlayer)
+				return false;
+
+			int length = 0;
+
+			for (Render render = eldest.getValue(); render != null; render = render.next)
+				length++;
+
+			forget(length);
+			evictions.addAndGet(length);
+
+			return true;
+		}
+
+		private void forget(final int renders) {
+			count -= renders;
+			size.addAndGet(-renders);
+		}
+
+		/*
+		 * Drop all renders and stop keeping new ones, returns how many were dropped
+		 */
+		private int drop() {
+			synchronized (this) {
+				final int dropped = count;
+
+				removed = true;
+				forget(count);
+				clear();
+
+				return dropped;
+			}
+		}
+	}
+
+	/**
+	 * One render of a message, linked to the other renders of the same message with other replacements
+	 */
+	private static final class Render {
+		private final int hash;
+		private final Map<String, Object> replacements;
+		private final String result;
+		private final long expires;
+
+		private Render next;
+
+		private Render(final int hash, final Map<String, Object> replacements, final String result, final long expires) {
+			this.hash = hash;
+			this.replacements = replacements;
+			this.result = result;
+			this.expires = expires;
+		}
+
+		private boolean hasReplacements(final Map<String, Object> other) {
+			if (replacements == null)
+				return other == null || other.isEmpty();
+
+			return replacements.equals(other);
+		}
+	}
+}
@@ -341,14 +341,15 @@ public class TweetyScoreboard {
 	}
 
 	/**
-	 * Replaces variables in the message for the given player
+	 * Replaces variables in the message for the given player,
+	 * rendering the row from its compiled {@link MessageTemplate}
 	 *
 	 * @param player
 	 * @param message
 	 * @return
 	 */
 	protected String replaceVariables(final Player player, final String message) {
-		return message;
+		return Variables.replace(MessageTemplate.of(message), player, null);
 	}
 
 	/**
@@ -1,21 +1,25 @@
 package ca.tweetzy.tweety.model;
 
 import ca.tweetzy.tweety.collection.StrictMap;
-import ca.tweetzy.tweety.collection.expiringmap.ExpiringMap;
+import ca.tweetzy.tweety.model.MessageTemplate.Scope;
+import ca.tweetzy.tweety.model.MessageTemplate.Volatility;
 import ca.tweetzy.tweety.model.discord.DiscordSender;
 import ca.tweetzy.tweety.remain.Remain;
 import ca.tweetzy.tweety.util.MinecraftVersion;
 import ca.tweetzy.tweety.util.PlayerUtil;
 import ca.tweetzy.tweety.util.TimeUtil;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -36,9 +40,44 @@ public final class Variables {
 	public static final Pattern BRACKET_REL_PLACEHOLDER_PATTERN = Pattern.compile("[({|%)](rel_)([^}]+)[(}|%)]");
 
 	/**
-	 * Player - [Original Message - Translated Message]
+	 * Messages recently rendered for each player
 	 */
-	private static final Map<String, Map<String, String>> cache = ExpiringMap.builder().expiration(500, TimeUnit.MILLISECONDS).build();
+	private static final RenderCache renderCache = new RenderCache(128, 16384);
+
+	/**
+	 * How often our hardcoded variables change, see {@link #getVolatility(String)}
+	 */
+	private static final Map<String, Volatility> defaultVolatilities = new HashMap<>();
+
+	static {
+		for (final String variable : Arrays.asList("x", "y", "z", "location", "health"))
+			defaultVolatilities.put(variable, Volatility.VOLATILE);
+
+		for (final String variable : Arrays.asList("nms_version", "chat_line", "chat_line_smooth", "player", "player_name", "ip_address", "pl_address",
+				"sender_is_player", "sender_is_discord", "sender_is_console", "plugin_name", "plugin_version",
+				"info_prefix", "prefix_info", "success_prefix", "prefix_success", "warn_prefix", "prefix_warn",
+				"error_prefix", "prefix_error", "question_prefix", "prefix_question", "announce_prefix", "prefix_announce"))
+			defaultVolatilities.put(variable, Volatility.STATIC);
+	}
+
+	/**
+	 * Who shares the value of our hardcoded and well known PlaceholderAPI variables, see {@link #getScope(String)}
+	 */
+	private static final Map<String, Scope> defaultScopes = new HashMap<>();
+
+	static {
+		for (final String variable : Arrays.asList("nms_version", "chat_line", "chat_line_smooth", "plugin_name", "plugin_version", "prefix",
+				"info_prefix", "prefix_info", "success_prefix", "prefix_success", "warn_prefix", "prefix_warn",
+				"error_prefix", "prefix_error", "question_prefix", "prefix_question", "announce_prefix", "prefix_announce"))
+			defaultScopes.put(variable, Scope.GLOBAL);
+
+		for (final String variable : Arrays.asList("world", "player_world"))
+			defaultScopes.put(variable, Scope.WORLD);
+
+		for (final String variable : Arrays.asList("player_primary_group", "pl_primary_group", "vault_group", "vault_groupprefix", "vault_groupsuffix",
+				"luckperms_primary_group_name"))
+			defaultScopes.put(variable, Scope.GROUP);
+	}
 
 	/**
 	 * Should we replace javascript placeholders from variables/ folder automatically?
@@ -58,6 +97,16 @@ public final class Variables {
 	 */
 	private static final StrictMap<String, Function<CommandSender, String>> customVariables = new StrictMap<>();
 
+	/**
+	 * How often variables added by you or other plugins change, see {@link #setVolatility(String, Volatility)}
+	 */
+	private static final Map<String, Volatility> customVolatilities = new ConcurrentHashMap<>();
+
+	/**
+	 * Who shares the value of variables from other plugins, see {@link #setScope(String, Scope)}
+	 */
+	private static final Map<String, Scope> customScopes = new ConcurrentHashMap<>();
+
 	/**
 	 * Return the variable for the given key that is a function of replacing
 	 * itself for the player. Returns null if no such variable by key is present.
@@ -80,7 +129,20 @@ public final class Variables {
 	 * @param replacer
 	 */
 	public static void addVariable(String variable, Function<CommandSender, String> replacer) {
+		addVariable(variable, replacer, Volatility.SHORT);
+	}
+
+	/**
+	 * Register a new variable, see {@link #addVariable(String, Function)}, telling how often its value
+	 * changes so messages using it are only kept as long as they are valid
+	 *
+	 * @param variable
+	 * @param replacer
+	 * @param volatility
+	 */
+	public static void addVariable(String variable, Function<CommandSender, String> replacer, Volatility volatility) {
 		customVariables.override(variable, replacer);
+		customVolatilities.put(variable, volatility);
 	}
 
 	/**
@@ -91,6 +153,7 @@ public final class Variables {
 	 */
 	public static void removeVariable(String variable) {
 		customVariables.remove(variable);
+		customVolatilities.remove(variable);
 	}
 
 	/**
@@ -104,6 +167,76 @@ public final class Variables {
 		return customVariables.containsKey(variable);
 	}
 
+	/**
+	 * Set how often the given variable changes, such as a PlaceholderAPI variable written
+	 * without brackets, e.g. vault_eco_balance not {vault_eco_balance}
+	 * <p>
+	 * Variables we do not know are expected to change at any time, see {@link Volatility#SHORT}
+	 *
+	 * @param variable
+	 * @param volatility
+	 */
+	public static void setVolatility(String variable, Volatility volatility) {
+		customVolatilities.put(variable, volatility);
+	}
+
+	/**
+	 * Return how often the given variable changes, only put the name here without brackets
+	 *
+	 * @param variable
+	 * @return
+	 */
+	public static Volatility getVolatility(String variable) {
+		final Volatility custom = customVolatilities.get(variable);
+
+		if (custom != null)
+			return custom;
+
+		return defaultVolatilities.getOrDefault(variable, Volatility.SHORT);
+	}
+
+	/**
+	 * Set who shares the value of the given variable, such as a PlaceholderAPI variable written
+	 * without brackets, e.g. vault_eco_balance not {vault_eco_balance}. Broadcasts replace the variable
+	 * once for everyone sharing it, see {@link Common#tellAll(Iterable, String)}
+	 * <p>
+	 * Variables we do not know are expected to be different for each player, see {@link Scope#PLAYER}
+	 *
+	 * @param variable
+	 * @param scope
+	 */
+	public static void setScope(String variable, Scope scope) {
+		customScopes.put(variable, scope);
+	}
+
+	/**
+	 * Return who shares the value of the given variable, only put the name here without brackets.
+	 * The server_ variables of PlaceholderAPI are the same for everyone.
+	 *
+	 * @param variable
+	 * @return
+	 */
+	public static Scope getScope(String variable) {
+		final Scope custom = customScopes.get(variable);
+
+		if (custom != null)
+			return custom;
+
+		if (variable.startsWith("server_"))
+			return Scope.GLOBAL;
+
+		return defaultScopes.getOrDefault(variable, Scope.PLAYER);
+	}
+
+	/**
+	 * Return the cache of messages recently rendered for each player, with its hit rate
+	 *
+	 * @return
+	 */
+	public static RenderCache getRenderCache() {
+		return renderCache;
+	}
+
 	// ------------------------------------------------------------------------------------------------------------
 	// Replacing
 	// ------------------------------------------------------------------------------------------------------------
@@ -119,11 +252,12 @@ public final class Variables {
 	 * @return
 	 */
 	public static List<String> replace(Iterable<String> messages, CommandSender sender, Map<String, Object> replacements) {
+		final List<String> replaced = new ArrayList<>();
 
-		// Trick: Join the lines to only parse variables at once -- performance++ -- then split again
-		final String deliminer = "%FLVJ%";
+		for (final String message : messages)
+			replaced.add(replace(message, sender, replacements));
 
-		return Arrays.asList(replace(String.join(deliminer, messages), sender, replacements).split(deliminer));
+		return replaced;
 	}
 
 	/**
@@ -159,6 +293,12 @@ public final class Variables {
 	 * player-related placeholders.
 	 * <p>
 	 * We also support PlaceholderAPI and MvdvPlaceholderAPI (only if sender is a Player).
+	 * <p>
+	 * The message is compiled once and rendered from its {@link MessageTemplate}, and renders
+	 * are kept for each player as long as their variables allow, see {@link #getRenderCache()}.
+	 * <p>
+	 * This is safe to call off the main thread, such as from async chat, our player variables
+	 * are then read from the {@link PlayerSnapshot} captured on the last tick.
 	 *
 	 * @param message
 	 * @param sender
@@ -169,23 +309,33 @@ public final class Variables {
 		if (message == null || message.isEmpty())
 			return "";
 
-		final String original = message;
+		return replace(MessageTemplate.of(message), sender, replacements);
+	}
+
+	/**
+	 * Renders the compiled message for the sender like {@link #replace(String, CommandSender, Map)},
+	 * using the renders kept for the sender when they are still valid
+	 *
+	 * @param template
+	 * @param sender
+	 * @param replacements
+	 * @return
+	 */
+	public static String replace(MessageTemplate template, CommandSender sender, Map<String, Object> replacements) {
+		return renderCache.render(template, sender, replacements);
+	}
+
+	/*
+	 * Replaces variables by searching the message for each kind of variable in turn, used for
+	 * messages whose replacements have variables of their own
+	 */
+	static String replaceLegacy(String message, CommandSender sender, Map<String, Object> replacements) {
 		final boolean senderIsPlayer = sender instanceof Player;
 
 		// Replace custom variables first
 		if (replacements != null && !replacements.isEmpty())
 			message = Replacer.replaceArray(message, replacements);
 
-		if (senderIsPlayer) {
-
-			// Already cached ? Return.
-			final Map<String, String> cached = cache.get(sender.getName());
-			final String cachedVar = cached != null ? cached.get(message) : null;
-
-			if (cachedVar != null)
-				return cachedVar;
-		}
-
 		if (senderIsPlayer) {
 
 			// PlaceholderAPI and MvdvPlaceholderAPI
@@ -199,15 +349,6 @@ public final class Variables {
 		if (!message.startsWith("[JSON]"))
 			message = Common.colorize(message);
 
-		if (senderIsPlayer) {
-			final Map<String, String> map = cache.get(sender.getName());
-
-			if (map != null)
-				map.put(original, message);
-			else
-				cache.put(sender.getName(), Common.newHashMap(original, message));
-		}
-
 		return message;
 	}
 
@@ -235,7 +376,7 @@ public final class Variables {
 				backSpace = true;
 			}
 
-			String value = lookupVariable0(player, sender, variable);
+			String value = lookupVariable(player, sender, variable);
 
 			if (value != null) {
 				final boolean emptyColorless = Common.stripColors(value).isEmpty();
@@ -253,7 +394,7 @@ public final class Variables {
 	/*
 	 * Replaces the given variable with a few hardcoded within the plugin, see below
 	 */
-	private static String lookupVariable0(Player player, CommandSender console, String variable) {
+	static String lookupVariable(Player player, CommandSender console, String variable) {
 		if (console != null) {
 			// Replace custom variables
 			final Function<CommandSender, String> customReplacer = customVariables.get(variable);
@@ -271,6 +412,24 @@ public final class Variables {
 				return Common.chatLine();
 			case "chat_line_smooth":
 				return Common.chatLineSmooth();
+
+			case "sender_is_player":
+				return player != null ? "true" : "false";
+			case "sender_is_discord":
+				return console instanceof DiscordSender ? "true" : "false";
+			case "sender_is_console":
+				return console instanceof ConsoleCommandSender ? "true" : "false";
+		}
+
+		// Off the main thread, read the player from their latest snapshot instead of Bukkit
+		if (player != null && !Bukkit.isPrimaryThread()) {
+			final PlayerSnapshot snapshot = PlayerSnapshot.of(player);
+
+			// not captured yet, leave their variables empty since Bukkit may only be used on the main thread
+			return snapshot != null ? lookupSnapshotVariable(snapshot, variable) : lookupUncapturedVariable(variable);
+		}
+
+		switch (variable) {
 			case "town":
 				return player == null ? "" : HookManager.getTownName(player);
 			case "nation":
@@ -325,12 +484,104 @@ public final class Variables {
 
 			case "player_vanished":
 				return player == null ? "false" : String.valueOf(PlayerUtil.isVanished(player));
-			case "sender_is_player":
-				return player != null ? "true" : "false";
-			case "sender_is_discord":
-				return console instanceof DiscordSender ? "true" : "false";
-			case "sender_is_console":
-				return console instanceof ConsoleCommandSender ? "true" : "false";
+		}
+
+		return null;
+	}
+
+	/*
+	 * Replaces the variables of the player from their snapshot, see the player variables above
+	 */
+	private static String lookupSnapshotVariable(PlayerSnapshot snapshot, String variable) {
+		switch (variable) {
+			case "town":
+				return snapshot.getTown();
+			case "nation":
+				return snapshot.getNation();
+			case "faction":
+				return snapshot.getFaction();
+
+			case "world":
+				return snapshot.getWorldAlias();
+			case "health":
+				return formatHealth0(snapshot.getHealth()) + ChatColor.RESET;
+			case "location":
+				return snapshot.getShortLocation();
+			case "x":
+				return String.valueOf(snapshot.getBlockX());
+			case "y":
+				return String.valueOf(snapshot.getBlockY());
+			case "z":
+				return String.valueOf(snapshot.getBlockZ());
+
+			case "player":
+			case "player_name":
+				return snapshot.getName();
+			case "tab_name":
+				return snapshot.getTabName();
+			case "display_name":
+				return snapshot.getDisplayName();
+			case "player_nick":
+			case "nick":
+				return snapshot.getNick();
+
+			case "player_prefix":
+			case "pl_prefix":
+				return snapshot.getPrefix();
+			case "player_suffix":
+			case "pl_suffix":
+				return snapshot.getSuffix();
+			case "player_group":
+			case "pl_group":
+				return snapshot.getGroup();
+			case "player_primary_group":
+			case "pl_primary_group":
+				return snapshot.getPrimaryGroup();
+			case "ip_address":
+			case "pl_address":
+				return snapshot.getAddress();
+
+			case "player_vanished":
+				return String.valueOf(snapshot.isVanished());
+		}
+
+		return null;
+	}
+
+	/*
+	 * Replaces the variables of a player who has no snapshot yet off the main thread, see the player variables above
+	 */
+	private static String lookupUncapturedVariable(String variable) {
+		switch (variable) {
+			case "town":
+			case "nation":
+			case "faction":
+			case "world":
+			case "health":
+			case "location":
+			case "x":
+			case "y":
+			case "z":
+			case "player":
+			case "player_name":
+			case "tab_name":
+			case "display_name":
+			case "player_nick":
+			case "nick":
+			case "player_prefix":
+			case "pl_prefix":
+			case "player_suffix":
+			case "pl_suffix":
+			case "player_group":
+			case "pl_group":
+			case "player_primary_group":
+			case "pl_primary_group":
+			case "ip_address":
+			case "pl_address":
+				return "";
+
+			case "player_vanished":
+				return "false";
 		}
 
 		return null;
@@ -340,8 +591,13 @@ public final class Variables {
 	 * Formats the {health} variable
 	 */
 	private static String formatHealth0(Player player) {
-		final int hp = Remain.getHealth(player);
+		return formatHealth0(Remain.getHealth(player));
+	}
 
+	/*
+	 * Formats the {health} variable from the health points
+	 */
+	private static String formatHealth0(int hp) {
 		return (hp > 10 ? ChatColor.DARK_GREEN : hp > 5 ? ChatColor.GOLD : ChatColor.RED) + "" + hp;
 	}
 
@@ -14,6 +14,7 @@ import java.awt.*;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -63,15 +64,246 @@ public final class ColorFormatter {
 	 */
 	private static final List<Pattern> PATTERNS = Arrays.asList(new SolidPattern(), new GradientPattern(), new RainbowPattern());
 
+	private static final String GRADIENT_START = "<GRADIENT:", GRADIENT_END = "</GRADIENT:";
+	private static final String RAINBOW_START = "<RAINBOW", RAINBOW_END = "</RAINBOW>";
+
+	/**
+	 * Strings longer than this are processed every time instead of being cached
+	 */
+	private static final int MAX_CACHED_LENGTH = 256;
+
+	/**
+	 * Recently processed strings, with and without the & codes translated first
+	 */
+	private static final RecentResults PROCESSED = new RecentResults(), COLORIZED = new RecentResults();
+
 	/**
 	 * Processes a string to add color to it.
 	 * Thanks to Distressing for helping with the regex <3
+	 * <p>
+	 * The string is read once, see {@link #colorize(String)}.
 	 *
 	 * @param string The string we want to process
 	 * @since 1.0.0
 	 */
 	@Nonnull
 	public static String process(@Nonnull String string) {
+		return cached(PROCESSED, string, false);
+	}
+
+	/**
+	 * Translates the & color codes of a string, then processes it like {@link #process(String)}.
+	 * <p>
+	 * Color codes, hex colors and gradient and rainbow tags are all replaced in one pass over the string
+	 * instead of one pass per pattern, and the result is kept for the next time the same string is colored.
+	 *
+	 * @param string The string we want to color
+	 * @return The colored string
+	 */
+	@Nonnull
+	public static String colorize(@Nonnull String string) {
+		return cached(COLORIZED, string, true);
+	}
+
+	@Nonnull
+	private static String cached(RecentResults results, String string, boolean translate) {
+		if (string.length() > MAX_CACHED_LENGTH) {
+			return compile(string, translate);
+		}
+
+		String result = results.get(string);
+
+		if (result == null) {
+			result = compile(string, translate);
+			results.put(string, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Process a string in one pass, giving the same result as running {@link #PATTERNS} and then
+	 * translating the & codes. Tags inside tags are left to the patterns.
+	 *
+	 * @param string    The string we want to process
+	 * @param translate Whether to translate the & codes before the patterns run
+	 * @return The processed string
+	 */
+	@Nonnull
+	static String compile(@Nonnull String string, boolean translate) {
+		// no tags or hex colors, translating the & codes once gives the same result as twice
+		if (string.indexOf('<') == -1 && string.indexOf('#') == -1) {
+			return ChatColor.translateAlternateColorCodes('&', string);
+		}
+
+		int length = string.length();
+		StringBuilder out = new StringBuilder(length + 16);
+		int plainStart = 0;
+
+		for (int i = string.indexOf('<'); i != -1; i = string.indexOf('<', Math.max(i + 1, plainStart))) {
+			if (string.startsWith(GRADIENT_START, i)) {
+				// <GRADIENT:RRGGBB>content</GRADIENT:RRGGBB>
+				int contentStart = i + GRADIENT_START.length() + 7;
+
+				if (contentStart > length || !isHex(string, contentStart - 7) || string.charAt(contentStart - 1) != '>') {
+					continue;
+				}
+
+				int contentEnd = findEnd(string, contentStart, GRADIENT_END, true);
+
+				if (contentEnd == -1) {
+					continue;
+				}
+
+				if (contains(string, GRADIENT_START, contentStart, contentEnd)) {
+					return processPatterns(string, translate);
+				}
+
+				appendPlain(out, string, plainStart, i, translate);
+
+				int endColor = contentEnd + GRADIENT_END.length();
+				String content = appendPlain(new StringBuilder(), string, contentStart, contentEnd, translate).toString();
+
+				apply(out, content, createGradient(hexColor(string, contentStart - 7), hexColor(string, endColor), withoutSpecialChar(content).length()));
+				plainStart = endColor + 7;
+
+			} else if (string.startsWith(RAINBOW_START, i)) {
+				// <RAINBOW100>content</RAINBOW>
+				int digitsStart = i + RAINBOW_START.length();
+				int digitsEnd = digitsStart;
+
+				while (digitsEnd < length && digitsEnd - digitsStart < 3 && string.charAt(digitsEnd) >= '0' && string.charAt(digitsEnd) <= '9') {
+					digitsEnd++;
+				}
+
+				if (digitsEnd == digitsStart || digitsEnd >= length || string.charAt(digitsEnd) != '>') {
+					continue;
+				}
+
+				int contentStart = digitsEnd + 1;
+				int contentEnd = findEnd(string, contentStart, RAINBOW_END, false);
+
+				if (contentEnd == -1) {
+					continue;
+				}
+
+				// gradients run before rainbows, so one starting inside is only handled right by the patterns
+				if (contains(string, GRADIENT_START, contentStart, contentEnd) || contains(string, RAINBOW_START, contentStart, contentEnd)) {
+					return processPatterns(string, translate);
+				}
+
+				appendPlain(out, string, plainStart, i, translate);
+
+				String content = appendPlain(new StringBuilder(), string, contentStart, contentEnd, translate).toString();
+
+				apply(out, content, createRainbow(withoutSpecialChar(content).length(), Float.parseFloat(string.substring(digitsStart, digitsEnd))));
+				plainStart = contentEnd + RAINBOW_END.length();
+			}
+		}
+
+		appendPlain(out, string, plainStart, length, translate);
+
+		// codes gradients and rainbows copied over as they were
+		translateColorCodes(out);
+
+		return out.toString();
+	}
+
+	/**
+	 * Append text outside of tags, replacing #RRGGBB colors and, if asked, translating & codes
+	 */
+	private static StringBuilder appendPlain(StringBuilder out, String string, int from, int to, boolean translate) {
+		for (int i = from; i < to; i++) {
+			char c = string.charAt(i);
+
+			if (c == '#' && i + 7 <= to && isHex(string, i + 1)) {
+				out.append(SUPPORTS_RGB ? ChatColor.of(hexColor(string, i + 1)) : getClosestColor(hexColor(string, i + 1)));
+				i += 6;
+
+			} else if (translate && c == '&' && i + 1 < to && ChatColor.ALL_CODES.indexOf(string.charAt(i + 1)) > -1) {
+				out.append(ChatColor.COLOR_CHAR).append(Character.toLowerCase(string.charAt(++i)));
+
+			} else {
+				out.append(c);
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * Find where the content of a tag ends, the content cannot span lines
+	 *
+	 * @param withColor Whether the end tag has a color and a closing bracket after it
+	 * @return The index of the end tag, or -1 if there is none
+	 */
+	private static int findEnd(String string, int from, String end, boolean withColor) {
+		for (int i = from; i < string.length(); i++) {
+			char c = string.charAt(i);
+
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return -1;
+			}
+
+			if (c == '<' && string.startsWith(end, i)) {
+				int color = i + end.length();
+
+				if (!withColor || (color + 7 <= string.length() && isHex(string, color) && string.charAt(color + 6) == '>')) {
+					return i;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean contains(String string, String part, int from, int to) {
+		int index = string.indexOf(part, from);
+
+		return index != -1 && index < to;
+	}
+
+	private static boolean isHex(String string, int from) {
+		if (from + 6 > string.length()) {
+			return false;
+		}
+
+		for (int i = from; i < from + 6; i++) {
+			char c = string.charAt(i);
+
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static Color hexColor(String string, int from) {
+		return new Color(Integer.parseInt(string.substring(from, from + 6), 16));
+	}
+
+	/**
+	 * The same as {@link ChatColor#translateAlternateColorCodes(char, String)}, in place
+	 */
+	private static void translateColorCodes(StringBuilder string) {
+		for (int i = 0; i < string.length() - 1; i++) {
+			if (string.charAt(i) == '&' && ChatColor.ALL_CODES.indexOf(string.charAt(i + 1)) > -1) {
+				string.setCharAt(i, ChatColor.COLOR_CHAR);
+				string.setCharAt(i + 1, Character.toLowerCase(string.charAt(i + 1)));
+			}
+		}
+	}
+
+	/**
+	 * Processes a string by running each pattern over it in turn
+	 */
+	@Nonnull
+	private static String processPatterns(@Nonnull String string, boolean translate) {
+		if (translate) {
+			string = ChatColor.translateAlternateColorCodes('&', string);
+		}
+
 		for (Pattern pattern : PATTERNS) {
 			string = pattern.process(string);
 		}
@@ -119,7 +351,7 @@ public final class ColorFormatter {
 		String originalString = string;
 
 		ChatColor[] colors = createGradient(start, end, withoutSpecialChar(string).length());
-		return apply(originalString, colors);
+		return apply(new StringBuilder(), originalString, colors).toString();
 	}
 
 	/**
@@ -134,7 +366,7 @@ public final class ColorFormatter {
 		String originalString = string;
 
 		ChatColor[] colors = createRainbow(withoutSpecialChar(string).length(), saturation);
-		return apply(originalString, colors);
+		return apply(new StringBuilder(), originalString, colors).toString();
 	}
 
 	/**
@@ -163,27 +395,26 @@ public final class ColorFormatter {
 	}
 
 	@Nonnull
-	private static String apply(@Nonnull String source, ChatColor[] colors) {
+	private static StringBuilder apply(@Nonnull StringBuilder stringBuilder, @Nonnull String source, ChatColor[] colors) {
 		StringBuilder specialColors = new StringBuilder();
-		StringBuilder stringBuilder = new StringBuilder();
-		String[] characters = source.split("");
 		int outIndex = 0;
-		for (int i = 0; i < characters.length; i++) {
-			if (characters[i].equals("&") || characters[i].equals("§")) {
-				if (i + 1 < characters.length) {
-					if (characters[i + 1].equals("r")) {
+		for (int i = 0; i < source.length(); i++) {
+			char character = source.charAt(i);
+			if (character == '&' || character == '§') {
+				if (i + 1 < source.length()) {
+					if (source.charAt(i + 1) == 'r') {
 						specialColors.setLength(0);
 					} else {
-						specialColors.append(characters[i]);
-						specialColors.append(characters[i + 1]);
+						specialColors.append(character);
+						specialColors.append(source.charAt(i + 1));
 					}
 					i++;
 				} else
-					stringBuilder.append(colors[outIndex++]).append(specialColors).append(characters[i]);
+					stringBuilder.append(colors[outIndex++]).append(specialColors).append(character);
 			} else
-				stringBuilder.append(colors[outIndex++]).append(specialColors).append(characters[i]);
+				stringBuilder.append(colors[outIndex++]).append(specialColors).append(character);
 		}
-		return stringBuilder.toString();
+		return stringBuilder;
 	}
 
 	@Nonnull
@@ -303,4 +534,42 @@ public final class ColorFormatter {
 
 		return Integer.parseInt(version.substring(2));
 	}
+
+	/**
+	 * Keeps the results of recently processed strings in two generations. Once the newer one is full
+	 * it replaces the older one, and results found in the older one move back into the newer one,
+	 * so strings that keep being used stay cached without tracking when each one was used.
+	 */
+	private static final class RecentResults {
+		private static final int GENERATION_SIZE = 2048;
+
+		private volatile Map<String, String> recent = new ConcurrentHashMap<>();
+		private volatile Map<String, String> older = new ConcurrentHashMap<>();
+
+		String get(String string) {
+			String result = recent.get(string);
+
+			if (result == null) {
+				result = older.get(string);
+
+				if (result != null) {
+					put(string, result);
+				}
+			}
+
+			return result;
+		}
+
+		void put(String string, String result) {
+			Map<String, String> recent = this.recent;
+
+			if (recent.size() >= GENERATION_SIZE) {
+				older = recent;
+				recent = new ConcurrentHashMap<>();
+				this.recent = recent;
+			}
+
+			recent.put(string, result);
+		}
+	}
 }
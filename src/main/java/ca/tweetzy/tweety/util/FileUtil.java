@@ -11,6 +11,7 @@ import org.bukkit.Bukkit;
 
 import java.io.*;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
@@ -299,6 +300,103 @@ public final class FileUtil {
 		}
 	}
 
+	/**
+	 * Write the content to a temporary file next to the destination and then move it
+	 * in place, so the destination is never left half written
+	 *
+	 * @param to
+	 * @param content
+	 * @param charset
+	 * @throws IOException
+	 */
+	public static void writeAtomically(@NonNull File to, @NonNull String content, @NonNull Charset charset) throws IOException {
+		writeAtomically(to, content.getBytes(charset));
+	}
+
+	/**
+	 * Write the content to a temporary file next to the destination and then move it
+	 * in place, so the destination is never left half written
+	 *
+	 * @param to
+	 * @param content
+	 * @throws IOException
+	 */
+	public static void writeAtomically(@NonNull File to, @NonNull byte[] content) throws IOException {
+		final Path temp = createTempFileFor(to);
+
+		try {
+			Files.write(temp, content);
+			moveInPlace(temp, to);
+
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Write the content to a temporary file next to the destination as it is produced
+	 * and then move it in place, so the destination is never left half written
+	 *
+	 * @param to
+	 * @param charset
+	 * @param content
+	 * @throws IOException
+	 */
+	public static void writeAtomically(@NonNull File to, @NonNull Charset charset, @NonNull ContentWriter content) throws IOException {
+		final Path temp = createTempFileFor(to);
+
+		try {
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp), charset))) {
+				content.write(writer);
+			}
+
+			moveInPlace(temp, to);
+
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/*
+	 * Create the temporary file an atomic write of the given file goes to
+	 */
+	private static Path createTempFileFor(File to) throws IOException {
+		final File parent = to.getAbsoluteFile().getParentFile();
+
+		if (!parent.exists())
+			parent.mkdirs();
+
+		return Files.createTempFile(parent.toPath(), to.getName(), ".tmp");
+	}
+
+	/*
+	 * Replace the file with the written temporary file
+	 */
+	private static void moveInPlace(Path temp, File to) throws IOException {
+		try {
+			Files.move(temp, to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (final AtomicMoveNotSupportedException ex) {
+			Files.move(temp, to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Produces the content of a file by writing it to the given writer,
+	 * see {@link #writeAtomically(File, Charset, ContentWriter)}
+	 */
+	@FunctionalInterface
+	public interface ContentWriter {
+
+		/**
+		 * Write the content
+		 *
+		 * @param writer
+		 * @throws IOException
+		 */
+		void write(Writer writer) throws IOException;
+	}
+
 	// ----------------------------------------------------------------------------------------------------
 	// Extracting from our plugin .jar file
 	// ----------------------------------------------------------------------------------------------------